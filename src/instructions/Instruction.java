@@ -1,22 +1,28 @@
 package instructions;
 
 import memory.MemoryModule;
-import memory.MemoryRequest;
+import memory.RequestChain;
+import memory.StoreRequest;
 import pipeline.*;
 
+import java.io.Serializable;
 import java.util.*;
 
 import static instructions.Instructions.*;
 import static main.GLOBALS.*;
 
-public class Instruction
+public class Instruction implements Serializable
 {
+    private static final long serialVersionUID = 1L;
     private static final long BYTE_MASK = -1L >>> (Long.SIZE - Integer.SIZE);
+    private static final int PIPELINE_CALLER_ID = -1;  // Requests made on the pipeline's behalf come from no memory device
 
-    public int id;
     public final Term word;
-    private Map<String, Term> auxBits;  // Labeled auxiliary bitstrings to track information associated with the Instruction
-    private LinkedList<MemoryRequest> activeRequest;
+    private final HeaderInfo headerInfo;  // Resolved once from word
+    private static final int INITIAL_AUX_SLOTS = AUX_UNINDEXED_SLOTS + (2 * AUX_INDEXED_KINDS);  // Enough for two indexed args
+
+    private Term[] auxBits;  // Labeled auxiliary bitstrings to track information associated with the Instruction, indexed by AUX_* slot
+    private RequestChain activeRequest;  // RequestChain.RELEASED once this Instruction is done with it
 
     public Instruction(int word)
     {
@@ -35,19 +41,22 @@ public class Instruction
 
     public Instruction(Term word)
     {
-        id = GET_ID();
         int size = word.length();
         if((size != 32) && (size != 64)) {throw new IllegalArgumentException("Instruction word must be 32 or 64 bits long, not " + size); }
-        if(HEADERS_FROM_BITSTRINGS.get(word.toString().substring(0, TYPECODE_SIZE + OPCODE_SIZE)) == null)
+        HEADER header = HEADER_FROM_BITS(word.sliceToInt(0, HEADER_SIZE));
+        if(header == null)
         {
             System.out.println("Null header");
-            this.word = ERR(size, ERR_TYPE_NOT_IMPLEMENTED).word;
+            Instruction err = ERR(size, ERR_TYPE_NOT_IMPLEMENTED);
+            this.word = err.word;
+            this.headerInfo = err.headerInfo;
         }
         else
         {
-            this.word = word.clone();
+            this.word = word;
+            this.headerInfo = HEADER_INFO(header);
         }
-        auxBits = new HashMap<>();
+        auxBits = new Term[INITIAL_AUX_SLOTS];
     }
 
     public int wordLength()
@@ -60,49 +69,76 @@ public class Instruction
         return word.toLong();
     }
 
-    public void addAuxBits(String identifier, int term)
+    public void addAuxBits(int slot, int term)
+    {
+        addAuxBits(slot, Term.VALUE_OF(Integer.toUnsignedLong(term)));
+    }
+
+    public void addAuxBits(int slot, long term)
     {
-        addAuxBits(identifier, new Term(term, false));
+        addAuxBits(slot, Term.VALUE_OF(term));
     }
 
-    public void addAuxBits(String identifier, long term)
+    public void addAuxBits(int slot, int[] bits)
     {
-        addAuxBits(identifier, new Term(term, false));
+        addAuxBits(slot, new Term(bits));
     }
 
-    public void addAuxBits(String identifier, int[] bits)
+    public void addAuxBits(int slot, String term)
     {
-        addAuxBits(identifier, new Term(bits));
+        addAuxBits(slot, new Term(term, false));
     }
 
-    public void addAuxBits(String identifier, String term)
+    public void addAuxBits(int slot, Term term)
     {
-        addAuxBits(identifier, new Term(term, false));
+        if(slot >= auxBits.length) { auxBits = Arrays.copyOf(auxBits, Math.max(slot + 1, 2 * auxBits.length)); }
+        auxBits[slot] = term;
     }
 
-    public void addAuxBits(String identifier, Term term)
+    public Term getAuxBits(int slot)
     {
-        auxBits.put(identifier, term);
+        return (slot < auxBits.length) ? auxBits[slot] : null;
     }
 
-    public Term getAuxBits(String identifier)
+    /**
+     * @return A copy of every aux slot, indexed by slot (null if unset)
+     */
+    public Term[] copyAuxBits()
+    {
+        return auxBits.clone();
+    }
+
+    /**
+     * Sets every non-null slot of the given aux bits, leaving other slots as they are.
+     * @param template Indexed by slot, as returned by copyAuxBits()
+     */
+    public void addAuxBits(Term[] template)
     {
-        return auxBits.get(identifier);
+        if(template.length > auxBits.length) { auxBits = Arrays.copyOf(auxBits, template.length); }
+        for(int slot = 0; slot < template.length; slot++)
+        {
+            if(template[slot] != null) { auxBits[slot] = template[slot]; }
+        }
     }
 
     public TYPECODE getTypecode()
     {
-        return TYPECODES.get(word.toString().substring(0, TYPECODE_SIZE));
+        return headerInfo.typecode();
     }
 
     public OPCODE getOpcode()
     {
-        return OPCODES.get(word.toString().substring(TYPECODE_SIZE, TYPECODE_SIZE + OPCODE_SIZE));
+        return headerInfo.opcode();
     }
 
     public HEADER getHeader()
     {
-        return HEADERS_FROM_BITSTRINGS.get(word.toString().substring(0, TYPECODE_SIZE + OPCODE_SIZE));
+        return headerInfo.header();
+    }
+
+    public HeaderInfo getHeaderInfo()
+    {
+        return headerInfo;
     }
 
     /**
@@ -113,9 +149,9 @@ public class Instruction
     {
         for(int i = 0; i < numFlags; i++)
         {
-            addAuxBits(FLAG(i), new Term((wordLength() == WORD_SIZE_SHORT) ?
-                                             MASK((int)wordNum(), 6 + i) :
-                                             MASK_LONG(wordNum(), 6 + i)));
+            addAuxBits(FLAG(i), (wordLength() == WORD_SIZE_SHORT) ?
+                                    MASK((int)wordNum(), 6 + i) :
+                                    MASK_LONG(wordNum(), 6 + i));
         }
     }
 
@@ -182,8 +218,8 @@ public class Instruction
     public void addSDManual(boolean source, int idx, Term term, int type, int registerBank)
     {
         addAuxBits(source ? AUX_SOURCE(idx) : AUX_DEST(idx), term);
-        addAuxBits(source ? AUX_SOURCE_TYPE(idx) : AUX_DEST_TYPE(idx), new Term(type));
-        if(type == AUX_SD_TYPE_REGISTER) { addAuxBits(source ? AUX_SOURCE_BANK(idx) : AUX_DEST_BANK(idx), new Term(registerBank)); }
+        addAuxBits(source ? AUX_SOURCE_TYPE(idx) : AUX_DEST_TYPE(idx), type);
+        if(type == AUX_SD_TYPE_REGISTER) { addAuxBits(source ? AUX_SOURCE_BANK(idx) : AUX_DEST_BANK(idx), registerBank); }
     }
 
     public static final int MAX_REG_ARGS = 16;  // Should never actually be more than (3? 4?)
@@ -206,7 +242,7 @@ public class Instruction
                 }
 
                 String prefix = AUX_EQUALS(getAuxBits(AUX_SOURCE_TYPE(i)), AUX_SD_TYPE_REGISTER) ? prefixes.get(getAuxBits(AUX_SOURCE_BANK(i)).toInt()) : "";
-                if(AUX_EQUALS(getAuxBits(AUX_SOURCE(i) + DecodeStage.READ), AUX_TRUE))
+                if(AUX_EQUALS(getAuxBits(AUX_SOURCE_READ(i)), AUX_TRUE))
                 {
                     prefix = "";
                 }
@@ -389,72 +425,80 @@ public class Instruction
         }
     }
 
-    public void executeLoadPC(FetchStage stage)
+    /**
+     * Hands activeRequest back to be reused by later requests. The memory hierarchy keeps its own hold on it until
+     *  every device it passed through has finished with it.
+     */
+    private void releaseActiveRequest()
     {
-        String KEY = "load_pc_holding";
+        activeRequest.release();
+        activeRequest = RequestChain.RELEASED;
+    }
 
+    public void executeLoadPC(FetchStage stage)
+    {
         MemoryModule cache = stage.nearestInstructionCache;
         if(activeRequest == null)
         {
             long pc = stage.internalRegisters.load(PC_INDEX);
-            activeRequest = new LinkedList<>(List.of(
-                new MemoryRequest(id, cache.getID(),
-                                  MEMORY_TYPE.INSTRUCTION, REQUEST_TYPE.LOAD,
-                                  new Object[]{(int)(pc), true})));
-            int[] words = cache.load(activeRequest);
+            activeRequest = cache.newRequestChain(cache.newLoadRequest(PIPELINE_CALLER_ID, MEMORY_TYPE.INSTRUCTION, (int)(pc), true));
+            int[] words = stage.getLoadBuffer(cache.getLineSize());
+            cache.load(activeRequest, words, 0);
             for(int i = 0; i < wordLength() / WORD_SIZE_SHORT; i++)
             {
-                addAuxBits(KEY + i, new Term(words[(int)(pc % stage.nearestInstructionCache.getLineSize()) + i], false, 32));
+                addAuxBits(AUX_HOLDING(i), new Term(words[(int)(pc % stage.nearestInstructionCache.getLineSize()) + i], false, 32));
             }
         }
         if(activeRequest.isEmpty() && !isFinished())
         {
-            StringBuilder wordBuilder = new StringBuilder();
-            for(int i = 0; getAuxBits(KEY + i) != null; i++)
+            long fetchedWord = 0L;
+            int fetchedWidth = 0;
+            for(int i = 0; getAuxBits(AUX_HOLDING(i)) != null; i++)
             {
-                wordBuilder.append(getAuxBits(KEY + i).toString());
+                Term part = getAuxBits(AUX_HOLDING(i));
+                fetchedWord = (fetchedWord << part.length()) | part.toLong();
+                fetchedWidth += part.length();
             }
             // IMPORTANT: For other instructions, use AUX_RESULT(int), not AUX_RESULT
-            addAuxBits(AUX_RESULT, new Term(wordBuilder.toString(), false, wordLength()));
+            addAuxBits(AUX_RESULT, Term.OF(fetchedWord, fetchedWidth));
             addAuxBits(AUX_FINISHED, AUX_TRUE);
+            releaseActiveRequest();
         }
     }
 
     public void executeLoad(MemoryAccessStage stage)
     {
-        String KEY = "load_w_holding";
         MemoryModule cache = stage.nearestDataCache;
 
         if(activeRequest == null)
         {
-            activeRequest = new LinkedList<>(List.of(
-                new MemoryRequest(id, cache.getID(),
-                                  MEMORY_TYPE.DATA, REQUEST_TYPE.LOAD,
-                                  new Object[]{getAuxBits(AUX_SOURCE(0)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)), false})));
-            addAuxBits(KEY, new Term(cache.load(activeRequest)[0], false, stage.nearestDataCache.wordLength.equals(WORD_LENGTH.SHORT) ? WORD_SIZE_SHORT : WORD_SIZE_LONG));
+            activeRequest = cache.newRequestChain(cache.newLoadRequest(PIPELINE_CALLER_ID, MEMORY_TYPE.DATA,
+                getAuxBits(AUX_SOURCE(0)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)), false));
+            int[] words = stage.getLoadBuffer(2);
+            cache.load(activeRequest, words, 0);
+            addAuxBits(AUX_HOLDING(0), new Term(words[0], false, stage.nearestDataCache.wordLength.equals(WORD_LENGTH.SHORT) ? WORD_SIZE_SHORT : WORD_SIZE_LONG));
         }
         if(activeRequest.isEmpty() && !isFinished()) {
             //store the loaded value in aux_result
-            addAuxBits(AUX_RESULT(0), getAuxBits(KEY));
+            addAuxBits(AUX_RESULT(0), getAuxBits(AUX_HOLDING(0)));
             addAuxBits(AUX_FINISHED, AUX_TRUE);
+            releaseActiveRequest();
         }
     }
 
     public void executeLoadLine(MemoryAccessStage stage)
     {
-        String KEY = "load_l_holding_";
         MemoryModule cache = stage.nearestDataCache;
 
         if(activeRequest == null)
         {
-            activeRequest = new LinkedList<>(List.of(
-                new MemoryRequest(id, cache.getID(),
-                                  MEMORY_TYPE.DATA, REQUEST_TYPE.LOAD,
-                                  new Object[]{getAuxBits(AUX_SOURCE(0)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)), true})));
-            int[] words = cache.load(activeRequest);
-            for(int i = 0; i < words.length; i++)
+            activeRequest = cache.newRequestChain(cache.newLoadRequest(PIPELINE_CALLER_ID, MEMORY_TYPE.DATA,
+                getAuxBits(AUX_SOURCE(0)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)), true));
+            int[] words = stage.getLoadBuffer(cache.getLineSize());
+            int numWords = cache.load(activeRequest, words, 0);
+            for(int i = 0; i < numWords; i++)
             {
-                addAuxBits(KEY + i, new Term(words[i], false, stage.nearestDataCache.wordLength.equals(WORD_LENGTH.SHORT) ? WORD_SIZE_SHORT : WORD_SIZE_LONG));
+                addAuxBits(AUX_HOLDING(i), new Term(words[i], false, stage.nearestDataCache.wordLength.equals(WORD_LENGTH.SHORT) ? WORD_SIZE_SHORT : WORD_SIZE_LONG));
             }
         }
         if(activeRequest.isEmpty() && !isFinished())
@@ -464,7 +508,7 @@ public class Instruction
             {
                 if(getAuxBits(AUX_DEST(i)) != null)  // If line goes past end of indexable registers
                 {
-                    addAuxBits(AUX_RESULT(i), getAuxBits(KEY + i));
+                    addAuxBits(AUX_RESULT(i), getAuxBits(AUX_HOLDING(i)));
                 }
                 else
                 {
@@ -472,6 +516,7 @@ public class Instruction
                 }
             }
             addAuxBits(AUX_FINISHED, AUX_TRUE);
+            releaseActiveRequest();
         }
     }
 
@@ -481,12 +526,12 @@ public class Instruction
 
         if(activeRequest == null)
         {
-            activeRequest = new LinkedList<>(List.of(
-                new MemoryRequest(id, cache.getID(),
-                                  MEMORY_TYPE.DATA, REQUEST_TYPE.STORE,
-                                  new Object[]{ getAuxBits(AUX_SOURCE(1)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)),
-                                      new int[] { getAuxBits(AUX_SOURCE(0)).toInt() } })));
+            StoreRequest request = cache.newStoreRequest(PIPELINE_CALLER_ID, MEMORY_TYPE.DATA,
+                getAuxBits(AUX_SOURCE(1)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)), 1);
+            request.setWord(0, getAuxBits(AUX_SOURCE(0)).toInt());
+            activeRequest = cache.newRequestChain(request);
             cache.store(activeRequest);
+            releaseActiveRequest();
         }
         addAuxBits(AUX_FINISHED, AUX_TRUE);//if(activeRequest.isEmpty() && !isFinished())
 //        {
@@ -500,17 +545,16 @@ public class Instruction
 
         if(activeRequest == null)
         {
-            int[] words = new int[stage.nearestDataCache.getLineSize()];
-            for(int i = 0; i < words.length; i++)
+            int lineSize = stage.nearestDataCache.getLineSize();
+            StoreRequest request = cache.newStoreRequest(PIPELINE_CALLER_ID, MEMORY_TYPE.DATA,
+                getAuxBits(AUX_SOURCE(lineSize)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)), lineSize);
+            for(int i = 0; i < lineSize; i++)
             {
-                words[i] = getAuxBits(AUX_SOURCE(i)).toInt();
+                request.setWord(i, getAuxBits(AUX_SOURCE(i)).toInt());
             }
-            activeRequest = new LinkedList<>(List.of(
-                new MemoryRequest(id, cache.getID(),
-                                  MEMORY_TYPE.DATA, REQUEST_TYPE.STORE,
-                                  new Object[]{ getAuxBits(AUX_SOURCE(words.length)).toInt() + ((int)stage.internalRegisters.load(CM_INDEX)),
-                                      words })));
+            activeRequest = cache.newRequestChain(request);
             cache.store(activeRequest);
+            releaseActiveRequest();
         }
         addAuxBits(AUX_FINISHED, AUX_TRUE);
     }
@@ -707,6 +751,6 @@ public class Instruction
 
     public void executeError(PipelineStage ignored)
     {
-        System.out.println("EXECUTION ERROR: " + Long.parseLong(word.toString().substring(HEADER_SIZE)));
+        System.out.println("EXECUTION ERROR: " + Long.parseLong(word.slice(HEADER_SIZE, word.length()).toString()));
     }
 }
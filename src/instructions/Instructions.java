@@ -2,6 +2,7 @@ package instructions;
 
 import memory.RegisterFileModule;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -352,39 +353,110 @@ public class Instructions
         HEADER.QUASH_NO_PIPELINE
     }));
 
+    /**
+     * Everything about a HEADER that doesn't depend on the rest of the instruction word. Built once from the maps and
+     *  lists above (so those remain the place to add new instructions) so that the pipeline can classify instructions
+     *  with a field read instead of hashing bitstrings or searching lists.
+     */
+    public record HeaderInfo(HEADER header, int bits, TYPECODE typecode, OPCODE opcode, String mnemonic,
+                             boolean memory, boolean alu, boolean branch, boolean quash, boolean error, boolean disposable) implements Serializable {}
+
+    private static final HeaderInfo[] HEADER_INFOS = new HeaderInfo[HEADER.values().length];  // Indexed by HEADER ordinal
+    private static final HEADER[] HEADERS_FROM_BITS = new HEADER[1 << HEADER_SIZE];  // Indexed by header bits; null if unused
+    private static final TYPECODE[] TYPECODES_FROM_BITS = new TYPECODE[1 << TYPECODE_SIZE];
+    private static final OPCODE[] OPCODES_FROM_BITS = new OPCODE[1 << OPCODE_SIZE];  // Same (ambiguous) mapping as OPCODES
+    static
+    {
+        for(String bitstring : TYPECODES.keySet()) { TYPECODES_FROM_BITS[Integer.parseInt(bitstring, 2)] = TYPECODES.get(bitstring); }
+        for(String bitstring : OPCODES.keySet()) { OPCODES_FROM_BITS[Integer.parseInt(bitstring, 2)] = OPCODES.get(bitstring); }
+        for(String bitstring : HEADERS_FROM_BITSTRINGS.keySet())
+        {
+            HEADER header = HEADERS_FROM_BITSTRINGS.get(bitstring);
+            int bits = Integer.parseInt(bitstring, 2);
+            HEADERS_FROM_BITS[bits] = header;
+            HEADER_INFOS[header.ordinal()] = new HeaderInfo(header,
+                                                            bits,
+                                                            TYPECODES_FROM_BITS[bits >>> OPCODE_SIZE],
+                                                            OPCODES_FROM_BITS[bits & ((1 << OPCODE_SIZE) - 1)],
+                                                            (MNEMONICS.get(header) != null) ? MNEMONICS.get(header) : INTERNAL_MNEMONICS.get(header),
+                                                            MEMORY_INSTRUCTIONS.contains(header),
+                                                            ALU_EXECUTE_INSTRUCTIONS.contains(header),
+                                                            BRANCH_INSTRUCTIONS.contains(header),
+                                                            QUASH_INSTRUCTIONS.contains(header),
+                                                            ERROR_INSTRUCTIONS.contains(header),
+                                                            DISPOSABLE_INSTRUCTIONS.contains(header));
+        }
+    }
+
+    public static HeaderInfo HEADER_INFO(HEADER header)
+    {
+        return HEADER_INFOS[header.ordinal()];
+    }
+
+    /**
+     * @param bits The first HEADER_SIZE bits of an instruction word
+     * @return The matching HEADER, or null if those bits aren't a valid header
+     */
+    public static HEADER HEADER_FROM_BITS(int bits)
+    {
+        return HEADERS_FROM_BITS[bits];
+    }
+
+    public static TYPECODE TYPECODE_FROM_BITS(int bits)
+    {
+        return TYPECODES_FROM_BITS[bits];
+    }
+
+    public static OPCODE OPCODE_FROM_BITS(int bits)
+    {
+        return OPCODES_FROM_BITS[bits];
+    }
+
     /*
         The following are all for enumeration. Do not use for computation.
      */
     public static final int AUX_TRUE = 1;
     public static final int AUX_FALSE = 0;
-    public static final String AUX_FETCHED = "fetched";
-    public static final String AUX_FINISHED = "final result has just been written or instruction has been handled manually by pipeline";
-    public static final String AUX_FINISHED_MEMORY_ACCESS_STAGE = "don't need to execute in memory access stage";
-    public static final String AUX_DECODED = "don't need to decode again";
-    public static final String AUX_JSR = "jump to subroutine";
-    public static final String AUX_PC_AT_FETCH = "pc when this instruction was fetched";
-    public static final String AUX_CURRENT_PC = "return address for JSR";
-    public static final String AUX_SOURCE_ = "source value ";
-    public static final String AUX_DEST_ = "destination address ";  // Do not use. Use AUX_DEST(int idx) instead.
-    public static final String AUX_RESULT = "final result of execution";  // Do not use.
-    public static final String AUX_RESULTS_ = "final results of execution ";  // Do not use. Use AUX_RESULT(int idx) instead.
-    public static final String AUX_SOURCE_TYPE_ = "source type ";  // Do not use.
-    public static final String AUX_DEST_TYPE_ = "destination type ";  // Do not use.
+    // Auxiliary bit slots. Each names one entry of an Instruction's aux-bit array, so lookups are plain array accesses
+    public static final int AUX_FETCHED = 0;
+    public static final int AUX_FINISHED = 1;  // Final result has just been written or instruction has been handled manually by pipeline
+    public static final int AUX_FINISHED_MEMORY_ACCESS_STAGE = 2;  // Don't need to execute in memory access stage
+    public static final int AUX_DECODED = 3;  // Don't need to decode again
+    public static final int AUX_JSR = 4;  // Jump to subroutine
+    public static final int AUX_PC_AT_FETCH = 5;  // PC when this instruction was fetched
+    public static final int AUX_CURRENT_PC = 6;  // Return address for JSR
+    public static final int AUX_RESULT = 7;  // Final result of execution. Do not use except for LOAD_PC.
+    public static final int AUX_FINISHED_CALL_EXECUTE = 8;
+    public static final int AUX_ERR_INVALID_FLAGS = 9;  // Header of the instruction that had invalid flags
+    public static final int AUX_ERR_INVALID_ARGS = 10;  // Header of the instruction that had invalid args
+    public static final int AUX_BUBBLE_CAUSE = 11;  // Counters category of a stall or quash: why it was inserted
+    public static final int AUX_BUBBLE_PC = 12;  // PC of the instruction a stall waited on or a quash was caused by
+    public static final int AUX_UNINDEXED_SLOTS = 13;
+    // Indexed slots are interleaved after the unindexed ones (slot = AUX_UNINDEXED_SLOTS + (idx * AUX_INDEXED_KINDS) + kind)
+    //  so that any index can be used without colliding. Do not use. Use the matching methods below instead.
+    public static final int AUX_SOURCE_ = 0;
+    public static final int AUX_SOURCE_READ_ = 1;
+    public static final int AUX_DEST_ = 2;
+    public static final int AUX_RESULTS_ = 3;
+    public static final int AUX_SOURCE_TYPE_ = 4;
+    public static final int AUX_DEST_TYPE_ = 5;
+    public static final int AUX_SOURCE_BANK_ = 6;
+    public static final int AUX_DEST_BANK_ = 7;
+    public static final int AUX_FLAG_ = 8;
+    public static final int AUX_HOLDING_ = 9;
+    public static final int AUX_INDEXED_KINDS = 10;
     // Use the following for identifying the type of a source/destination.
         public static final int AUX_SD_TYPE_REGISTER = 0;  // No such thing as a destination non-register; such descriptions in the ISA Spec are treated as sources
         public static final int AUX_SD_TYPE_IMMEDIATE = 1;
-    public static final String AUX_SOURCE_BANK_ = "source bank ";  // Do not use.
-    public static final String AUX_DEST_BANK_ = "destination bank ";  // Do not use.
     public static final List<String> prefixes = List.of(new String[] { RegisterFileModule.INDEXABLE_PREFIX, RegisterFileModule.INTERNAL_PREFIX, RegisterFileModule.CALL_PREFIX, RegisterFileModule.REVERSAL_PREFIX });
     // Use the following for identifying which register bank a source/destination should read to/write from.
     public static final int AUX_REG_BANK_INDEXABLES = prefixes.indexOf(RegisterFileModule.INDEXABLE_PREFIX);
     public static final int AUX_REG_BANK_INTERNALS = prefixes.indexOf(RegisterFileModule.INTERNAL_PREFIX);
     public static final int AUX_REG_BANK_CALL = prefixes.indexOf(RegisterFileModule.CALL_PREFIX);
     public static final int AUX_REG_BANK_REVERSAL = prefixes.indexOf(RegisterFileModule.REVERSAL_PREFIX);
-    public static final String AUX_FLAG_ = "flag ";  // Do not use. Use FLAG(int idx) instead.
     public static final int ERR_TYPE_NOT_IMPLEMENTED =  0b00000000000000000000000001;  // For when trying to execute() an instruction that has been intentionally left unimplemented
-    public static final int ERR_TYPE_INVALID_FLAGS =    0b00000000000000000000000010;  // Also do <err instruction>.addAuxBits(new Term(ERR_TYPE_INVALID_FLAGS, false, <word size> - HEADER_SIZE).toString(), new Term(HEADER_STRINGS.get(<err instruction>.getHeader()), false))
-    public static final int ERR_TYPE_INVALID_ARGS =     0b00000000000000000000000011;  // Also do <err instruction>.addAuxBits(new Term(ERR_TYPE_INVALID_ARGS, false, <word size> - HEADER_SIZE).toString(), new Term(HEADER_STRINGS.get(<err instruction>.getHeader()), false))
+    public static final int ERR_TYPE_INVALID_FLAGS =    0b00000000000000000000000010;  // Also do <err instruction>.addAuxBits(AUX_ERR_INVALID_FLAGS, new Term(HEADER_STRINGS.get(<err instruction>.getHeader()), false))
+    public static final int ERR_TYPE_INVALID_ARGS =     0b00000000000000000000000011;  // Also do <err instruction>.addAuxBits(AUX_ERR_INVALID_ARGS, new Term(HEADER_STRINGS.get(<err instruction>.getHeader()), false))
 
     /**
      * Checks whether the given Term (presumably from a getAuxBits() call) is set (i.e. not null) and equal to the given
@@ -407,65 +479,86 @@ public class Instructions
     /**
      * Returns unique auxiliary source label for given index.
      */
-    public static String AUX_SOURCE(int idx)
+    public static int AUX_SOURCE(int idx)
+    {
+        return AUX_INDEXED_SLOT(idx, AUX_SOURCE_);
+    }
+
+    /**
+     * Returns unique auxiliary label for whether the source at the given index has been read from its register.
+     */
+    public static int AUX_SOURCE_READ(int idx)
     {
-        return AUX_SOURCE_ + Integer.toString(idx);
+        return AUX_INDEXED_SLOT(idx, AUX_SOURCE_READ_);
+    }
+
+    /**
+     * Returns unique auxiliary label for the given index of an instruction's in-flight memory words.
+     */
+    public static int AUX_HOLDING(int idx)
+    {
+        return AUX_INDEXED_SLOT(idx, AUX_HOLDING_);
     }
 
     /**
      * Returns unique auxiliary source type label for given index.
      */
-    public static String AUX_SOURCE_TYPE(int idx)
+    public static int AUX_SOURCE_TYPE(int idx)
     {
-        return AUX_SOURCE_TYPE_ + Integer.toString(idx);
+        return AUX_INDEXED_SLOT(idx, AUX_SOURCE_TYPE_);
     }
 
     /**
      * Returns unique auxiliary destination label for given index.
      */
-    public static String AUX_DEST(int idx)
+    public static int AUX_DEST(int idx)
     {
-        return AUX_DEST_ + Integer.toString(idx);
+        return AUX_INDEXED_SLOT(idx, AUX_DEST_);
     }
 
     /**
      * Returns unique auxiliary destination type label for given index.
      */
-    public static String AUX_DEST_TYPE(int idx)
+    public static int AUX_DEST_TYPE(int idx)
     {
-        return AUX_DEST_TYPE_ + Integer.toString(idx);
+        return AUX_INDEXED_SLOT(idx, AUX_DEST_TYPE_);
     }
 
     /**
      * Returns unique auxiliary source register bank label for given index.
      */
-    public static String AUX_SOURCE_BANK(int idx)
+    public static int AUX_SOURCE_BANK(int idx)
     {
-        return AUX_SOURCE_BANK_ + Integer.toString(idx);
+        return AUX_INDEXED_SLOT(idx, AUX_SOURCE_BANK_);
     }
 
     /**
      * Returns unique auxiliary destination register bank label for given index.
      */
-    public static String AUX_DEST_BANK(int idx)
+    public static int AUX_DEST_BANK(int idx)
     {
-        return AUX_DEST_BANK_ + Integer.toString(idx);
+        return AUX_INDEXED_SLOT(idx, AUX_DEST_BANK_);
     }
 
     /**
      * Returns unique auxiliary result value label for given index.
      */
-    public static String AUX_RESULT(int idx)
+    public static int AUX_RESULT(int idx)
     {
-        return AUX_RESULTS_ + Integer.toString(idx);
+        return AUX_INDEXED_SLOT(idx, AUX_RESULTS_);
     }
 
     /**
      * Returns unique auxiliary flag label for given index.
      */
-    public static String FLAG(int idx)
+    public static int FLAG(int idx)
+    {
+        return AUX_INDEXED_SLOT(idx, AUX_FLAG_);
+    }
+
+    private static int AUX_INDEXED_SLOT(int idx, int kind)
     {
-        return AUX_FLAG_ + Integer.toString(idx);
+        return AUX_UNINDEXED_SLOTS + (idx * AUX_INDEXED_KINDS) + kind;
     }
 
     /**
@@ -1,16 +1,24 @@
 package instructions;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.Serializable;
 
-public class Term implements Cloneable
+public class Term implements Cloneable, Serializable
 {
+    private static final long serialVersionUID = 1L;
     public static final boolean NO_PAD = false;
     public static final boolean YES_PAD = true;
 
-    private final int[] bits;
+    public static final int MAX_WIDTH = Long.SIZE;
+
+    private final long value;  // Right-aligned; bits above width are always 0
+    private final int width;  // Number of bits, including any leading 0s. Between 1 and MAX_WIDTH
+
+    private Term(long value, int width)
+    {
+        if((width < 1) || (width > MAX_WIDTH)) { throw new IllegalArgumentException("Term must have between 1 and " + MAX_WIDTH + " bits, not " + width); }
+        this.value = value & WIDTH_MASK(width);
+        this.width = width;
+    }
 
     /**
      * Removes leading 0s.
@@ -18,7 +26,7 @@ public class Term implements Cloneable
      */
     public Term(int term)
     {
-        this(Integer.toUnsignedString(term, 2));
+        this(term, true);
     }
 
 
@@ -29,12 +37,12 @@ public class Term implements Cloneable
      */
     public Term(int term, boolean trim)
     {
-        this(Integer.toUnsignedString(term, 2), trim);
+        this(Integer.toUnsignedLong(term), BIT_LENGTH(Integer.toUnsignedLong(term)));
     }
 
     public Term(int term, boolean trim, int sizeToPadTo)
     {
-        this("0".repeat(sizeToPadTo - Integer.toUnsignedString(term, 2).length()) + Integer.toUnsignedString(term, 2), false);
+        this(Integer.toUnsignedLong(term), PADDED_WIDTH(BIT_LENGTH(Integer.toUnsignedLong(term)), sizeToPadTo));
     }
 
     /**
@@ -43,7 +51,7 @@ public class Term implements Cloneable
      */
     public Term(long term)
     {
-        this(Long.toUnsignedString(term, 2));
+        this(term, true);
     }
 
     /**
@@ -53,12 +61,12 @@ public class Term implements Cloneable
      */
     public Term(long term, boolean trim)
     {
-        this(Long.toUnsignedString(term, 2), trim);
+        this(term, BIT_LENGTH(term));
     }
 
     public Term(long term, boolean trim, int sizeToPadTo)
     {
-        this("0".repeat(sizeToPadTo - Long.toUnsignedString(term, 2).length()) + Long.toUnsignedString(term, 2), false);
+        this(term, PADDED_WIDTH(BIT_LENGTH(term), sizeToPadTo));
     }
 
     /**
@@ -67,7 +75,7 @@ public class Term implements Cloneable
      */
     public Term(String term)
     {
-        this(term.chars().map(c -> (c == '0') ? 0 : 1).toArray());
+        this(term, true);
     }
 
     /**
@@ -77,12 +85,12 @@ public class Term implements Cloneable
      */
     public Term(String term, boolean trim)
     {
-        this(term.chars().map(c -> (c == '0') ? 0 : 1).toArray(), trim);
+        this(PARSE_BITS(term), trim ? BIT_LENGTH(PARSE_BITS(term)) : term.length());
     }
 
     public Term(String term, boolean trim, int sizeToPadTo)
     {
-        this("0".repeat(sizeToPadTo - term.length()) + term, false);
+        this(PARSE_BITS(term), PADDED_WIDTH(term.length(), sizeToPadTo));
     }
 
     /**
@@ -100,59 +108,143 @@ public class Term implements Cloneable
      * @param trim Whether to remove leading 0s
      */
     public Term(int[] bits, boolean trim)
+    {
+        this(PACK_BITS(bits), trim ? BIT_LENGTH(PACK_BITS(bits)) : bits.length);
+    }
+
+    /**
+     * Builds a Term directly from its bits, without trimming.
+     * @param value Bits of the Term, right-aligned. Bits above width are ignored
+     * @param width Number of bits
+     */
+    public static Term OF(long value, int width)
+    {
+        return new Term(value, width);
+    }
+
+    private static final Term[] SMALL_VALUES = new Term[256];
+    static
+    {
+        for(int i = 0; i < SMALL_VALUES.length; i++)
+        {
+            SMALL_VALUES[i] = new Term(i, BIT_LENGTH(i));
+        }
+    }
+
+    /**
+     * Same as new Term(value) (removes leading 0s), but shares instances for small values.
+     */
+    public static Term VALUE_OF(long value)
+    {
+        return ((value >= 0) && (value < SMALL_VALUES.length)) ? SMALL_VALUES[(int)value] : new Term(value, BIT_LENGTH(value));
+    }
+
+    private static long WIDTH_MASK(int width)
+    {
+        return -1L >>> (Long.SIZE - width);
+    }
+
+    /**
+     * Number of significant bits (at least 1, so that 0 is represented as "0").
+     */
+    private static int BIT_LENGTH(long value)
+    {
+        return Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(value));
+    }
+
+    private static int PADDED_WIDTH(int length, int sizeToPadTo)
+    {
+        if(sizeToPadTo < length) { throw new IllegalArgumentException("Cannot pad " + length + " bits to " + sizeToPadTo); }
+        return sizeToPadTo;
+    }
+
+    /**
+     * Any character other than '0' is treated as a 1 bit.
+     */
+    private static long PARSE_BITS(String term)
+    {
+        if(term.isEmpty()) { throw new IllegalArgumentException("Term must have at least one bit"); }
+        long packed = 0L;
+        for(int i = 0; i < term.length(); i++)
+        {
+            packed = (packed << 1) | ((term.charAt(i) == '0') ? 0L : 1L);
+        }
+        return packed;
+    }
+
+    private static long PACK_BITS(int[] bits)
     {
         if(bits.length < 1) { throw new IllegalArgumentException("Term must have at least one bit"); }
-        List<Integer> bitsList = new ArrayList<>();
-        boolean hitSigFig = !trim;
-        for(int i = 0; i < bits.length; i++)
+        long packed = 0L;
+        for(int bit : bits)
         {
-            if(hitSigFig || (bits[i] == 1))
-            {
-                hitSigFig = true;
-                bitsList.add(bits[i]);
-            }
+            packed = (packed << 1) | ((bit == 1) ? 1L : 0L);
         }
-        if(bitsList.isEmpty()) { bitsList.add(0); }
-        this.bits = bitsList.stream().mapToInt(i->i).toArray();
+        return packed;
     }
 
     public int length()
     {
-        return bits.length;
+        return width;
     }
 
     @Override
     public String toString()
     {
-        return Arrays.stream(bits).mapToObj(String::valueOf).collect(Collectors.joining());
+        char[] chars = new char[width];
+        for(int i = 0; i < width; i++)
+        {
+            chars[i] = (((value >>> (width - 1 - i)) & 1L) == 1L) ? '1' : '0';
+        }
+        return new String(chars);
     }
 
     public int toInt()
     {
-        if(bits.length > Integer.SIZE) { throw new UnsupportedOperationException("More than " + Integer.SIZE + " bits"); }
-        return Integer.parseUnsignedInt(toString(), 2);
+        if(width > Integer.SIZE) { throw new UnsupportedOperationException("More than " + Integer.SIZE + " bits"); }
+        return (int)value;
     }
 
     public long toLong()
     {
-        if(bits.length > Long.SIZE) { throw new UnsupportedOperationException("More than " + Long.SIZE + " bits"); }
-        return Long.parseUnsignedLong(toString(), 2);
+        return value;
     }
 
-    public int[] getBits()
+    /**
+     * Interprets the most significant bit as a sign bit.
+     */
+    public long signExtend()
     {
-        return bits.clone();
+        return (value << (Long.SIZE - width)) >> (Long.SIZE - width);
     }
 
-    private static int[][] FIX_LENGTH(int[] aBits, int[] bBits)
+    /**
+     * Returns the bits from start (inclusive) to end (exclusive), indexed from the left as in toString(). Does not
+     *  remove leading 0s.
+     */
+    public Term slice(int start, int end)
     {
-        int[] smaller = (aBits.length < bBits.length) ? aBits : bBits;
-        int[] larger = (bBits.length > aBits.length) ? bBits : aBits;
-        int[] filler = new int[larger.length - smaller.length];
-        int[] filled = new int[filler.length + smaller.length];
-        System.arraycopy(filler, 0, filled, 0, filler.length);
-        System.arraycopy(smaller, 0, filled, filler.length, smaller.length);
-        return new int[][] {filled, larger};
+        if((start < 0) || (end > width) || (start >= end)) { throw new IndexOutOfBoundsException("Cannot slice [" + start + ", " + end + ") from " + width + " bits"); }
+        return new Term(value >>> (width - end), end - start);
+    }
+
+    /**
+     * Same as slice(start, end).toInt() without creating an intermediate Term.
+     */
+    public int sliceToInt(int start, int end)
+    {
+        if((start < 0) || (end > width) || (start >= end) || ((end - start) > Integer.SIZE)) { throw new IndexOutOfBoundsException("Cannot slice [" + start + ", " + end + ") from " + width + " bits into an int"); }
+        return (int)((value >>> (width - end)) & WIDTH_MASK(end - start));
+    }
+
+    public int[] getBits()
+    {
+        int[] bits = new int[width];
+        for(int i = 0; i < width; i++)
+        {
+            bits[i] = (int)((value >>> (width - 1 - i)) & 1L);
+        }
+        return bits;
     }
 
     public Term NOT()
@@ -177,50 +269,44 @@ public class Term implements Cloneable
 
     public static Term NOT(Term term)
     {
-        int[] ones = new int[term.length()];
-        Arrays.fill(ones, 1);
-        return XOR(term, new Term(ones, false));
+        return new Term(~term.value, term.width);
     }
 
+    // Binary operations zero-extend the shorter operand to the width of the longer one
+
     public static Term AND(Term a, Term b)
     {
-        int[][] fixedBits = FIX_LENGTH(a.getBits(), b.getBits());
-        int[] aBits = fixedBits[0];
-        int[] bBits = fixedBits[1];
-        for(int i = 0; i < aBits.length; i++)
-        {
-            aBits[i] = (aBits[i] + bBits[i]) / 2;
-        }
-        return new Term(aBits, false);
+        return new Term(a.value & b.value, Math.max(a.width, b.width));
     }
 
     public static Term OR(Term a, Term b)
     {
-        int[][] fixedBits = FIX_LENGTH(a.getBits(), b.getBits());
-        int[] aBits = fixedBits[0];
-        int[] bBits = fixedBits[1];
-        for(int i = 0; i < aBits.length; i++)
-        {
-            aBits[i] = Math.min(1, aBits[i] + bBits[i]);
-        }
-        return new Term(aBits, false);
+        return new Term(a.value | b.value, Math.max(a.width, b.width));
     }
 
     public static Term XOR(Term a, Term b)
     {
-        int[][] fixedBits = FIX_LENGTH(a.getBits(), b.getBits());
-        int[] aBits = fixedBits[0];
-        int[] bBits = fixedBits[1];
-        for(int i = 0; i < aBits.length; i++)
-        {
-            aBits[i] = (aBits[i] + bBits[i]) % 2;
-        }
-        return new Term(aBits, false);
+        return new Term(a.value ^ b.value, Math.max(a.width, b.width));
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return (o instanceof Term other) && (value == other.value) && (width == other.width);
     }
 
+    @Override
+    public int hashCode()
+    {
+        return (31 * Long.hashCode(value)) + width;
+    }
+
+    /**
+     * Terms are immutable, so this is only kept for compatibility.
+     */
     @Override
     public Term clone()
     {
-        return new Term(getBits(), false);
+        return this;
     }
 }
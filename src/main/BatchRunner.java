@@ -0,0 +1,287 @@
+package main;
+
+import memory.MemoryModule;
+import pipeline.Pipeline;
+import pipeline.PipelineTracer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static instructions.Instructions.*;
+import static main.GLOBALS.*;
+
+/**
+ * Headless entry point. Assembles (optionally) and runs the program in src/files/assembly to completion without
+ *  creating any Swing components, then prints the cycle, stall, and no-op counts.
+ * Usage: BatchRunner [--no-assemble] [--memory &lt;preset&gt; | --hierarchy &lt;spec&gt;] [--cycles &lt;maximum cycles&gt;] [--image &lt;dump&gt;]
+ *                    [--dump &lt;dump&gt;] [--checkpoint &lt;file&gt; [--checkpoint-every &lt;cycles&gt;]] [--restore &lt;file&gt;]
+ *                    [--fast-forward &lt;instructions&gt;] [--fast-forward-to-pc &lt;address&gt;] [--fast-forward-to &lt;mnemonic&gt;]
+ *                    [--warm-caches] [--sample-period &lt;instructions&gt; [--sample-warmup &lt;instructions&gt;]
+ *                    [--sample-window &lt;instructions&gt;] [--sample-seed &lt;seed&gt;]] [--stats] [--cpi-stack &lt;file&gt;]
+ *                    [--profile &lt;listing&gt; [--profile-source &lt;assembly&gt;]] [--trace &lt;log&gt; [--trace-window &lt;first&gt;:&lt;end&gt;]]
+ *  where &lt;preset&gt; names one of the START_MEM_* hierarchies in GLOBALS without its prefix (e.g. 100RAM9192), and
+ *  &lt;spec&gt; is a hierarchy as read by Sweep.PARSE_HIERARCHY().
+ *  --image starts every memory from a MemoryDump of a hierarchy of the same shape, and --dump writes one once the run
+ *  ends.
+ *  --checkpoint saves a Checkpoint every --checkpoint-every cycles (or once, when the cycle budget runs out), and
+ *  --restore continues from one instead of starting the program over. --cycles then counts from the restored cycle.
+ *  The --fast-forward options execute instructions functionally, without simulating cycles, until the given number
+ *  have executed, the given address is reached, or an instruction with the given mnemonic is reached (whichever comes
+ *  first), then simulate the rest. --warm-caches makes the functional accesses go through the caches, so that they
+ *  are not cold once simulation starts.
+ *  --sample-period runs the rest of the program with a Sampler instead of simulating all of it, and prints its
+ *  estimate of the total cycles. --sample-seed places each window at a random offset within its period.
+ *  --stats also prints the final counts as tab-separated lines for scripts to read, and --cpi-stack writes a CPIStack
+ *  of the run (JSON if the file name ends in .json, CSV otherwise).
+ *  --profile charges every simulated cycle to the instruction responsible with a Profiler, and writes the assembly
+ *  source (src/files/assembly/instructionAssembly.txt unless --profile-source says otherwise) annotated with each
+ *  line's cycles, executions, and misses.
+ *  --trace writes a PipelineTracer log of every instruction's trip through the stages, for the Konata pipeline
+ *  viewer, gzipped if the file name ends in .gz. --trace-window limits it to cycles first up to but not including end
+ *  (either may be left out, e.g. 100000: for everything from cycle 100,000 on).
+ */
+public class BatchRunner
+{
+    private static final String MEMORY_PRESET_PREFIX = "START_MEM_";
+    private static final String STAT_PREFIX = "STAT\t";  // Marks the lines that --stats prints
+    private static final long DEFAULT_SAMPLE_WARMUP = 2000;
+    private static final long DEFAULT_SAMPLE_WINDOW = 1000;
+
+    public static void main(String[] args) throws Exception
+    {
+        boolean runAssembler = Main.RUN_ASSEMBLER;
+        int[][][] memories = Main.STARTING_MEMORIES;
+        long maxCycles = Long.MAX_VALUE;
+        String imagePath = null;
+        String dumpPath = null;
+        String checkpointPath = null;
+        long checkpointInterval = 0;
+        String restorePath = null;
+        long fastForwardInstructions = -1;
+        long fastForwardPC = -1;
+        HEADER fastForwardMarker = null;
+        boolean warmCaches = false;
+        long samplePeriod = 0;
+        long sampleWarmup = DEFAULT_SAMPLE_WARMUP;
+        long sampleWindow = DEFAULT_SAMPLE_WINDOW;
+        Long sampleSeed = null;
+        boolean printStats = false;
+        String cpiStackPath = null;
+        String profilePath = null;
+        String profileSource = Profiler.DEFAULT_SOURCE;
+        String tracePath = null;
+        long traceStart = 0;
+        long traceEnd = Long.MAX_VALUE;
+        for(int i = 0; i < args.length; i++)
+        {
+            switch(args[i])
+            {
+                case "--no-assemble" -> runAssembler = false;
+                case "--memory" -> memories = FIND_MEMORY_PRESET(args[++i]);
+                case "--hierarchy" -> memories = Sweep.PARSE_HIERARCHY(args[++i]);
+                case "--cycles" -> maxCycles = Long.parseLong(args[++i]);
+                case "--image" -> imagePath = args[++i];
+                case "--dump" -> dumpPath = args[++i];
+                case "--checkpoint" -> checkpointPath = args[++i];
+                case "--checkpoint-every" -> checkpointInterval = Long.parseLong(args[++i]);
+                case "--restore" -> restorePath = args[++i];
+                case "--fast-forward" -> fastForwardInstructions = Long.parseLong(args[++i]);
+                case "--fast-forward-to-pc" -> fastForwardPC = Long.decode(args[++i]);
+                case "--fast-forward-to" -> fastForwardMarker = FIND_HEADER(args[++i]);
+                case "--warm-caches" -> warmCaches = true;
+                case "--sample-period" -> samplePeriod = Long.parseLong(args[++i]);
+                case "--sample-warmup" -> sampleWarmup = Long.parseLong(args[++i]);
+                case "--sample-window" -> sampleWindow = Long.parseLong(args[++i]);
+                case "--sample-seed" -> sampleSeed = Long.parseLong(args[++i]);
+                case "--stats" -> printStats = true;
+                case "--cpi-stack" -> cpiStackPath = args[++i];
+                case "--profile" -> profilePath = args[++i];
+                case "--profile-source" -> profileSource = args[++i];
+                case "--trace" -> tracePath = args[++i];
+                case "--trace-window" ->
+                {
+                    String[] window = args[++i].split(":", -1);
+                    if(window.length != 2) { throw new IllegalArgumentException("Trace window must be <first>:<end>"); }
+                    if(!window[0].isEmpty()) { traceStart = Long.parseLong(window[0]); }
+                    if(!window[1].isEmpty()) { traceEnd = Long.parseLong(window[1]); }
+                }
+                default -> throw new IllegalArgumentException("Unrecognized argument: " + args[i]);
+            }
+        }
+        if((restorePath == null) && (memories[Engine.UNIFIED_INDEX].length == 0) && (memories[Engine.DATA_INDEX].length == 0) && (memories[Engine.INSTRUCTION_INDEX].length == 0))
+        {
+            throw new IllegalArgumentException("Headless runs need a memory hierarchy; pass --memory <preset>");
+        }
+
+        if(checkpointInterval < 0) { throw new IllegalArgumentException("Checkpoint interval cannot be negative"); }
+
+        Engine engine;
+        if(restorePath != null)
+        {
+            engine = Checkpoint.RESTORE(restorePath);
+            System.out.println("Restored checkpoint at cycle " + String.format("%,d", engine.getContext().getTick()));
+        }
+        else
+        {
+            if(runAssembler) { Assembler.main(new String[0]); }
+
+            engine = Main.NEW_ENGINE(memories);
+        }
+        if(imagePath != null) { engine.loadMemoryImage(imagePath); }
+        Pipeline pipeline = engine.getPipeline();
+
+        if((fastForwardInstructions >= 0) || (fastForwardPC >= 0) || (fastForwardMarker != null))
+        {
+            long fastForwardStart = System.nanoTime();
+            long executed = engine.fastForward((fastForwardInstructions >= 0) ? fastForwardInstructions : Long.MAX_VALUE,
+                                               fastForwardPC, fastForwardMarker, warmCaches);
+            long fastForwardElapsed = Math.max(1, System.nanoTime() - fastForwardStart);
+            System.out.println("Fast-forwarded: " + String.format("%,d", executed) + " instructions in "
+                               + String.format("%,d", fastForwardElapsed / 1000000) + " ms ("
+                               + String.format("%,.2f", executed * 1000.0 / fastForwardElapsed) + " MIPS)");
+        }
+
+        if(profilePath != null) { pipeline.setProfiler(new Profiler()); }
+        PipelineTracer tracer = (tracePath != null) ? new PipelineTracer(pipeline, tracePath, traceStart, traceEnd) : null;
+        engine.setTracer(tracer);
+
+        long start = System.nanoTime();
+        if(samplePeriod > 0)
+        {
+            Sampler sampler = new Sampler(samplePeriod, sampleWarmup, sampleWindow, sampleSeed);
+            sampler.run(engine);
+            System.out.println("Sampled windows: " + String.format("%,d", sampler.getWindows()) + " ("
+                               + String.format("%,d", sampler.getDetailedCycles()) + " cycles simulated in detail)");
+            System.out.println("Instructions: " + String.format("%,d", sampler.getTotalInstructions()));
+            if(sampler.getWindows() == 0)
+            {
+                System.out.println("No complete windows; the program is shorter than one sampling period");
+            }
+            else
+            {
+                System.out.println("Estimated CPI: " + String.format("%,.4f", sampler.getMeanCPI()) + " +/- "
+                                   + String.format("%,.4f", sampler.getCPIHalfWidth()));
+                System.out.println("Estimated cycles: " + String.format("%,.0f", sampler.getEstimatedCycles()) + " +/- "
+                                   + String.format("%,.0f", sampler.getEstimatedCyclesHalfWidth()));
+            }
+        }
+        long remainingCycles = maxCycles;
+        while((remainingCycles > 0) && !engine.isHalted() && !engine.isErrored())
+        {
+            long slice = ((checkpointPath != null) && (checkpointInterval > 0)) ? Math.min(checkpointInterval, remainingCycles) : remainingCycles;
+            remainingCycles -= engine.run(slice);
+            if((checkpointPath != null) && !engine.isHalted() && !engine.isErrored())
+            {
+                Checkpoint.SAVE(engine, checkpointPath);
+                System.out.println("Checkpoint saved at cycle " + String.format("%,d", engine.getContext().getTick()));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if(tracer != null) { tracer.close(); }
+
+        System.out.println("Cycles: " + String.format("%,d", engine.getContext().getTick()));
+        System.out.println("Stalls: " + String.format("%,d", pipeline.getStalls()));
+        System.out.println("No-Ops: " + String.format("%,d", pipeline.getNoops()));
+        System.out.println("Skipped: " + String.format("%,d", engine.getSkippedCycles()) + " cycles");
+        System.out.println("Decode cache: " + String.format("%,d", pipeline.getDecodeHits()) + " hits, " + String.format("%,d", pipeline.getDecodeMisses()) + " misses");
+        for(int listIndex = Engine.UNIFIED_INDEX; listIndex <= Engine.INSTRUCTION_INDEX; listIndex++)
+        {
+            for(MemoryModule module : engine.getMemoryList(listIndex))
+            {
+                if(!module.isSparse()) { continue; }
+                System.out.println("Resident pages: " + String.format("%,d", module.getResidentPages()) + " of " + String.format("%,d", module.getNumPages())
+                                   + " (" + String.format("%,d", (long)module.getResidentPages() * module.getPageWords() * 4 / 1024) + " KiB)");
+            }
+        }
+        for(int listIndex = Engine.UNIFIED_INDEX; listIndex <= Engine.INSTRUCTION_INDEX; listIndex++)
+        {
+            List<MemoryModule> list = engine.getMemoryList(listIndex);
+            for(int i = list.size() - 1; i >= 0; i--)
+            {
+                MemoryModule module = list.get(i);
+                System.out.println(LEVEL_NAME(listIndex, i, list.size()) + ": " + String.format("%,d", module.getLoads()) + " loads (" + HIT_RATE(module.getLoadHits(), module.getLoads())
+                                   + " hits), " + String.format("%,d", module.getStores()) + " stores (" + HIT_RATE(module.getStoreHits(), module.getStores()) + " hits)");
+            }
+        }
+        System.out.println("Status: " + STATUS(engine));
+        System.out.println("Wall time: " + String.format("%,d", elapsed / 1000000) + " ms");
+        if(printStats)
+        {
+            for(Map.Entry<String, String> stat : STATS(engine).entrySet())
+            {
+                System.out.println(STAT_PREFIX + stat.getKey() + "\t" + stat.getValue());
+            }
+        }
+        if(cpiStackPath != null) { new CPIStack(engine).write(cpiStackPath); }
+        if(profilePath != null) { pipeline.getProfiler().writeListing(profileSource, profilePath, pipeline.getWordSize(), pipeline.numSpecialInstructions); }
+        if(dumpPath != null) { engine.dumpMemories(dumpPath); }
+    }
+
+    static String STATUS(Engine engine)
+    {
+        return engine.isHalted() ? "HALTED" : (engine.isErrored() ? "ERROR" : "CYCLE LIMIT");
+    }
+
+    /**
+     * The final counts of a run, by name: status, cycles, stalls, noops, instructions, then &lt;level&gt;.loads,
+     *  .loadHits, .stores, .storeHits, and .writebacks for every level, nearest first.
+     */
+    static Map<String, String> STATS(Engine engine)
+    {
+        Pipeline pipeline = engine.getPipeline();
+        Map<String, String> stats = new LinkedHashMap<>();
+        stats.put("status", STATUS(engine));
+        stats.put("cycles", Integer.toString(engine.getContext().getTick()));
+        stats.put("stalls", Integer.toString(pipeline.getStalls()));
+        stats.put("noops", Integer.toString(pipeline.getNoops()));
+        stats.put("instructions", Long.toString(pipeline.getRetired() + engine.getFastForwardedInstructions()));
+        for(int listIndex = Engine.UNIFIED_INDEX; listIndex <= Engine.INSTRUCTION_INDEX; listIndex++)
+        {
+            List<MemoryModule> list = engine.getMemoryList(listIndex);
+            for(int i = list.size() - 1; i >= 0; i--)
+            {
+                String level = LEVEL_NAME(listIndex, i, list.size());
+                stats.put(level + ".loads", Long.toString(list.get(i).getLoads()));
+                stats.put(level + ".loadHits", Long.toString(list.get(i).getLoadHits()));
+                stats.put(level + ".stores", Long.toString(list.get(i).getStores()));
+                stats.put(level + ".storeHits", Long.toString(list.get(i).getStoreHits()));
+                stats.put(level + ".writebacks", Long.toString(list.get(i).getWritebacks()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Names a module by its distance from the pipeline: L1D is the nearest data cache, L2D the one below it, L1I the
+     *  nearest instruction cache, and RAM the unified memory (RAM1, RAM2, ... from the top if there are several).
+     * @param index Position in its Engine memory list, which runs from the lowest level up
+     */
+    static String LEVEL_NAME(int listIndex, int index, int listSize)
+    {
+        int level = listSize - index;
+        return switch(listIndex)
+        {
+            case Engine.DATA_INDEX -> "L" + level + "D";
+            case Engine.INSTRUCTION_INDEX -> "L" + level + "I";
+            default -> (listSize == 1) ? "RAM" : "RAM" + level;
+        };
+    }
+
+    private static String HIT_RATE(long hits, long accesses)
+    {
+        return (accesses == 0) ? "-" : String.format("%.2f%%", 100.0 * hits / accesses);
+    }
+
+    private static HEADER FIND_HEADER(String mnemonic)
+    {
+        HEADER header = HEADERS_FROM_MNEMONICS.get(mnemonic.toUpperCase());
+        if(header == null) { throw new IllegalArgumentException("Unrecognized mnemonic: " + mnemonic); }
+        return header;
+    }
+
+    static int[][][] FIND_MEMORY_PRESET(String name) throws ReflectiveOperationException
+    {
+        return (int[][][])GLOBALS.class.getField(MEMORY_PRESET_PREFIX + name).get(null);
+    }
+}
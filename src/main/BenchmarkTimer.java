@@ -0,0 +1,144 @@
+package main;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * Times one piece of host code the way a microbenchmark harness would: a few warmup iterations of a fixed length to
+ *  let the JIT settle and find out how many calls fit in one, then measured iterations of that many calls each, so
+ *  that reading the clock isn't part of what is measured. Alongside time per operation it reports how much the code
+ *  allocated and how many collections ran while it was measured.
+ */
+public class BenchmarkTimer
+{
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private static volatile long sink;  // Results are folded in here so the JIT can't drop the work that made them
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final long iterationNanos;
+
+    /**
+     * What one benchmark measured.
+     * @param nanosPerOp Mean over the measured iterations
+     * @param nanosPerOpDeviation Sample standard deviation over the measured iterations
+     * @param bytesPerOp Bytes allocated by the measuring thread per operation, or -1 if the JVM can't tell
+     * @param collections Garbage collections, in any generation, during the measured iterations
+     */
+    public record Result(String name, long ops, double nanosPerOp, double nanosPerOpDeviation, double bytesPerOp, long collections)
+    {
+        public double getOpsPerSecond()
+        {
+            return 1e9 / nanosPerOp;
+        }
+
+        /**
+         * @return Megabytes allocated per second of measured time, or -1 if the JVM can't tell
+         */
+        public double getAllocationRate()
+        {
+            return (bytesPerOp < 0) ? -1 : bytesPerOp * getOpsPerSecond() / (1024 * 1024);
+        }
+    }
+
+    /**
+     * @param warmupIterations Unmeasured iterations before the measured ones. At least one always runs, to calibrate
+     * @param iterationMillis How long each iteration should take. Every iteration calls the code at least once,
+     *                        however long that takes
+     */
+    public BenchmarkTimer(int warmupIterations, int measuredIterations, long iterationMillis)
+    {
+        if((warmupIterations < 0) || (measuredIterations < 2)) { throw new IllegalArgumentException("Need a non-negative number of warmup iterations and at least two measured iterations"); }
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.iterationNanos = iterationMillis * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Keeps a result alive. Benchmarked code should pass whatever it computes here.
+     */
+    public static void CONSUME(long value)
+    {
+        sink ^= value;
+    }
+
+    /**
+     * @param body Runs the code once and returns how many operations that was (e.g. cycles simulated)
+     */
+    public Result measure(String name, LongSupplier body)
+    {
+        long warmupCalls = 0;
+        long warmupNanos = 0;
+        for(int i = 0; i < Math.max(1, warmupIterations); i++)
+        {
+            long start = System.nanoTime();
+            warmupCalls += iterate(body);
+            warmupNanos += System.nanoTime() - start;
+        }
+        long calls = Math.max(1, (long)((double)iterationNanos * warmupCalls / Math.max(1, warmupNanos)));
+
+        long allocatedBefore = ALLOCATED_BYTES();
+        long collectionsBefore = COLLECTIONS();
+        long totalOps = 0;
+        double sum = 0;
+        double sumSquares = 0;
+        for(int i = 0; i < measuredIterations; i++)
+        {
+            long start = System.nanoTime();
+            long ops = 0;
+            for(long call = 0; call < calls; call++) { ops += body.getAsLong(); }
+            double nanosPerOp = (double)(System.nanoTime() - start) / ops;
+            totalOps += ops;
+            sum += nanosPerOp;
+            sumSquares += nanosPerOp * nanosPerOp;
+        }
+        long allocatedAfter = ALLOCATED_BYTES();
+        long collections = COLLECTIONS() - collectionsBefore;
+
+        double mean = sum / measuredIterations;
+        double deviation = Math.sqrt(Math.max(0, (sumSquares - measuredIterations * mean * mean) / (measuredIterations - 1)));
+        double bytesPerOp = ((allocatedBefore < 0) || (allocatedAfter < 0)) ? -1 : (double)(allocatedAfter - allocatedBefore) / totalOps;
+        return new Result(name, totalOps, mean, deviation, bytesPerOp, collections);
+    }
+
+    /**
+     * Calls body until the iteration time is up.
+     * @return Number of calls
+     */
+    private long iterate(LongSupplier body)
+    {
+        long start = System.nanoTime();
+        long calls = 0;
+        do
+        {
+            CONSUME(body.getAsLong());
+            calls++;
+        }
+        while(System.nanoTime() - start < iterationNanos);
+        return calls;
+    }
+
+    /**
+     * @return Bytes allocated so far by the current thread, or -1 if the JVM doesn't track it
+     */
+    private static long ALLOCATED_BYTES()
+    {
+        if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemoryEnabled())
+        {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static long COLLECTIONS()
+    {
+        long collections = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            collections += Math.max(0, collector.getCollectionCount());
+        }
+        return collections;
+    }
+}
@@ -0,0 +1,299 @@
+package main;
+
+import instructions.Instruction;
+import instructions.Term;
+import memory.*;
+import pipeline.Pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+import static instructions.Instructions.*;
+import static main.GLOBALS.*;
+
+/**
+ * Host-side benchmarks of the simulator's hot paths, to quantify how a change to the simulator itself affects its
+ *  speed and allocation: Term construction and operations, Instruction header and aux bit lookups, decoding of every
+ *  header the benchmark programs use, MemoryModule loads and stores that hit and miss under each WRITE_MODE, register
+ *  file pushes, pops, and peeks, and whole-pipeline cycles per second on the benchmark programs.
+ * Usage: Benchmarks [--filter &lt;text&gt;] [--warmup &lt;iterations&gt;] [--iterations &lt;iterations&gt;] [--time &lt;ms&gt;]
+ *                   [--memory &lt;preset&gt;] [--program &lt;assembly directory&gt;]...
+ *  --filter only runs benchmarks whose names contain the given text. --program replaces the default programs
+ *  (DEFAULT_PROGRAMS) with directories holding an instructionAssembly.txt and dataAssembly.txt, and --memory picks the
+ *  START_MEM_* preset the pipeline benchmarks run under.
+ * Each program is assembled into src/files/bin, replacing whatever was there. For pipeline benchmarks an operation is
+ *  one simulated cycle, so ops/s is cycles per second.
+ */
+public class Benchmarks
+{
+    private static final String[] DEFAULT_PROGRAMS = { PATH_TO_FILES + "holding/MatrixBenchmarks/Dims10x5x10",
+                                                       PATH_TO_FILES + "holding/ExchangeSortBenchmarks/Dims100" };
+    private static final String DEFAULT_MEMORY_PRESET = "100RAM1024_10DATA256_2DATA128_1INST32LONG";
+    private static final int DEFAULT_WARMUP_ITERATIONS = 3;
+    private static final int DEFAULT_MEASURED_ITERATIONS = 5;
+    private static final long DEFAULT_ITERATION_MILLIS = 500;
+
+    private static final int CACHE_LINES = 64;  // Direct-mapped, so addresses CACHE_LINES * LINE_SIZE apart conflict
+    private static final int LINE_SIZE = 8;
+    private static final int STACK_FRAME = 17;  // Return pointer and 16 indexable registers, as a call pushes
+
+    /**
+     * One instruction word to decode, with a Pipeline built for the program it came from.
+     */
+    private record DecodeSample(Pipeline pipeline, Term word) {}
+
+    private final BenchmarkTimer timer;
+    private final String filter;
+    private final PrintStream report;
+
+    private Benchmarks(BenchmarkTimer timer, String filter, PrintStream report)
+    {
+        this.timer = timer;
+        this.filter = filter;
+        this.report = report;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        String filter = "";
+        int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+        int measuredIterations = DEFAULT_MEASURED_ITERATIONS;
+        long iterationMillis = DEFAULT_ITERATION_MILLIS;
+        int[][][] memories = BatchRunner.FIND_MEMORY_PRESET(DEFAULT_MEMORY_PRESET);
+        List<String> programs = new ArrayList<>();
+        for(int i = 0; i < args.length; i++)
+        {
+            switch(args[i])
+            {
+                case "--filter" -> filter = args[++i];
+                case "--warmup" -> warmupIterations = Integer.parseInt(args[++i]);
+                case "--iterations" -> measuredIterations = Integer.parseInt(args[++i]);
+                case "--time" -> iterationMillis = Long.parseLong(args[++i]);
+                case "--memory" -> memories = BatchRunner.FIND_MEMORY_PRESET(args[++i]);
+                case "--program" -> programs.add(args[++i]);
+                default -> throw new IllegalArgumentException("Unrecognized argument: " + args[i]);
+            }
+        }
+        if(programs.isEmpty()) { programs.addAll(List.of(DEFAULT_PROGRAMS)); }
+
+        // The assembler reports progress on System.out; only the results should reach it
+        PrintStream report = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try
+        {
+            Benchmarks benchmarks = new Benchmarks(new BenchmarkTimer(warmupIterations, measuredIterations, iterationMillis), filter, report);
+            report.printf("%-44s %14s %12s %16s %12s %10s %5s%n", "Benchmark", "ns/op", "+/-", "ops/s", "B/op", "MB/s", "GCs");
+            benchmarks.runTerms();
+            benchmarks.runMemories();
+            benchmarks.runRegisters();
+            benchmarks.runPrograms(programs, memories);
+        }
+        finally
+        {
+            System.setOut(report);
+        }
+    }
+
+    /**
+     * Measures and prints one benchmark, unless the filter leaves it out.
+     */
+    private void run(String name, LongSupplier body)
+    {
+        if(!name.contains(filter)) { return; }
+        BenchmarkTimer.Result result = timer.measure(name, body);
+        report.printf("%-44s %,14.2f %,12.2f %,16.0f %,12.1f %,10.1f %5d%n", result.name(), result.nanosPerOp(),
+                      result.nanosPerOpDeviation(), result.getOpsPerSecond(), result.bytesPerOp(),
+                      result.getAllocationRate(), result.collections());
+    }
+
+    private boolean anyMatch(String prefix)
+    {
+        return prefix.contains(filter) || filter.startsWith(prefix);
+    }
+
+    private void runTerms()
+    {
+        long[] counter = { 0 };
+        Term a = Term.OF(0x5A5A5A5AL, Integer.SIZE);
+        Term b = Term.OF(0x0F0F0F0FL, Integer.SIZE);
+        run("term.of", () -> { BenchmarkTimer.CONSUME(Term.OF(counter[0]++, Integer.SIZE).toLong()); return 1; });
+        run("term.valueOf", () -> { BenchmarkTimer.CONSUME(Term.VALUE_OF(counter[0]++).toLong()); return 1; });
+        run("term.new", () -> { BenchmarkTimer.CONSUME(new Term((int)counter[0]++, false).toLong()); return 1; });
+        run("term.and", () -> { BenchmarkTimer.CONSUME(a.AND(b).toLong()); return 1; });
+        run("term.or", () -> { BenchmarkTimer.CONSUME(a.OR(b).toLong()); return 1; });
+        run("term.xor", () -> { BenchmarkTimer.CONSUME(a.XOR(b).toLong()); return 1; });
+        run("term.not", () -> { BenchmarkTimer.CONSUME(a.NOT().toLong()); return 1; });
+        run("term.slice", () -> { BenchmarkTimer.CONSUME(a.slice(HEADER_SIZE, Integer.SIZE).toLong()); return 1; });
+        run("term.sliceToInt", () -> { BenchmarkTimer.CONSUME(a.sliceToInt(0, HEADER_SIZE)); return 1; });
+    }
+
+    /**
+     * Loads and stores of one word through a direct-mapped cache over a RAM, for each of the cache's write modes.
+     *  Hits reuse one address; misses alternate between two addresses that map to the same line.
+     */
+    private void runMemories()
+    {
+        for(WRITE_MODE mode : WRITE_MODE.values())
+        {
+            String prefix = "memory." + mode + ".";
+            if(!anyMatch(prefix)) { continue; }
+            for(boolean hit : new boolean[] { true, false })
+            {
+                String path = hit ? "hit" : "miss";
+                run(prefix + "load." + path, memoryAccess(mode, hit, false));
+                run(prefix + "store." + path, memoryAccess(mode, hit, true));
+            }
+        }
+    }
+
+    /**
+     * @return A body that builds its own hierarchy, then makes one access per call and ticks the hierarchy until it
+     *         is idle again
+     */
+    private static LongSupplier memoryAccess(WRITE_MODE mode, boolean hit, boolean store)
+    {
+        SimulationContext context = new SimulationContext();
+        MemoryScheduler scheduler = new MemoryScheduler(context);
+        MemoryModule ram = new MemoryModule(context.nextId(), MEMORY_KIND.RAM, MEMORY_TYPE.DATA, WORD_LENGTH.SHORT,
+                                            DEFAULT_RAM_WRITE_MODE, null, 1 << 16, LINE_SIZE, 10,
+                                            1, DEFAULT_REPLACEMENT_POLICY, scheduler);
+        MemoryModule cache = new MemoryModule(context.nextId(), MEMORY_KIND.CACHE, MEMORY_TYPE.DATA, WORD_LENGTH.SHORT,
+                                              mode, ram, CACHE_LINES, LINE_SIZE, 2,
+                                              1, DEFAULT_REPLACEMENT_POLICY, scheduler);
+        scheduler.setModules(List.of(ram, cache));
+        int[] words = new int[LINE_SIZE];
+        int[] access = { 0 };
+        return () ->
+        {
+            int address = hit ? 0 : (access[0]++ & 1) * CACHE_LINES * LINE_SIZE;
+            RequestChain chain;
+            if(store)
+            {
+                StoreRequest request = cache.newStoreRequest(-1, MEMORY_TYPE.DATA, address, 1);
+                request.setWord(0, access[0]);
+                chain = cache.newRequestChain(request);
+                cache.store(chain);
+            }
+            else
+            {
+                chain = cache.newRequestChain(cache.newLoadRequest(-1, MEMORY_TYPE.DATA, address, false));
+                cache.load(chain, words, 0);
+            }
+            while(scheduler.getNextEventTick() != Integer.MAX_VALUE)
+            {
+                context.advanceTick();
+                scheduler.processEvents();
+            }
+            chain.release();
+            BenchmarkTimer.CONSUME(words[0]);
+            return 1;
+        };
+    }
+
+    /**
+     * Pushes and pops a call's worth of registers on a stack, as CALL and RETURN do, and peeks into it. Operations are
+     *  single pushes, pops, or peeks.
+     */
+    private void runRegisters()
+    {
+        if(!anyMatch("registers.")) { return; }
+        RegisterFileModule stack = NEW_STACK(new SimulationContext(), REGISTER_FILE_MODE.STACK);
+        RegisterFileModule circular = NEW_STACK(new SimulationContext(), REGISTER_FILE_MODE.STACK_CIRCULAR);
+        run("registers.stack.pushPop", () -> PUSH_POP(stack));
+        run("registers.circular.pushPop", () -> PUSH_POP(circular));
+        for(int i = 0; i < STACK_FRAME; i++) { stack.store(i); }
+        run("registers.stack.peek", () ->
+        {
+            long sum = 0;
+            for(int i = 0; i < STACK_FRAME; i++) { sum += stack.peek(i); }
+            BenchmarkTimer.CONSUME(sum);
+            return STACK_FRAME;
+        });
+    }
+
+    private static RegisterFileModule NEW_STACK(SimulationContext context, REGISTER_FILE_MODE mode)
+    {
+        int[] lengths = new int[2 * STACK_FRAME];
+        Arrays.fill(lengths, Integer.SIZE);
+        String[] names = new String[lengths.length];
+        Arrays.setAll(names, Integer::toString);
+        return new RegisterFileModule(context.nextId(), mode, lengths, names);
+    }
+
+    private static long PUSH_POP(RegisterFileModule stack)
+    {
+        long sum = 0;
+        for(int i = 0; i < STACK_FRAME; i++) { stack.store(i); }
+        for(int i = 0; i < STACK_FRAME; i++) { sum += stack.load(); }
+        BenchmarkTimer.CONSUME(sum);
+        return 2 * STACK_FRAME;
+    }
+
+    /**
+     * Assembles each program in turn and runs it on the whole pipeline, then decodes one instruction of every header
+     *  the programs use between them.
+     */
+    private void runPrograms(List<String> programs, int[][][] memories) throws AssemblyError, IOException
+    {
+        Map<HEADER, DecodeSample> decodeSamples = new TreeMap<>();
+        boolean decoding = anyMatch("decode.") || anyMatch("instruction.");
+        for(String program : programs)
+        {
+            String name = "pipeline." + new File(program).getParentFile().getName() + "/" + new File(program).getName();
+            if(!decoding && !name.contains(filter)) { continue; }
+            ASSEMBLE(program);
+            if(decoding) { COLLECT_DECODE_SAMPLES(decodeSamples); }
+            run(name, () ->
+            {
+                Engine engine = Main.NEW_ENGINE(memories, true);
+                engine.run(Long.MAX_VALUE);
+                if(!engine.isHalted()) { throw new IllegalStateException(program + " did not halt"); }
+                return engine.getContext().getTick();
+            });
+        }
+        if(decodeSamples.isEmpty()) { return; }
+
+        DecodeSample sample = decodeSamples.values().iterator().next();
+        Instruction decoded = sample.pipeline().decode(new Instruction(sample.word()));
+        run("instruction.getHeader", () -> { BenchmarkTimer.CONSUME(decoded.getHeader().ordinal()); return 1; });
+        run("instruction.getAuxBits", () -> { BenchmarkTimer.CONSUME(decoded.getAuxBits(AUX_DECODED).toLong()); return 1; });
+        // Decoding includes building the Instruction, as fetch does; repeated words come from the decoded-instruction cache
+        for(Map.Entry<HEADER, DecodeSample> entry : decodeSamples.entrySet())
+        {
+            Pipeline pipeline = entry.getValue().pipeline();
+            Term word = entry.getValue().word();
+            run("decode." + entry.getKey(), () -> { BenchmarkTimer.CONSUME(pipeline.decode(new Instruction(word)).getHeader().ordinal()); return 1; });
+        }
+    }
+
+    private static void ASSEMBLE(String program) throws AssemblyError
+    {
+        new File(PATH_TO_BINARIES).mkdirs();
+        Assembler.subMain(new String[] { "-s", new File(program, "instructionAssembly.txt").getPath(),
+                                         "--data", new File(program, "dataAssembly.txt").getPath(), "-d", PATH_TO_BINARIES });
+    }
+
+    /**
+     * Adds the first instruction of each header in the binaries in PATH_TO_BINARIES that samples doesn't have yet.
+     */
+    private static void COLLECT_DECODE_SAMPLES(Map<HEADER, DecodeSample> samples) throws IOException
+    {
+        int[] startingParams = Main.FIND_START_PARAMS(PATH_TO_BINARIES);
+        Pipeline pipeline = Main.NEW_PIPELINE(Main.NEW_REGISTER_BANKS(new SimulationContext(), startingParams, Main.STARTING_PC), startingParams);
+        int wordsPerInstruction = startingParams[0] / WORD_SIZE_SHORT;
+        IntBuffer words = BinaryImage.MAP(new File(PATH_TO_BINARIES, BinaryImage.HEADER_FILE_NAME));
+        for(int i = Main.STARTING_PC; i + wordsPerInstruction <= words.limit(); i += wordsPerInstruction)
+        {
+            long word = 0;
+            for(int j = 0; j < wordsPerInstruction; j++) { word = (word << Integer.SIZE) | Integer.toUnsignedLong(words.get(i + j)); }
+            Term term = Term.OF(word, startingParams[0]);
+            HEADER header = HEADER_FROM_BITS(term.sliceToInt(0, HEADER_SIZE));
+            if(header != null) { samples.putIfAbsent(header, new DecodeSample(pipeline, term)); }
+        }
+    }
+}
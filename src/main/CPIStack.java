@@ -0,0 +1,194 @@
+package main;
+
+import memory.MemoryModule;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static instructions.Instructions.*;
+
+/**
+ * Breaks the cycles an Engine has simulated down by what the writeback stage did in each of them, from its Counters:
+ *  base cycles in which an instruction of each TYPECODE retired, then cycles lost to each cause of stall, quash, or
+ *  other bubble. Dividing each component by the instructions retired gives its contribution to CPI, and the
+ *  components add up to the overall CPI. Cycles that no category covers (the HALT cycle, which ends the run before
+ *  writeback) are listed as unaccounted.
+ * Written as JSON if the file name ends in .json and as CSV otherwise, alongside the instructions retired by HEADER
+ *  and every memory level's loads, stores, hits, misses, and writebacks.
+ * Fast-forwarded instructions took no cycles, so they count towards neither.
+ */
+public class CPIStack
+{
+    private static final String UNACCOUNTED = "unaccounted";
+
+    private final long cycles;
+    private final long retired;
+    private final Map<String, Long> components = new LinkedHashMap<>();  // Component name -> cycles, in stack order
+    private final Map<String, Long> retiredByHeader = new LinkedHashMap<>();
+    private final Map<String, Map<String, Long>> levels = new LinkedHashMap<>();  // Level name -> counter -> count, nearest first
+
+    public CPIStack(Engine engine)
+    {
+        Counters counters = engine.getContext().getCounters();
+        cycles = engine.getContext().getTick();
+        retired = counters.get(Counters.RETIRED);
+
+        long[] byType = new long[TYPECODE.values().length];
+        for(HEADER header : HEADER.values())
+        {
+            long count = counters.get(Counters.RETIRED_INDEX(header));
+            if(count == 0) { continue; }
+            byType[TYPE_OF(header).ordinal()] += count;
+            retiredByHeader.put(header.name(), count);
+        }
+        long accounted = 0;
+        for(TYPECODE type : TYPECODE.values())
+        {
+            if(byType[type.ordinal()] == 0) { continue; }
+            components.put("base." + type.name(), byType[type.ordinal()]);
+            accounted += byType[type.ordinal()];
+        }
+        for(int category = 0; category < Counters.BUBBLE_NAMES.length; category++)
+        {
+            components.put(Counters.BUBBLE_NAMES[category], counters.get(category));
+            accounted += counters.get(category);
+        }
+        components.put(UNACCOUNTED, cycles - accounted);
+
+        for(int listIndex = Engine.UNIFIED_INDEX; listIndex <= Engine.INSTRUCTION_INDEX; listIndex++)
+        {
+            List<MemoryModule> list = engine.getMemoryList(listIndex);
+            for(int i = list.size() - 1; i >= 0; i--)
+            {
+                MemoryModule module = list.get(i);
+                Map<String, Long> level = new LinkedHashMap<>();
+                level.put("loads", module.getLoads());
+                level.put("loadHits", module.getLoadHits());
+                level.put("loadMisses", module.getLoads() - module.getLoadHits());
+                level.put("stores", module.getStores());
+                level.put("storeHits", module.getStoreHits());
+                level.put("storeMisses", module.getStores() - module.getStoreHits());
+                level.put("writebacks", module.getWritebacks());
+                levels.put(BatchRunner.LEVEL_NAME(listIndex, i, list.size()), level);
+            }
+        }
+    }
+
+    public long getCycles()
+    {
+        return cycles;
+    }
+
+    public long getRetired()
+    {
+        return retired;
+    }
+
+    /**
+     * @return Component name -> cycles, in stack order, with base components first and unaccounted last
+     */
+    public Map<String, Long> getComponents()
+    {
+        return components;
+    }
+
+    /**
+     * @return Cycles per instruction retired, or 0 if none have
+     */
+    public double getCPI(long componentCycles)
+    {
+        return (retired == 0) ? 0 : (double)componentCycles / retired;
+    }
+
+    public void write(String path) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(path))))
+        {
+            if(path.toLowerCase().endsWith(".json")) { writeJSON(out); }
+            else { writeCSV(out); }
+        }
+    }
+
+    /**
+     * One counter,value,cpi row per component, with the total first, then one per retired HEADER and one per level
+     *  counter (e.g. L1D.loadMisses), which leave cpi blank.
+     */
+    private void writeCSV(PrintWriter out)
+    {
+        out.println("counter,value,cpi");
+        out.println("cycles," + cycles + "," + getCPI(cycles));
+        out.println("instructions," + retired + ",");
+        for(Map.Entry<String, Long> component : components.entrySet())
+        {
+            out.println(component.getKey() + "," + component.getValue() + "," + getCPI(component.getValue()));
+        }
+        for(Map.Entry<String, Long> header : retiredByHeader.entrySet())
+        {
+            out.println("retired." + header.getKey() + "," + header.getValue() + ",");
+        }
+        for(Map.Entry<String, Map<String, Long>> level : levels.entrySet())
+        {
+            for(Map.Entry<String, Long> counter : level.getValue().entrySet())
+            {
+                out.println(level.getKey() + "." + counter.getKey() + "," + counter.getValue() + ",");
+            }
+        }
+    }
+
+    private void writeJSON(PrintWriter out)
+    {
+        out.println("{");
+        out.println("  \"cycles\": " + cycles + ",");
+        out.println("  \"instructions\": " + retired + ",");
+        out.println("  \"cpi\": " + getCPI(cycles) + ",");
+        List<String> entries = new ArrayList<>();
+        for(Map.Entry<String, Long> component : components.entrySet())
+        {
+            entries.add("    { \"component\": \"" + component.getKey() + "\", \"cycles\": " + component.getValue()
+                        + ", \"cpi\": " + getCPI(component.getValue()) + " }");
+        }
+        out.println("  \"stack\": [");
+        out.println(String.join(",\n", entries));
+        out.println("  ],");
+        out.println("  \"retired\": " + JSON_OBJECT(retiredByHeader, "  ") + ",");
+        entries.clear();
+        for(Map.Entry<String, Map<String, Long>> level : levels.entrySet())
+        {
+            entries.add("    \"" + level.getKey() + "\": " + JSON_OBJECT(level.getValue(), "    "));
+        }
+        out.println("  \"memory\": {");
+        out.println(String.join(",\n", entries));
+        out.println("  }");
+        out.println("}");
+    }
+
+    /**
+     * @param indent Indentation of the line the object starts on
+     */
+    private static String JSON_OBJECT(Map<String, Long> values, String indent)
+    {
+        if(values.isEmpty()) { return "{}"; }
+        List<String> entries = new ArrayList<>();
+        for(Map.Entry<String, Long> value : values.entrySet())
+        {
+            entries.add(indent + "  \"" + value.getKey() + "\": " + value.getValue());
+        }
+        return "{\n" + String.join(",\n", entries) + "\n" + indent + "}";
+    }
+
+    /**
+     * @return The TYPECODE encoded in header, or INTERNAL for headers that only the pipeline creates
+     */
+    private static TYPECODE TYPE_OF(HEADER header)
+    {
+        String headerString = HEADER_STRINGS.get(header);
+        TYPECODE type = (headerString == null) ? null : TYPECODES.get(headerString.substring(0, TYPECODE_SIZE));
+        return (type == null) ? TYPECODE.INTERNAL : type;
+    }
+}
@@ -0,0 +1,57 @@
+package main;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Snapshot of the whole machine at a cycle boundary: the Engine (register banks, pipeline stages and the Instructions
+ *  in them, every MemoryModule's lines and in-flight request chains, the memory scheduler's pending events) and its
+ *  SimulationContext. Restoring one, in this process or a fresh one, continues the run exactly as if it had never
+ *  stopped.
+ * Written with Java serialization, so that request chains shared between Instructions and MemoryModules are restored
+ *  shared. Every class written declares its serialVersionUID, so a rebuild that leaves their fields alone can still
+ *  read earlier checkpoints. Any change to those fields must bump VERSION instead.
+ */
+public class Checkpoint
+{
+    public static final int MAGIC = 0x434B5054;  // "CKPT"
+    public static final int VERSION = 4;
+
+    /**
+     * Writes a checkpoint of the given Engine. The file is replaced in one step once the checkpoint is complete, so a
+     *  crash while saving leaves the previous checkpoint intact.
+     */
+    public static void SAVE(Engine engine, String absolutePath) throws IOException
+    {
+        File file = new File(absolutePath);
+        if(file.getAbsoluteFile().getParentFile() != null) { file.getAbsoluteFile().getParentFile().mkdirs(); }
+        File temp = new File(absolutePath + ".tmp");
+        try(ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeObject(engine);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint written by SAVE().
+     * @return The restored Engine, ready to continue running
+     */
+    public static Engine RESTORE(String absolutePath) throws IOException
+    {
+        try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(absolutePath))))
+        {
+            if(in.readInt() != MAGIC) { throw new IOException("Not a checkpoint: " + absolutePath); }
+            int version = in.readInt();
+            if(version != VERSION) { throw new IOException("Unsupported checkpoint version: " + version); }
+            return (Engine)in.readObject();
+        }
+        catch(ClassNotFoundException | ClassCastException e)
+        {
+            throw new IOException("Checkpoint does not match this build: " + absolutePath, e);
+        }
+    }
+}
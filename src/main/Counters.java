@@ -0,0 +1,105 @@
+package main;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static instructions.Instructions.*;
+
+/**
+ * Performance counters for one simulation, all kept in a single long[] so that the pipeline stages and MemoryModules
+ *  that update them do nothing more than an array increment.
+ * The pipeline's counters sit at fixed indices. Every cycle, the writeback stage classifies what it wrote back into
+ *  exactly one cycle category: an instruction retired (by HEADER), a stall (by the cause of the bubble), a quash, or
+ *  some other bubble. The categories then add up to the cycles simulated, which is what CPIStack breaks down.
+ * Each MemoryModule registers a block of MEMORY_COUNTERS counters of its own when it is built.
+ */
+public class Counters implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    // Cycle categories for bubbles, each also the cause carried by the bubble in its AUX_BUBBLE_CAUSE slot
+    public static final int STALL_REGISTER = 0;  // Decode waiting on a source register another instruction will write
+    public static final int STALL_INSTRUCTION_MEMORY = 1;  // Fetch waiting on the instruction memory
+    public static final int STALL_DATA_MEMORY = 2;  // Access waiting on the data memory
+    public static final int STALL_OTHER = 3;  // Stall with no recorded cause
+    public static final int QUASH_BRANCH = 4;  // Discarded by a taken branch
+    public static final int QUASH_CALL_RETURN = 5;  // Discarded by a CALL or RETURN
+    public static final int BUBBLE_EMPTY = 6;  // No-op bubble from a stage with nothing to pass on, as while filling
+    public static final int BUBBLE_OTHER = 7;  // Any other bubble, such as a flush before fast-forwarding
+    public static final int RETIRED_BY_HEADER = 8;  // Cycle categories for retired instructions, indexed by HEADER ordinal
+    public static final int RETIRED = RETIRED_BY_HEADER + HEADER.values().length;  // Not a category: total of those above
+    public static final int PIPELINE_COUNTERS = RETIRED + 1;
+    public static final String[] BUBBLE_NAMES = { "stall.register", "stall.instructionMemory", "stall.dataMemory",
+                                                  "stall.other", "quash.branch", "quash.callReturn", "bubble.empty",
+                                                  "bubble.other" };  // Indexed by category
+
+    // Offsets within a MemoryModule's block. Only timed accesses are counted, not functional ones
+    public static final int MEMORY_LOADS = 0;
+    public static final int MEMORY_LOAD_HITS = 1;
+    public static final int MEMORY_STORES = 2;
+    public static final int MEMORY_STORE_HITS = 3;
+    public static final int MEMORY_WRITEBACKS = 4;  // Dirty lines written to the next level when replaced
+    public static final int MEMORY_COUNTERS = 5;
+
+    private long[] values = new long[PIPELINE_COUNTERS];
+    private int size = PIPELINE_COUNTERS;
+    private int lastCategory = -1;  // Category of the most recently counted cycle
+
+    /**
+     * Reserves a block of counters, all 0.
+     * @return Index of the first
+     */
+    public int register(int count)
+    {
+        if(size + count > values.length) { values = Arrays.copyOf(values, Math.max(size + count, 2 * values.length)); }
+        int first = size;
+        size += count;
+        return first;
+    }
+
+    public void increment(int index)
+    {
+        values[index]++;
+    }
+
+    public long get(int index)
+    {
+        return values[index];
+    }
+
+    /**
+     * Counts one cycle in the given category, which must be below RETIRED.
+     */
+    public void countCycle(int category)
+    {
+        values[category]++;
+        if(category >= RETIRED_BY_HEADER) { values[RETIRED]++; }
+        lastCategory = category;
+    }
+
+    /**
+     * Counts the given number of further cycles in the same category as the last one counted, for cycles that the
+     *  Engine skips because each would repeat it.
+     */
+    public void repeatLastCycle(long cycles)
+    {
+        if(lastCategory == -1) { return; }
+        values[lastCategory] += cycles;
+        if(lastCategory >= RETIRED_BY_HEADER) { values[RETIRED] += cycles; }
+    }
+
+    /**
+     * @return Sum of the counters from first up to but not including end
+     */
+    public long sum(int first, int end)
+    {
+        long sum = 0;
+        for(int i = first; i < end; i++) { sum += values[i]; }
+        return sum;
+    }
+
+    public static int RETIRED_INDEX(HEADER header)
+    {
+        return RETIRED_BY_HEADER + header.ordinal();
+    }
+}
@@ -0,0 +1,425 @@
+package main;
+
+import instructions.Instruction;
+import memory.MemoryDump;
+import memory.MemoryModule;
+import memory.MemoryScheduler;
+import memory.RegisterFileModule;
+import pipeline.FunctionalExecutor;
+import pipeline.Pipeline;
+import pipeline.PipelineTracer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static instructions.Instructions.*;
+import static main.GLOBALS.*;
+
+/**
+ * Owns the cycle loop and the memory hierarchy. Has no Swing dependencies so that it can be driven either by the
+ *  Simulator UI or headlessly by BatchRunner. Everything one simulation changes hangs off its Engine and
+ *  SimulationContext, so several Engines can run at once in one JVM, each on its own thread.
+ */
+public class Engine implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    public static final int UNIFIED_INDEX = 0;
+    public static final int DATA_INDEX = 1;
+    public static final int INSTRUCTION_INDEX = 2;
+    private static final int MIN_CYCLES_TO_SKIP = 8;  // Shorter waits are simulated
+    private static final int QUIET_CYCLES_BEFORE_SKIP = 6;  // One more than the stages, so every bubble in flight was made while nothing changed
+
+    private final RegisterFileModule[] registerBanks;
+    private final Pipeline pipeline;
+    private final ArrayList<List<MemoryModule>> memoryLists;  // Unified, data, instruction (in that order), each nearest-last
+    private final SimulationContext context;
+    private final MemoryScheduler memoryScheduler;
+    private boolean halted = false;
+    private boolean errored = false;
+    private long skippedCycles = 0;
+    private long fastForwardedInstructions = 0;
+    private transient PipelineTracer tracer;  // Null unless tracing
+    private transient boolean quiet = false;
+
+    public Engine(SimulationContext context, RegisterFileModule[] registerBanks, Pipeline pipeline)
+    {
+        this.context = context;
+        this.memoryScheduler = new MemoryScheduler(context);
+        this.registerBanks = registerBanks;
+        this.pipeline = pipeline;
+        pipeline.setCounters(context.getCounters());
+        memoryLists = new ArrayList<>(List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+    }
+
+    /**
+     * Records the pipeline's stages in the given PipelineTracer at the end of every cycle from now on, or stops
+     *  tracing if null. Closing it is left to the caller.
+     */
+    public void setTracer(PipelineTracer tracer)
+    {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Stops this Engine from reporting its progress on System.out: the registers every PRINT_CHECKPOINT_INDEX cycles,
+     *  HALT and error instructions, and the binaries loaded into memory. For drivers that run many Engines at once,
+     *  whose output would otherwise interleave. Set it before loadMemories() to silence the loading as well.
+     */
+    public void setQuiet(boolean quiet)
+    {
+        this.quiet = quiet;
+    }
+
+    public Pipeline getPipeline()
+    {
+        return pipeline;
+    }
+
+    public SimulationContext getContext()
+    {
+        return context;
+    }
+
+    public RegisterFileModule[] getRegisterBanks()
+    {
+        return registerBanks;
+    }
+
+    public List<MemoryModule> getMemoryList(int listIndex)
+    {
+        return memoryLists.get(listIndex);
+    }
+
+    /**
+     * @return Every MemoryModule, in tick order: unified, data, then instruction, each furthest first
+     */
+    public List<MemoryModule> getMemoryModules()
+    {
+        List<MemoryModule> modules = new ArrayList<>();
+        for(List<MemoryModule> memoryList : memoryLists)
+        {
+            modules.addAll(memoryList);
+        }
+        return modules;
+    }
+
+    /**
+     * Writes every MemoryModule to a single sparse MemoryDump, in the order of getMemoryModules().
+     */
+    public void dumpMemories(String absolutePath) throws IOException
+    {
+        MemoryDump.WRITE(absolutePath, getMemoryModules());
+    }
+
+    /**
+     * Replaces the contents of every MemoryModule with those of a dump written by dumpMemories() from a hierarchy of
+     *  the same shape, e.g. to start from a memory image instead of the freshly loaded binaries.
+     */
+    public void loadMemoryImage(String absolutePath) throws IOException
+    {
+        MemoryDump.READ(absolutePath, getMemoryModules());
+        registerBanks[INTERNAL_BANK_INDEX].store(CM_INDEX, getMemoryModules().getFirst().getMemoryAddress());
+    }
+
+    public boolean isHalted()
+    {
+        return halted;
+    }
+
+    public boolean isErrored()
+    {
+        return errored;
+    }
+
+    /**
+     * Appends a new MemoryModule above the current nearest module of the given list (or above the nearest unified
+     *  module if the list is empty). The first module ever created is loaded with the binaries and sets CM. The
+     *  pipeline's nearest instruction/data caches are updated as appropriate.
+     * @param listIndex UNIFIED_INDEX/DATA_INDEX/INSTRUCTION_INDEX
+     * @return The new module
+     */
+    public MemoryModule addMemoryModule(int listIndex, MEMORY_KIND kind, MEMORY_TYPE type, WORD_LENGTH wordLength,
+                                        int columnSize, int lineSize, int accessDelay)
+    {
+        return addMemoryModule(listIndex, kind, type, wordLength, columnSize, lineSize, accessDelay,
+                               DEFAULT_ASSOCIATIVITY, DEFAULT_REPLACEMENT_POLICY);
+    }
+
+    /**
+     * Same as above, with a given associativity and replacement policy.
+     */
+    public MemoryModule addMemoryModule(int listIndex, MEMORY_KIND kind, MEMORY_TYPE type, WORD_LENGTH wordLength,
+                                        int columnSize, int lineSize, int accessDelay,
+                                        int numWays, REPLACEMENT_POLICY replacementPolicy)
+    {
+        return addMemoryModule(listIndex, kind, type, wordLength, columnSize, lineSize, accessDelay, numWays, replacementPolicy,
+                               kind.equals(MEMORY_KIND.CACHE) ? DEFAULT_CACHE_WRITE_MODE : DEFAULT_RAM_WRITE_MODE);
+    }
+
+    /**
+     * Same as above, with a given write mode.
+     */
+    public MemoryModule addMemoryModule(int listIndex, MEMORY_KIND kind, MEMORY_TYPE type, WORD_LENGTH wordLength,
+                                        int columnSize, int lineSize, int accessDelay,
+                                        int numWays, REPLACEMENT_POLICY replacementPolicy, WRITE_MODE writeMode)
+    {
+        List<MemoryModule> list = memoryLists.get(listIndex);
+        List<MemoryModule> unified = memoryLists.get(UNIFIED_INDEX);
+        MemoryModule next = !list.isEmpty() ? list.getLast() : (!unified.isEmpty() ? unified.getLast() : null);
+        MemoryModule newModule = new MemoryModule(context.nextId(),
+                                                  kind,
+                                                  type,
+                                                  wordLength,
+                                                  writeMode,
+                                                  next,
+                                                  columnSize,
+                                                  lineSize,
+                                                  accessDelay,
+                                                  numWays,
+                                                  replacementPolicy,
+                                                  memoryScheduler);
+        list.add(newModule);
+        memoryScheduler.setModules(getMemoryModules());
+        if(next == null)
+        {
+            newModule.storeFiles(PATH_TO_BINARIES, 0, !quiet);
+            registerBanks[INTERNAL_BANK_INDEX].store(CM_INDEX, newModule.getMemoryAddress());
+        }
+        if((memoryLists.get(INSTRUCTION_INDEX).isEmpty() && kind.equals(MEMORY_KIND.RAM)) || (type.equals(MEMORY_TYPE.INSTRUCTION) && kind.equals(MEMORY_KIND.CACHE)))
+        {
+            pipeline.setNearestInstructionCache(newModule);
+        }
+        if((memoryLists.get(DATA_INDEX).isEmpty() && kind.equals(MEMORY_KIND.RAM)) || (type.equals(MEMORY_TYPE.DATA) && kind.equals(MEMORY_KIND.CACHE)))
+        {
+            pipeline.setNearestDataCache(newModule);
+        }
+        return newModule;
+    }
+
+    /**
+     * Builds the hierarchy described by one of the START_MEM_* presets in GLOBALS.
+     * @param memories Each int[][] corresponds to the unified, data, or instruction memories (in that order).
+     *                 Each int[] is one module in the form of [ delay, number of lines, number of words per line, word size ],
+     *                 optionally followed by [ number of ways, REPLACEMENT_POLICY ordinal, WRITE_MODE ordinal ]
+     */
+    public void loadMemories(int[][][] memories)
+    {
+        for(int[] unifiedModule : memories[UNIFIED_INDEX])
+        {
+            addMemoryModule(UNIFIED_INDEX, MEMORY_KIND.RAM, MEMORY_TYPE.DATA, GET_WORD_LENGTH(unifiedModule[3]),
+                            unifiedModule[1], unifiedModule[2], unifiedModule[0],
+                            GET_NUM_WAYS(unifiedModule), GET_REPLACEMENT_POLICY(unifiedModule),
+                            GET_WRITE_MODE(unifiedModule, MEMORY_KIND.RAM));
+        }
+        for(int[] dataModule : memories[DATA_INDEX])
+        {
+            addMemoryModule(DATA_INDEX, MEMORY_KIND.CACHE, MEMORY_TYPE.DATA, GET_WORD_LENGTH(dataModule[3]),
+                            dataModule[1], dataModule[2], dataModule[0],
+                            GET_NUM_WAYS(dataModule), GET_REPLACEMENT_POLICY(dataModule),
+                            GET_WRITE_MODE(dataModule, MEMORY_KIND.CACHE));
+        }
+        for(int[] instructionModule : memories[INSTRUCTION_INDEX])
+        {
+            addMemoryModule(INSTRUCTION_INDEX, MEMORY_KIND.CACHE, MEMORY_TYPE.INSTRUCTION, GET_WORD_LENGTH(instructionModule[3]),
+                            instructionModule[1], instructionModule[2], instructionModule[0],
+                            GET_NUM_WAYS(instructionModule), GET_REPLACEMENT_POLICY(instructionModule),
+                            GET_WRITE_MODE(instructionModule, MEMORY_KIND.CACHE));
+        }
+    }
+
+    public static int GET_NUM_WAYS(int[] module)
+    {
+        return (module.length > 4) ? module[4] : DEFAULT_ASSOCIATIVITY;
+    }
+
+    public static REPLACEMENT_POLICY GET_REPLACEMENT_POLICY(int[] module)
+    {
+        return (module.length > 5) ? REPLACEMENT_POLICY.values()[module[5]] : DEFAULT_REPLACEMENT_POLICY;
+    }
+
+    public static WRITE_MODE GET_WRITE_MODE(int[] module, MEMORY_KIND kind)
+    {
+        if(module.length > 6) { return WRITE_MODE.values()[module[6]]; }
+        return kind.equals(MEMORY_KIND.CACHE) ? DEFAULT_CACHE_WRITE_MODE : DEFAULT_RAM_WRITE_MODE;
+    }
+
+    private static WORD_LENGTH GET_WORD_LENGTH(int wordSize)
+    {
+        return (wordSize == WORD_SIZE_LONG) ? WORD_LENGTH.LONG : WORD_LENGTH.SHORT;
+    }
+
+    /**
+     * Simulates one clock cycle: pipeline pre-execution, a tick of every MemoryModule with an event this cycle, then
+     *  pipeline execution.
+     * @param activePipeline Whether the pipeline should behave as pipelined this cycle
+     * @return The instruction leaving the pipeline this cycle, or null if HALT was reached
+     */
+    public Instruction cycle(boolean activePipeline)
+    {
+        int tick = context.advanceTick();
+        if((tick % PRINT_CHECKPOINT_INDEX) == 0) { printCheckpoint(tick); }
+        boolean aboutToHalt = pipeline.preExecute();  // Happens before memory cycled, so memory cycling can be "in-line" with pipeline cycling
+        memoryScheduler.processEvents();
+        if(aboutToHalt)
+        {
+            if(!quiet) { System.out.println("HALT ENCOUNTERED"); }
+            pipeline.openWrite();
+            halted = true;
+            return null;
+        }
+        Instruction output = pipeline.execute(activePipeline);
+        if(tracer != null) { tracer.record(context.getTick(), output); }
+        if(output.getHeaderInfo().error())
+        {
+            if(!quiet) { System.out.println("ERROR ENCOUNTERED: " + output.word.toString()); }
+            errored = true;
+        }
+        return output;
+    }
+
+    private void printCheckpoint(int tick)
+    {
+        if(quiet) { return; }
+        System.out.println("CYCLE: " + String.format("%,d", tick));
+        for(String line : registerBanks[INDEXABLE_BANK_INDEX].getDisplayText(10).split("\n"))
+        {
+            System.out.println("\t" + line);
+        }
+    }
+
+    /**
+     * Same as below, with no limit on the number of instructions written back.
+     */
+    public long run(long maxCycles)
+    {
+        return run(maxCycles, Long.MAX_VALUE);
+    }
+
+    /**
+     * Cycles the active pipeline until HALT, an error instruction, or the cycle or instruction budget is reached.
+     * While the pipeline is stuck waiting on memory, every cycle repeats the one before it until the next memory
+     *  event. A cycle in which no fetched instruction moved or retired, no register was written, and no MemoryModule
+     *  ticked is quiet. Once enough consecutive cycles have been quiet for whatever is left in flight to have been
+     *  made during them, the cycles up to the next scheduled memory event are skipped: the clock and the pipeline's
+     *  counters are advanced as if each of them had been simulated. Telling a quiet cycle apart only takes comparing
+     *  a few counters, so it costs next to nothing when nothing can be skipped.
+     * @param maxCycles Maximum number of cycles to simulate in this call
+     * @param maxInstructions Maximum number of instructions to write back in this call
+     * @return Number of cycles simulated in this call
+     */
+    public long run(long maxCycles, long maxInstructions)
+    {
+        long cycles = 0;
+        long retiredBefore = pipeline.getRetired();
+        long lastProgress = getProgress();
+        int quietCycles = 0;  // Consecutive cycles, up to the last, in which nothing progressed
+        while((cycles < maxCycles) && (pipeline.getRetired() - retiredBefore < maxInstructions) && !halted && !errored)
+        {
+            long decodeHits = pipeline.getDecodeHits();
+            long decodeMisses = pipeline.getDecodeMisses();
+            cycle(true);
+            cycles++;
+            if(halted || errored) { break; }
+
+            long progress = getProgress();
+            quietCycles = ((progress == lastProgress) && (pipeline.getDecodeMisses() == decodeMisses)) ? quietCycles + 1 : 0;
+            lastProgress = progress;
+            if(quietCycles < QUIET_CYCLES_BEFORE_SKIP) { continue; }
+            int ticksUntilEvent = getTicksUntilMemoryEvent();
+            if((ticksUntilEvent < MIN_CYCLES_TO_SKIP) || (ticksUntilEvent == Integer.MAX_VALUE)) { continue; }
+            int skip = (int)Math.min(ticksUntilEvent, maxCycles - cycles);
+            skipCycles(skip, pipeline.getDecodeHits() - decodeHits);
+            cycles += skip;
+            skippedCycles += skip;
+        }
+        return cycles;
+    }
+
+    /**
+     * Executes instructions functionally, without simulating any cycles, until HALT, an error instruction, or one of
+     *  the given stopping points. run() then carries on from there. Instructions in the pipeline that have not been
+     *  written back are flushed first, and are the first to be executed.
+     * @param maxInstructions Maximum number of instructions to execute
+     * @param stopPC Address of the first instruction to leave for run(), or -1 for none
+     * @param marker Header of the first instruction to leave for run(), or null for none
+     * @param warmCaches Whether to access memory through the nearest caches, so that they hold what they would have
+     *                   had the instructions been simulated. Otherwise, only the lowest level of memory is accessed,
+     *                   and the caches are left cold. Required once any cycles have been simulated
+     * @return Number of instructions executed
+     */
+    public long fastForward(long maxInstructions, long stopPC, HEADER marker, boolean warmCaches)
+    {
+        // Once cycles have run, the caches may hold the only up-to-date copy of a line
+        if((context.getTick() != 0) && !warmCaches) { throw new IllegalStateException("Fast-forwarding after the first cycle must go through the caches"); }
+        pipeline.flush();
+        MemoryModule lowest = getMemoryModules().getFirst();
+        FunctionalExecutor executor = pipeline.newFunctionalExecutor(warmCaches ? pipeline.getNearestInstructionCache() : lowest,
+                                                                     warmCaches ? pipeline.getNearestDataCache() : lowest);
+        long executed = executor.run(maxInstructions, stopPC, marker);
+        halted = executor.isHalted();
+        errored = executor.isErrored();
+        if(halted && !quiet) { System.out.println("HALT ENCOUNTERED"); }
+        if(errored && !quiet) { System.out.println("ERROR ENCOUNTERED: " + executor.getErrorInstruction().word.toString()); }
+        fastForwardedInstructions += executed;
+        return executed;
+    }
+
+    /**
+     * @return Total number of instructions that fastForward() has executed
+     */
+    public long getFastForwardedInstructions()
+    {
+        return fastForwardedInstructions;
+    }
+
+    /**
+     * @return Total number of cycles that run() has skipped instead of simulating
+     */
+    public long getSkippedCycles()
+    {
+        return skippedCycles;
+    }
+
+    /**
+     * @return Number of upcoming cycles in which no MemoryModule is scheduled (Integer.MAX_VALUE if none are)
+     */
+    private int getTicksUntilMemoryEvent()
+    {
+        int nextEventTick = memoryScheduler.getNextEventTick();
+        return (nextEventTick == Integer.MAX_VALUE) ? Integer.MAX_VALUE : (nextEventTick - context.getTick() - 1);
+    }
+
+    /**
+     * @return Sum of everything that changes when the simulation does more than repeat its last cycle: stage to stage
+     *  moves and retirements of fetched instructions, register writes, and MemoryModule ticks. Pending register
+     *  counts only change when an instruction moves or retires, and outstanding requests only when a module ticks
+     */
+    private long getProgress()
+    {
+        long progress = pipeline.getMoves() + pipeline.getRetired() + memoryScheduler.getTicksProcessed();
+        for(RegisterFileModule bank : registerBanks)
+        {
+            progress += bank.getModifications();
+        }
+        return progress;
+    }
+
+    /**
+     * Advances everything by the given number of cycles, each a repeat of the last one simulated. Memory needs no
+     *  updating, since none of its events fall within them.
+     */
+    private void skipCycles(int skip, long decodeHitsPerCycle)
+    {
+        pipeline.creditRepeatedCycles(skip, decodeHitsPerCycle);
+        int firstTick = context.getTick() + 1;
+        int lastTick = context.advanceTicks(skip);
+        // Registers do not change while skipping, so each checkpoint skipped over prints as it would have
+        int firstCheckpoint = (firstTick + PRINT_CHECKPOINT_INDEX - 1) / PRINT_CHECKPOINT_INDEX * PRINT_CHECKPOINT_INDEX;
+        for(int checkpoint = firstCheckpoint; checkpoint <= lastTick; checkpoint += PRINT_CHECKPOINT_INDEX)
+        {
+            printCheckpoint(checkpoint);
+        }
+    }
+}
@@ -2,7 +2,6 @@ package main;
 
 import memory.RegisterFileModule;
 
-import java.awt.*;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -155,6 +154,19 @@ public class GLOBALS
             new int[] {1, 8, DEFAULT_LINE_SIZE, WORD_SIZE_LONG}
         }
     };
+    // Spans the whole address space; the lowest-level RAM only allocates the pages that are written
+    public static final int[][][] START_MEM_100RAMMAX_10DATA256_2DATA128_1INST32LONG = new int[][][] {
+        new int[][] {
+            new int[] {100, (1 << GLOBALS.ADDRESS_SIZE) / DEFAULT_LINE_SIZE, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT}
+        },
+        new int[][] {
+            new int[] {10, 256, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT},
+            new int[] {2, 128, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT}
+        },
+        new int[][] {
+            new int[] {1, 32, DEFAULT_LINE_SIZE, WORD_SIZE_LONG}
+        }
+    };
     public static final int[][][] START_MEM_100RAM9192_20DATA1024_10DATA256_2DATA128_1INST32LONG = new int[][][] {
         new int[][] {
             new int[] {100, 9192, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT}
@@ -182,13 +194,32 @@ public class GLOBALS
         }
     };
 
-    public static int currentId = 0;
-    public static int GET_ID()
-    {
-        return currentId++;
-    }
-
-    public static int CURRENT_TICK = 0;
+    // Optional fifth, sixth, and seventh entries give the number of ways, the REPLACEMENT_POLICY ordinal, and the
+    //  WRITE_MODE ordinal
+    public static final int[][][] START_MEM_100RAM1024_10DATA256W8_2DATA128W4_1INST32W2LONG = new int[][][] {
+        new int[][] {
+            new int[] {100, 1024, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT}
+        },
+        new int[][] {
+            new int[] {10, 256, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT, 8, REPLACEMENT_POLICY.LRU.ordinal()},
+            new int[] {2, 128, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT, 4, REPLACEMENT_POLICY.LRU.ordinal()}
+        },
+        new int[][] {
+            new int[] {1, 32, DEFAULT_LINE_SIZE, WORD_SIZE_LONG, 2, REPLACEMENT_POLICY.LRU.ordinal()}
+        }
+    };
+    public static final int[][][] START_MEM_100RAM1024_10DATA256W8_2DATA128W4_1INST32W2LONG_PLRU = new int[][][] {
+        new int[][] {
+            new int[] {100, 1024, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT}
+        },
+        new int[][] {
+            new int[] {10, 256, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT, 8, REPLACEMENT_POLICY.TREE_PLRU.ordinal()},
+            new int[] {2, 128, DEFAULT_LINE_SIZE, WORD_SIZE_SHORT, 4, REPLACEMENT_POLICY.TREE_PLRU.ordinal()}
+        },
+        new int[][] {
+            new int[] {1, 32, DEFAULT_LINE_SIZE, WORD_SIZE_LONG, 2, REPLACEMENT_POLICY.TREE_PLRU.ordinal()}
+        }
+    };
 
     public static final int INDEXABLE_BANK_INDEX = 0;
     public static final int INTERNAL_BANK_INDEX = 1;
@@ -243,6 +274,13 @@ public class GLOBALS
         LOAD,
         STORE
     }
+    public enum REPLACEMENT_POLICY
+    {
+        LRU,
+        TREE_PLRU,
+        RANDOM,
+        FIFO
+    }
 
     public static final int ADDRESS_SIZE = 25;
     public static final int MAX_ADDRESS = (int)Math.pow(2, ADDRESS_SIZE) - 1;
@@ -252,11 +290,12 @@ public class GLOBALS
     public static final WRITE_MODE DEFAULT_RAM_WRITE_MODE = WRITE_MODE.THROUGH_ALLOCATE;
     public static final int DEFAULT_CACHE_ACCESS_DELAY = 10;
     public static final int DEFAULT_RAM_ACCESS_DELAY = 100;
-    public static final int VALID_INDEX = 0;
-    public static final int DIRTY_INDEX = 1;
-    public static final int ADDRESS_INDEX = 2;
-    public static final int FIRST_WORD_INDEX = 3;
-    public static final int[] WORD_INDECES = new int[] { VALID_INDEX, DIRTY_INDEX, ADDRESS_INDEX, FIRST_WORD_INDEX };
+    public static final int DEFAULT_ASSOCIATIVITY = 1;  // Direct-mapped
+    public static final REPLACEMENT_POLICY DEFAULT_REPLACEMENT_POLICY = REPLACEMENT_POLICY.LRU;
+    public static final long LINE_ADDRESS_MASK = 0xFFFFFFFFL;  // Bits of a MemoryModule line tag holding its virtual line address
+    public static final long LINE_VALID_BIT = 1L << 32;
+    public static final long LINE_DIRTY_BIT = 1L << 33;
+    public static final int RAM_PAGE_WORDS = 4096;  // Words per page of the lowest-level RAM, which only allocates pages once written (power of 2)
     public static final String ADDRESS_FILLER = " ";
     public static int GET_ACTUAL_MAX_SIZE(MEMORY_TYPE type)
     {
@@ -287,14 +326,6 @@ public class GLOBALS
     public static final String PATH_TO_BINARIES = PATH_TO_FILES + "bin/";
     public static final  String PENDING_INDICATOR = "*";
 
-    /*
-        Arrangement
-     */
-
-    public static final Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-    public static final int DEFAULT_UI_WIDTH  = screenSize.width - 20;
-    public static final int DEFAULT_UI_HEIGHT = screenSize.height - 100;
-
     public static final int CC_NEGATIVE_MASK = 0b1 << 0;  // The bit in CC corresponding to the negative comparison
     public static boolean CC_NEGATIVE(int cc)  // Checks whether given CC value has the negative bit set to 1
         { return (cc & CC_NEGATIVE_MASK) == CC_NEGATIVE_MASK; }
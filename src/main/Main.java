@@ -1,10 +1,12 @@
 package main;
 
+import memory.BinaryImage;
 import memory.RegisterFileModule;
 import pipeline.Pipeline;
 
 import javax.swing.*;
 import java.io.*;
+import java.nio.IntBuffer;
 
 import static main.GLOBALS.*;
 
@@ -12,8 +14,9 @@ public class Main
 {
     // Each int[][] corresponds to the unified, data, or instruction memories (in that order)
     // Each int[] is one module in the form of [ delay, number of lines, number of words per line, word size ]
-    private static final int[][][] STARTING_MEMORIES = START_MEM_EMPTY;
-    private static final boolean RUN_ASSEMBLER = true;
+    static final int[][][] STARTING_MEMORIES = START_MEM_EMPTY;
+    static final boolean RUN_ASSEMBLER = true;
+    static final int STARTING_PC = 8;
 
     public static void main(String[] args)
     {
@@ -32,7 +35,44 @@ public class Main
         System.out.println("\n!!!!!!!!    Running simulator    !!!!!!!!\n");
 
         int[] startingParams = FIND_START_PARAMS(PATH_TO_BINARIES);
+        SimulationContext context = new SimulationContext();
+        int id = context.nextId();
+        RegisterFileModule[] registerBanks = NEW_REGISTER_BANKS(context, startingParams, STARTING_PC);
+        new Simulator(context, id, registerBanks, NEW_PIPELINE(registerBanks, startingParams), JFrame.MAXIMIZED_BOTH, STARTING_PC, STARTING_MEMORIES, startingParams[3]);
+    }
+
+    /**
+     * Same as below, reporting progress on System.out.
+     */
+    public static Engine NEW_ENGINE(int[][][] memories)
+    {
+        return NEW_ENGINE(memories, false);
+    }
+
+    /**
+     * Builds a whole headless simulation of the program in PATH_TO_BINARIES, with its own SimulationContext, ready to run.
+     * @param memories Hierarchy in the form Engine.loadMemories() takes
+     * @param quiet Whether the Engine should print nothing, from loading the binaries on (see Engine.setQuiet())
+     */
+    public static Engine NEW_ENGINE(int[][][] memories, boolean quiet)
+    {
+        int[] startingParams = FIND_START_PARAMS(PATH_TO_BINARIES);
+        SimulationContext context = new SimulationContext();
+        RegisterFileModule[] registerBanks = NEW_REGISTER_BANKS(context, startingParams, STARTING_PC);
+        Engine engine = new Engine(context, registerBanks, NEW_PIPELINE(registerBanks, startingParams));
+        engine.setQuiet(quiet);
+        engine.loadMemories(memories);
+        return engine;
+    }
 
+    /**
+     * Builds the four register banks (indexable, internal, call stack, reversal stack) sized according to the
+     *  parameters in the first line of the instruction binary, with PC set to startingPC and shared pending arrays.
+     * @param context Simulation the banks' IDs are allocated from
+     * @param startingParams Return of FIND_START_PARAMS()
+     */
+    public static RegisterFileModule[] NEW_REGISTER_BANKS(SimulationContext context, int[] startingParams, int startingPC)
+    {
         RegisterFileModule[] registerBanks = new RegisterFileModule[REGISTER_BANK_INDECES.length];
         int[] indexableLengths = new int[INDEXABLE_BANK_SIZE];
         String[] indexableNames = new String[INDEXABLE_BANK_SIZE];
@@ -59,33 +99,44 @@ public class Main
             reversalStackLengths[i] = (index == 0) ? indexableLengths.length : indexableLengths[index - 1];
             reversalStackNames[i] = i / (indexableLengths.length + 1) + " " + ((index == 0) ? "M" : (index - 1));
         }
-        registerBanks[INDEXABLE_BANK_INDEX] = new RegisterFileModule(GET_ID(), REGISTER_FILE_MODE.ADDRESSED, indexableLengths, indexableNames);
-        registerBanks[INTERNAL_BANK_INDEX] = new RegisterFileModule(GET_ID(), REGISTER_FILE_MODE.ADDRESSED, internalLengths, internalNames);
-        int startingPC = 8;
+        registerBanks[INDEXABLE_BANK_INDEX] = new RegisterFileModule(context.nextId(), REGISTER_FILE_MODE.ADDRESSED, indexableLengths, indexableNames);
+        registerBanks[INTERNAL_BANK_INDEX] = new RegisterFileModule(context.nextId(), REGISTER_FILE_MODE.ADDRESSED, internalLengths, internalNames);
         registerBanks[INTERNAL_BANK_INDEX].store(PC_INDEX, startingPC);
-        registerBanks[CALL_STACK_INDEX] = new RegisterFileModule(GET_ID(), REGISTER_FILE_MODE.STACK, callStackLengths, callStackNames);
-        registerBanks[REVERSAL_STACK_INDEX] = new RegisterFileModule(GET_ID(), REGISTER_FILE_MODE.STACK_CIRCULAR, reversalStackLengths, reversalStackNames);
+        registerBanks[CALL_STACK_INDEX] = new RegisterFileModule(context.nextId(), REGISTER_FILE_MODE.STACK, callStackLengths, callStackNames);
+        registerBanks[REVERSAL_STACK_INDEX] = new RegisterFileModule(context.nextId(), REGISTER_FILE_MODE.STACK_CIRCULAR, reversalStackLengths, reversalStackNames);
         int[][] pendingRegisters = NEW_PENDING_REGISTERS(registerBanks);
         registerBanks[INDEXABLE_BANK_INDEX].pendings = pendingRegisters[INDEXABLE_BANK_INDEX];
         registerBanks[INTERNAL_BANK_INDEX].pendings = pendingRegisters[INTERNAL_BANK_INDEX];
         registerBanks[CALL_STACK_INDEX].pendings = pendingRegisters[CALL_STACK_INDEX];
         registerBanks[REVERSAL_STACK_INDEX].pendings = pendingRegisters[REVERSAL_STACK_INDEX];
-        new Simulator(GET_ID(), registerBanks, new Pipeline(registerBanks[INDEXABLE_BANK_INDEX], registerBanks[INTERNAL_BANK_INDEX], registerBanks[CALL_STACK_INDEX], registerBanks[REVERSAL_STACK_INDEX], null, null, pendingRegisters, startingParams[0], startingParams[3]), JFrame.MAXIMIZED_BOTH, startingPC, STARTING_MEMORIES, startingParams[3]);
+        return registerBanks;
+    }
+
+    /**
+     * Builds a Pipeline over the given register banks. Memory is attached afterward as modules are created.
+     * @param registerBanks Return of NEW_REGISTER_BANKS()
+     * @param startingParams Return of FIND_START_PARAMS()
+     */
+    public static Pipeline NEW_PIPELINE(RegisterFileModule[] registerBanks, int[] startingParams)
+    {
+        int[][] pendingRegisters = new int[registerBanks.length][];
+        for(int i = 0; i < registerBanks.length; i++)
+        {
+            pendingRegisters[i] = registerBanks[i].pendings;
+        }
+        return new Pipeline(registerBanks[INDEXABLE_BANK_INDEX], registerBanks[INTERNAL_BANK_INDEX], registerBanks[CALL_STACK_INDEX], registerBanks[REVERSAL_STACK_INDEX], null, null, pendingRegisters, startingParams[0], startingParams[3]);
     }
 
-    private static int[] FIND_START_PARAMS(String path)
+    public static int[] FIND_START_PARAMS(String path)
     {
         int[] ret = new int[] { 32, 0b1000000000, 0b1000000000, 0 };
 
-        File directory = new File(path);
-        File[] files = directory.listFiles();
         try
         {
-            FileInputStream fis = new FileInputStream(path + "/1.txt");//new FileInputStream(files[0]);
-            byte[] buffer = new byte[4];
-            if(fis.read(buffer) == 4)
+            IntBuffer words = BinaryImage.MAP(new File(path, BinaryImage.HEADER_FILE_NAME));
+            if(words.hasRemaining())
             {
-                int value = (buffer[0] << 24) | (buffer[1] << 16) | (buffer[2] << 8) | buffer[3];
+                int value = words.get(0);
                 if((value & 0b10000000000000000000000000000000) == 0b10000000000000000000000000000000)
                 {
                     ret[0] = 64;
@@ -114,9 +165,7 @@ public class Main
                     }
                 }
             }
-            fis.close();
         }
-        catch(ArrayIndexOutOfBoundsException ignored) {}
         catch(IOException e)
         {
             e.printStackTrace();
@@ -0,0 +1,204 @@
+package main;
+
+import memory.MemoryModule;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static main.Assembler.LONG_INSTRUCTION_ADDRESS_FIX;
+import static main.Assembler.SHORT_INSTRUCTION_ADDRESS_FIX;
+import static main.GLOBALS.*;
+
+/**
+ * Per-PC cycle profile. Every cycle the writeback stage counts in Counters is also charged here to the PC of the
+ *  instruction responsible for it: the instruction that retired, the one a stall was waiting on, or the branch, CALL,
+ *  or RETURN that caused a quash. Bubbles with no such instruction (filling the pipeline, flushes) are left
+ *  unattributed. The stages also charge each miss in the nearest caches to the PC whose access caused it.
+ * Everything is kept in one long[] with a row of COLUMNS counters per PC, so that profiling costs an array increment
+ *  or two per cycle and can be left on for whole runs. writeListing() maps the rows back to the lines of the assembly
+ *  source they were assembled from.
+ */
+public class Profiler implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    // Columns of each PC's row
+    public static final int ISSUE = 0;  // Cycles in which the instruction retired
+    public static final int STALL = 1;  // Cycles lost waiting on its source registers, or stalled for no recorded cause
+    public static final int MEMORY = 2;  // Cycles lost waiting on instruction or data memory to fetch or access it
+    public static final int QUASH = 3;  // Cycles lost to the quash after it branched, CALLed, or RETURNed
+    public static final int OTHER = 4;  // Any other bubble
+    public static final int EXECUTIONS = 5;  // Times it retired
+    public static final int MISSES = 6;  // Misses in the nearest instruction or data cache caused by fetching or accessing it
+    public static final int COLUMNS = 7;
+    private static final int CYCLE_COLUMNS = OTHER + 1;  // Columns before this one count cycles
+    private static final String[] COLUMN_NAMES = { "issue", "stall", "memory", "quash", "other", "execs", "misses" };
+    private static final int HOTTEST_LINES = 10;
+    public static final String DEFAULT_SOURCE = PATH_TO_FILES + "assembly/instructionAssembly.txt";
+
+    private long[] values = new long[COLUMNS * 1024];  // Row pc + 1 belongs to that PC; row 0 holds what is unattributed
+    private int lastIndex = -1;  // Index in values of the most recently charged cycle
+
+    /**
+     * Charges one cycle, of the given Counters category, to pc.
+     * @param pc PC of the instruction responsible, or -1 if there is none
+     */
+    public void countCycle(int category, long pc)
+    {
+        int row = ROW(pc);
+        if(row * COLUMNS + COLUMNS > values.length) { grow(row); }
+        int index = row * COLUMNS + COLUMN_OF(category);
+        values[index]++;
+        if(category >= Counters.RETIRED_BY_HEADER) { values[row * COLUMNS + EXECUTIONS]++; }
+        lastIndex = index;
+    }
+
+    /**
+     * Charges the given number of further cycles the same way as the last one, for cycles that the Engine skips
+     *  because each would repeat it.
+     */
+    public void repeatLastCycle(long cycles)
+    {
+        if(lastIndex == -1) { return; }
+        values[lastIndex] += cycles;
+        if(lastIndex % COLUMNS == ISSUE) { values[lastIndex - ISSUE + EXECUTIONS] += cycles; }
+    }
+
+    /**
+     * @param pc PC of the instruction whose fetch or access missed, or -1 if there is none
+     */
+    public void countMisses(long pc, long misses)
+    {
+        if(misses == 0) { return; }
+        int row = ROW(pc);
+        if(row * COLUMNS + COLUMNS > values.length) { grow(row); }
+        values[row * COLUMNS + MISSES] += misses;
+    }
+
+    /**
+     * @param pc PC, or -1 for what is unattributed
+     */
+    public long get(long pc, int column)
+    {
+        int index = ROW(pc) * COLUMNS + column;
+        return (index < values.length) ? values[index] : 0;
+    }
+
+    /**
+     * @return Cycles charged to pc in all categories, or to nothing if pc is -1
+     */
+    public long getCycles(long pc)
+    {
+        long cycles = 0;
+        for(int column = 0; column < CYCLE_COLUMNS; column++) { cycles += get(pc, column); }
+        return cycles;
+    }
+
+    /**
+     * @return Every cycle charged so far, attributed or not
+     */
+    public long getTotalCycles()
+    {
+        long cycles = 0;
+        for(int i = 0; i < values.length; i++)
+        {
+            if(i % COLUMNS < CYCLE_COLUMNS) { cycles += values[i]; }
+        }
+        return cycles;
+    }
+
+    /**
+     * Writes the assembly source with each line prefixed by what was charged to the instruction assembled from it,
+     *  then the hottest lines by cycles. Lines that nothing was charged to are left blank.
+     * @param sourcePath The instructionAssembly.txt the program was assembled from
+     * @param wordSize Instruction word size of the program, which decides how lines map to addresses
+     * @param numSpecialInstructions Number of SET lines at the start of the source
+     */
+    public void writeListing(String sourcePath, String listingPath, int wordSize, int numSpecialInstructions) throws IOException
+    {
+        List<String> lines = Files.readAllLines(Path.of(sourcePath));
+        long total = Math.max(1, getTotalCycles());
+        long[] lineCycles = new long[lines.size() + 1];  // Indexed by line number
+        long attributed = 0;
+        try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(listingPath))))
+        {
+            StringBuilder header = new StringBuilder(String.format("%12s %7s", "cycles", "%"));
+            for(String name : COLUMN_NAMES) { header.append(String.format(" %10s", name)); }
+            out.println(header + "  | " + sourcePath);
+            for(int lineNum = 1; lineNum <= lines.size(); lineNum++)
+            {
+                long pc = (lineNum <= numSpecialInstructions) ? -1 : LINE_PC(lineNum, wordSize, numSpecialInstructions);
+                long cycles = (pc == -1) ? 0 : getCycles(pc);
+                lineCycles[lineNum] = cycles;
+                attributed += cycles;
+                if((pc == -1) || ((cycles == 0) && (get(pc, MISSES) == 0)))
+                {
+                    out.println(" ".repeat(header.length()) + "  | " + lines.get(lineNum - 1));
+                    continue;
+                }
+                StringBuilder row = new StringBuilder(String.format("%,12d %6.2f%%", cycles, 100.0 * cycles / total));
+                for(int column = 0; column < COLUMNS; column++) { row.append(String.format(" %,10d", get(pc, column))); }
+                out.println(row + "  | " + lines.get(lineNum - 1));
+            }
+
+            out.println();
+            out.println("Total cycles: " + String.format("%,d", getTotalCycles()));
+            out.println("Past the end of the source (padding HALTs): " + String.format("%,d", getTotalCycles() - getCycles(-1) - attributed));
+            out.println("Not attributed to any instruction: " + String.format("%,d", getCycles(-1)));
+            out.println();
+            out.println("Hottest lines:");
+            List<Integer> hottest = new ArrayList<>();
+            for(int lineNum = 1; lineNum <= lines.size(); lineNum++) { if(lineCycles[lineNum] > 0) { hottest.add(lineNum); } }
+            hottest.sort((a, b) -> Long.compare(lineCycles[b], lineCycles[a]));
+            for(int lineNum : hottest.subList(0, Math.min(HOTTEST_LINES, hottest.size())))
+            {
+                out.println(String.format("%,12d %6.2f%%  line %-5d | %s", lineCycles[lineNum], 100.0 * lineCycles[lineNum] / total,
+                                          lineNum, lines.get(lineNum - 1).strip()));
+            }
+        }
+    }
+
+    /**
+     * @return Misses recorded so far by cache, whose difference across an access is how many that access caused
+     */
+    public static long MISSES(MemoryModule cache)
+    {
+        return (cache.getLoads() - cache.getLoadHits()) + (cache.getStores() - cache.getStoreHits());
+    }
+
+    private void grow(int row)
+    {
+        values = Arrays.copyOf(values, Math.max((row + 1) * COLUMNS, 2 * values.length));
+    }
+
+    private static int ROW(long pc)
+    {
+        return (int)pc + 1;
+    }
+
+    private static int COLUMN_OF(int category)
+    {
+        if(category >= Counters.RETIRED_BY_HEADER) { return ISSUE; }
+        return switch(category)
+        {
+            case Counters.STALL_REGISTER, Counters.STALL_OTHER -> STALL;
+            case Counters.STALL_INSTRUCTION_MEMORY, Counters.STALL_DATA_MEMORY -> MEMORY;
+            case Counters.QUASH_BRANCH, Counters.QUASH_CALL_RETURN -> QUASH;
+            default -> OTHER;
+        };
+    }
+
+    private static long LINE_PC(int lineNum, int wordSize, int numSpecialInstructions)
+    {
+        return (wordSize == WORD_SIZE_SHORT) ? SHORT_INSTRUCTION_ADDRESS_FIX(lineNum, numSpecialInstructions)
+                                             : LONG_INSTRUCTION_ADDRESS_FIX(lineNum, numSpecialInstructions);
+    }
+}
@@ -0,0 +1,349 @@
+package main;
+
+import memory.BinaryImage;
+import memory.MemoryModule;
+
+import java.io.*;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static main.GLOBALS.*;
+
+/**
+ * Workload regression harness. Assembles and runs each benchmark program headlessly under each memory preset, checks
+ *  the program's result in the final memory image against the same computation done in Java, and compares simulated
+ *  cycles and host throughput with a baseline file.
+ * Usage: Regression [--program &lt;assembly directory&gt;]... [--memory &lt;preset&gt;]... [--baseline &lt;file&gt;]
+ *                   [--write-baseline] [--repeats &lt;runs&gt;] [--threshold &lt;percent&gt;] [--throughput-threshold &lt;percent&gt;]
+ *  --program replaces DEFAULT_PROGRAMS, and --memory replaces DEFAULT_MEMORY_PRESETS (START_MEM_* names without their
+ *  prefix). Each program directory holds an instructionAssembly.txt and dataAssembly.txt, and is checked according to
+ *  the benchmark family it is in: MatrixBenchmarks and UndoBenchmarks must leave the matrix product C = AB in memory,
+ *  ExchangeSortBenchmarks the sorted array.
+ *  Each program runs --repeats times under each preset, and the fastest run's wall time is the one recorded, since
+ *  the slower ones measure the host's noise rather than the simulator. A run regresses if it takes more simulated
+ *  cycles than its baseline by more than --threshold, or simulates fewer cycles per second of host time by more than
+ *  --throughput-threshold. --write-baseline saves this run's results as the new baseline instead of comparing
+ *  against it.
+ * Each program is assembled into src/files/bin, replacing whatever was there. Exits with status 1 if any result is
+ *  wrong or any run regressed.
+ */
+public class Regression
+{
+    private static final String HOLDING = PATH_TO_FILES + "holding/";
+    private static final String[] DEFAULT_PROGRAMS = { HOLDING + "MatrixBenchmarks/Dims10x5x10",
+                                                       HOLDING + "MatrixBenchmarks/Dims20x20x20",
+                                                       HOLDING + "ExchangeSortBenchmarks/Dims100",
+                                                       HOLDING + "ExchangeSortBenchmarks/Dims200",
+                                                       HOLDING + "UndoBenchmarks/Dims2x3x2",
+                                                       HOLDING + "UndoBenchmarks/Dims5x3x5" };
+    private static final String[] DEFAULT_MEMORY_PRESETS = { "100RAM1024_10DATA256_2DATA128_1INST32LONG" };
+    private static final String DEFAULT_BASELINE = HOLDING + "baseline.csv";
+    private static final int DEFAULT_REPEATS = 3;
+    private static final double DEFAULT_THRESHOLD_PERCENT = 0;  // Simulated cycles are deterministic
+    private static final double DEFAULT_THROUGHPUT_THRESHOLD_PERCENT = 15;
+    private static final String[] BASELINE_COLUMNS = { "program", "memory", "cycles", "wallMillis", "cyclesPerSecond" };
+
+    // Word offsets of the matrix benchmarks' header: addresses of A, B, and C, then A is n x m and B is m x p
+    private static final int MATRIX_A = 0;
+    private static final int MATRIX_B = 1;
+    private static final int MATRIX_C = 2;
+    private static final int MATRIX_N = 3;
+    private static final int MATRIX_M = 4;
+    private static final int MATRIX_P = 5;
+    // The sort benchmarks' length, followed by the array
+    private static final int SORT_LENGTH = 0;
+    private static final int SORT_ARRAY = 1;
+
+    /**
+     * One program's run under one preset. wrong is null if the result checked out.
+     */
+    private record Result(String program, String memory, long cycles, long wallNanos, String wrong)
+    {
+        double getCyclesPerSecond()
+        {
+            return cycles * 1e9 / Math.max(1, wallNanos);
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        List<String> programs = new ArrayList<>();
+        List<String> presets = new ArrayList<>();
+        String baselinePath = DEFAULT_BASELINE;
+        boolean writeBaseline = false;
+        int repeats = DEFAULT_REPEATS;
+        double threshold = DEFAULT_THRESHOLD_PERCENT / 100;
+        double throughputThreshold = DEFAULT_THROUGHPUT_THRESHOLD_PERCENT / 100;
+        for(int i = 0; i < args.length; i++)
+        {
+            switch(args[i])
+            {
+                case "--program" -> programs.add(args[++i]);
+                case "--memory" -> presets.add(args[++i]);
+                case "--baseline" -> baselinePath = args[++i];
+                case "--write-baseline" -> writeBaseline = true;
+                case "--repeats" -> repeats = Integer.parseInt(args[++i]);
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]) / 100;
+                case "--throughput-threshold" -> throughputThreshold = Double.parseDouble(args[++i]) / 100;
+                default -> throw new IllegalArgumentException("Unrecognized argument: " + args[i]);
+            }
+        }
+        if(programs.isEmpty()) { programs.addAll(List.of(DEFAULT_PROGRAMS)); }
+        if(presets.isEmpty()) { presets.addAll(List.of(DEFAULT_MEMORY_PRESETS)); }
+        if(repeats < 1) { throw new IllegalArgumentException("Need at least one run of each program"); }
+        Map<String, int[][][]> memories = new LinkedHashMap<>();
+        for(String preset : presets) { memories.put(preset, BatchRunner.FIND_MEMORY_PRESET(preset)); }  // Fail before running anything
+        for(String program : programs) { FIND_CHECK(program); }
+
+        // The assembler reports progress on System.out; only the results should reach it
+        PrintStream report = System.out;
+        List<Result> results = new ArrayList<>();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try
+        {
+            for(String program : programs)
+            {
+                ASSEMBLE(program);
+                int[] initialData = READ_DATA();
+                for(Map.Entry<String, int[][][]> preset : memories.entrySet())
+                {
+                    results.add(RUN(program, preset.getKey(), preset.getValue(), initialData, repeats));
+                }
+            }
+        }
+        finally
+        {
+            System.setOut(report);
+        }
+
+        Map<String, String[]> baseline = new HashMap<>();
+        if(!writeBaseline && new File(baselinePath).isFile()) { baseline = READ_BASELINE(baselinePath); }
+        else if(!writeBaseline) { System.out.println("No baseline at " + baselinePath + "; pass --write-baseline to record one"); }
+
+        boolean failed = false;
+        System.out.printf("%-40s %-44s %14s %10s %14s  %s%n", "Program", "Memory", "Cycles", "Wall ms", "Cycles/s", "Status");
+        for(Result result : results)
+        {
+            List<String> problems = new ArrayList<>();
+            if(result.wrong() != null) { problems.add("WRONG: " + result.wrong()); }
+            String[] base = baseline.get(KEY(result.program(), result.memory()));
+            if(base != null)
+            {
+                long baseCycles = Long.parseLong(base[2]);
+                double baseThroughput = Double.parseDouble(base[4]);
+                if(result.cycles() > baseCycles * (1 + threshold))
+                {
+                    problems.add("CYCLES " + String.format("%+.2f%%", 100.0 * (result.cycles() - baseCycles) / baseCycles) + " from " + String.format("%,d", baseCycles));
+                }
+                if(result.getCyclesPerSecond() < baseThroughput * (1 - throughputThreshold))
+                {
+                    problems.add("THROUGHPUT " + String.format("%+.2f%%", 100 * (result.getCyclesPerSecond() - baseThroughput) / baseThroughput) + " from " + String.format("%,.0f", baseThroughput));
+                }
+                if(problems.isEmpty() && (result.cycles() != baseCycles))
+                {
+                    problems.add("cycles changed from " + String.format("%,d", baseCycles));  // Within the threshold, so noted but not a failure
+                }
+                else if(!problems.isEmpty()) { failed = true; }
+            }
+            else if(result.wrong() != null) { failed = true; }
+            System.out.printf("%-40s %-44s %,14d %,10d %,14.0f  %s%n", result.program(), result.memory(), result.cycles(),
+                              result.wallNanos() / 1000000, result.getCyclesPerSecond(), problems.isEmpty() ? "OK" : String.join("; ", problems));
+        }
+
+        if(writeBaseline)
+        {
+            WRITE_BASELINE(baselinePath, results);
+            System.out.println("Wrote baseline " + baselinePath);
+        }
+        if(failed) { System.exit(1); }
+    }
+
+    /**
+     * Runs an assembled program to completion the given number of times and checks each run's result.
+     * @param initialData The data binary, from READ_DATA()
+     * @return The fastest run, or the first wrong one
+     */
+    private static Result RUN(String program, String preset, int[][][] memories, int[] initialData, int repeats)
+    {
+        Result fastest = null;
+        for(int i = 0; i < repeats; i++)
+        {
+            Engine engine = Main.NEW_ENGINE(memories, true);
+            long start = System.nanoTime();
+            engine.run(Long.MAX_VALUE);
+            long wallNanos = System.nanoTime() - start;
+            long cycles = engine.getContext().getTick();
+            String wrong;
+            if(engine.isErrored()) { wrong = "error instruction reached"; }
+            else if(!engine.isHalted()) { wrong = "did not halt"; }
+            else if((fastest != null) && (cycles != fastest.cycles())) { wrong = "took " + cycles + " cycles after " + fastest.cycles(); }
+            else { wrong = FIND_CHECK(program).check(initialData, new FinalMemory(engine)); }
+            Result result = new Result(NAME(program), preset, cycles, wallNanos, wrong);
+            if(wrong != null) { return result; }
+            if((fastest == null) || (wallNanos < fastest.wallNanos())) { fastest = result; }
+        }
+        return fastest;
+    }
+
+    /**
+     * Checks a program's final memory against its initial data.
+     */
+    private interface Check
+    {
+        /**
+         * @return A description of the first difference from the expected result, or null if there is none
+         */
+        String check(int[] initialData, FinalMemory memory);
+    }
+
+    /**
+     * The data memory as the program left it, read as the pipeline would read it, so that results still in a
+     *  write-back cache count.
+     */
+    private static class FinalMemory
+    {
+        private final MemoryModule cache;
+        private final int dataStart;
+        private final int[] buffer;
+
+        private FinalMemory(Engine engine)
+        {
+            cache = engine.getPipeline().getNearestDataCache();
+            dataStart = (int)engine.getRegisterBanks()[INTERNAL_BANK_INDEX].load(CM_INDEX);
+            buffer = new int[cache.getLineSize()];
+        }
+
+        /**
+         * @param address Word address within the data, as the program uses it
+         */
+        int load(int address)
+        {
+            cache.loadFunctional(dataStart + address, false, buffer, 0);
+            return buffer[0];
+        }
+    }
+
+    private static Check FIND_CHECK(String program)
+    {
+        String family = new File(program).getAbsoluteFile().getParentFile().getName();
+        return switch(family)
+        {
+            case "MatrixBenchmarks", "UndoBenchmarks" -> Regression::CHECK_MATRIX_PRODUCT;
+            case "ExchangeSortBenchmarks" -> Regression::CHECK_SORTED;
+            default -> throw new IllegalArgumentException("No reference computation for " + family + " (" + program + ")");
+        };
+    }
+
+    /**
+     * Words past the end of the data binary start as 0.
+     */
+    private static int WORD(int[] data, int address)
+    {
+        return (address < data.length) ? data[address] : 0;
+    }
+
+    private static String CHECK_MATRIX_PRODUCT(int[] data, FinalMemory memory)
+    {
+        int a = WORD(data, MATRIX_A);
+        int b = WORD(data, MATRIX_B);
+        int c = WORD(data, MATRIX_C);
+        int n = WORD(data, MATRIX_N);
+        int m = WORD(data, MATRIX_M);
+        int p = WORD(data, MATRIX_P);
+        for(int i = 0; i < n; i++)
+        {
+            for(int j = 0; j < p; j++)
+            {
+                int expected = 0;  // Wraps around as the simulated 32-bit registers do
+                for(int k = 0; k < m; k++) { expected += WORD(data, a + (i * m) + k) * WORD(data, b + (k * p) + j); }
+                int actual = memory.load(c + (i * p) + j);
+                if(actual != expected) { return "C[" + i + "][" + j + "] is " + actual + ", expected " + expected; }
+            }
+        }
+        return null;
+    }
+
+    private static String CHECK_SORTED(int[] data, FinalMemory memory)
+    {
+        int length = WORD(data, SORT_LENGTH);
+        int[] expected = new int[length];
+        for(int i = 0; i < length; i++) { expected[i] = WORD(data, SORT_ARRAY + i); }
+        Arrays.sort(expected);
+        for(int i = 0; i < length; i++)
+        {
+            int actual = memory.load(SORT_ARRAY + i);
+            if(actual != expected[i]) { return "element " + i + " is " + actual + ", expected " + expected[i]; }
+        }
+        return null;
+    }
+
+    private static void ASSEMBLE(String program) throws AssemblyError
+    {
+        new File(PATH_TO_BINARIES).mkdirs();
+        Assembler.subMain(new String[] { "-s", new File(program, "instructionAssembly.txt").getPath(),
+                                         "--data", new File(program, "dataAssembly.txt").getPath(), "-d", PATH_TO_BINARIES });
+    }
+
+    /**
+     * @return The data binary just assembled, a word per address
+     */
+    private static int[] READ_DATA() throws IOException
+    {
+        File file = new File(PATH_TO_BINARIES, BinaryImage.FILE_NAMES[1]);
+        if(!file.isFile()) { return new int[0]; }
+        IntBuffer words = BinaryImage.MAP(file);
+        int[] data = new int[words.remaining()];
+        words.get(data);
+        return data;
+    }
+
+    /**
+     * @return The program's family and size, e.g. MatrixBenchmarks/Dims10x5x10
+     */
+    private static String NAME(String program)
+    {
+        File directory = new File(program).getAbsoluteFile();
+        return directory.getParentFile().getName() + "/" + directory.getName();
+    }
+
+    private static String KEY(String program, String memory)
+    {
+        return program + "|" + memory;
+    }
+
+    /**
+     * @return Baseline rows, keyed by KEY(program, memory), each in the order of BASELINE_COLUMNS
+     */
+    private static Map<String, String[]> READ_BASELINE(String path) throws IOException
+    {
+        Map<String, String[]> baseline = new HashMap<>();
+        List<String> lines = Files.readAllLines(Path.of(path));
+        if(lines.isEmpty() || !lines.getFirst().equals(String.join(",", BASELINE_COLUMNS)))
+        {
+            throw new IOException("Baseline " + path + " does not start with the header " + String.join(",", BASELINE_COLUMNS));
+        }
+        for(String line : lines.subList(1, lines.size()))
+        {
+            if(line.isBlank()) { continue; }
+            String[] row = line.split(",");
+            if(row.length != BASELINE_COLUMNS.length) { throw new IOException("Malformed baseline row: " + line); }
+            baseline.put(KEY(row[0], row[1]), row);
+        }
+        return baseline;
+    }
+
+    private static void WRITE_BASELINE(String path, List<Result> results) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(path))))
+        {
+            out.println(String.join(",", BASELINE_COLUMNS));
+            for(Result result : results)
+            {
+                out.println(result.program() + "," + result.memory() + "," + result.cycles() + ","
+                            + (result.wallNanos() / 1000000) + "," + String.format("%.0f", result.getCyclesPerSecond()));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package main;
+
+import java.util.Random;
+
+/**
+ * SMARTS-style sampled simulation. The program is split into periods of a fixed number of instructions. In each
+ *  period, most instructions are fast-forwarded functionally with the caches kept warm, then a short detailed warmup
+ *  brings the pipeline back into a realistic state, then a measured window of detailed simulation gives one sample of
+ *  the cycles per instruction. The samples' mean, times the total number of instructions, estimates the cycles that
+ *  running the whole program in detail would have taken, to within a confidence bound from their spread.
+ * The window sits at the end of each period, or at a uniformly random offset within it when a seed is given.
+ */
+public class Sampler
+{
+    public static final double CONFIDENCE_Z = 1.96;  // Two-sided 95% bound, taking the window means as normal
+
+    private final long period;
+    private final long warmup;
+    private final long window;
+    private final Random random;  // Null for windows at the end of each period
+
+    private int windows = 0;
+    private double sumCPI = 0;
+    private double sumSquaredCPI = 0;
+    private long detailedCycles = 0;
+    private long totalInstructions = 0;
+
+    /**
+     * @param period Instructions in each period, including the warmup and window
+     * @param warmup Instructions simulated in detail, but not measured, before each window
+     * @param window Instructions measured in each window
+     * @param seed Seed for random window offsets, or null to place every window at the end of its period
+     */
+    public Sampler(long period, long warmup, long window, Long seed)
+    {
+        if((warmup < 0) || (window <= 0)) { throw new IllegalArgumentException("Sampling needs a non-negative warmup and a positive window"); }
+        if(period < warmup + window) { throw new IllegalArgumentException("Sampling period must hold its warmup and window"); }
+        this.period = period;
+        this.warmup = warmup;
+        this.window = window;
+        this.random = (seed == null) ? null : new Random(seed);
+    }
+
+    /**
+     * Runs the Engine's program to HALT or an error, alternating between fast-forwarding and detailed simulation.
+     *  A window that the program ends in is not counted.
+     */
+    public void run(Engine engine)
+    {
+        long retiredBefore = engine.getPipeline().getRetired();
+        long fastForwardedBefore = engine.getFastForwardedInstructions();
+        long carried = 0;  // Instructions left over from the end of the previous period
+        while(!engine.isHalted() && !engine.isErrored())
+        {
+            long slack = period - warmup - window;
+            long offset = (random == null) ? slack : (long)(random.nextDouble() * (slack + 1));
+            engine.fastForward(carried + offset, -1, null, true);
+            carried = slack - offset;
+            if(engine.isHalted() || engine.isErrored()) { break; }
+
+            detailedCycles += engine.run(Long.MAX_VALUE, warmup);
+            if(engine.isHalted() || engine.isErrored()) { break; }
+
+            long retired = engine.getPipeline().getRetired();
+            long cycles = engine.run(Long.MAX_VALUE, window);
+            detailedCycles += cycles;
+            if(engine.isHalted() || engine.isErrored()) { break; }
+
+            double cpi = (double)cycles / (engine.getPipeline().getRetired() - retired);
+            windows++;
+            sumCPI += cpi;
+            sumSquaredCPI += cpi * cpi;
+        }
+        totalInstructions = (engine.getPipeline().getRetired() - retiredBefore)
+                            + (engine.getFastForwardedInstructions() - fastForwardedBefore);
+    }
+
+    /**
+     * Number of complete measured windows
+     */
+    public int getWindows()
+    {
+        return windows;
+    }
+
+    /**
+     * Cycles actually simulated in detail, warmups included
+     */
+    public long getDetailedCycles()
+    {
+        return detailedCycles;
+    }
+
+    /**
+     * Instructions executed, functionally or in detail
+     */
+    public long getTotalInstructions()
+    {
+        return totalInstructions;
+    }
+
+    public double getMeanCPI()
+    {
+        return (windows == 0) ? Double.NaN : sumCPI / windows;
+    }
+
+    /**
+     * Half-width of the confidence interval around getMeanCPI(), or NaN with fewer than two windows
+     */
+    public double getCPIHalfWidth()
+    {
+        if(windows < 2) { return Double.NaN; }
+        double mean = getMeanCPI();
+        double variance = Math.max(0, (sumSquaredCPI - windows * mean * mean) / (windows - 1));
+        return CONFIDENCE_Z * Math.sqrt(variance / windows);
+    }
+
+    public double getEstimatedCycles()
+    {
+        return getMeanCPI() * totalInstructions;
+    }
+
+    public double getEstimatedCyclesHalfWidth()
+    {
+        return getCPIHalfWidth() * totalInstructions;
+    }
+}
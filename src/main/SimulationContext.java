@@ -0,0 +1,58 @@
+package main;
+
+import java.io.Serializable;
+
+/**
+ * State that belongs to one simulation rather than to the process: the cycle clock, the allocator for module IDs, and
+ *  the performance counters.
+ *  Every Engine has its own, shared with its MemoryScheduler and the modules it builds, so any number of simulations
+ *  can run side by side in one JVM. Saved and restored along with the Engine in a Checkpoint.
+ */
+public class SimulationContext implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private int tick = 0;
+    private int nextId = 0;
+    private final Counters counters = new Counters();
+
+    /**
+     * @return The current cycle, starting from 0 before the first
+     */
+    public int getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Moves the clock on by one cycle.
+     * @return The new current cycle
+     */
+    public int advanceTick()
+    {
+        return ++tick;
+    }
+
+    /**
+     * Moves the clock on by the given number of cycles in one step.
+     * @return The new current cycle
+     */
+    public int advanceTicks(int ticks)
+    {
+        tick += ticks;
+        return tick;
+    }
+
+    /**
+     * @return An ID that no other module, register bank, or window of this simulation has
+     */
+    public int nextId()
+    {
+        return nextId++;
+    }
+
+    public Counters getCounters()
+    {
+        return counters;
+    }
+}
@@ -7,9 +7,9 @@ import java.awt.*;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -20,14 +20,23 @@ import static instructions.Instructions.*;
 
 import instructions.Instruction;
 import memory.MemoryModule;
-import memory.MemoryRequest;
 import memory.RegisterFileModule;
+import memory.RequestChain;
+import memory.StoreRequest;
 import pipeline.Pipeline;
 
 public class Simulator extends JFrame
 {
     private static final Logger logger = Logger.getLogger(Simulator.class.getName());
 
+    /*
+        Arrangement
+     */
+
+    private static final Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+    private static final int DEFAULT_UI_WIDTH  = screenSize.width - 20;
+    private static final int DEFAULT_UI_HEIGHT = screenSize.height - 100;
+
     private final int id, startingPC, numSpecialInstructions;
     private JSplitPane topBottomPane;
     private JLabel callStackLabel, reversalStackLabel, pipelineLabel, pipelineOutputLabel;
@@ -35,7 +44,8 @@ public class Simulator extends JFrame
     private Pipeline pipeline;
     private int frameWidth, frameHeight;
 
-    private JTextField addressField, valueField, columnSizeField, lineSizeField, cacheField, ramField;
+    private JTextField addressField, valueField, columnSizeField, lineSizeField, waysField, cacheField, ramField;
+    private JComboBox<REPLACEMENT_POLICY> replacementPolicyBox;
     private JScrollPane callDisplayPane, reversalDisplayPane, pipelineDisplayPane,
                         currentlyVisibleBank, currentlyInvisibleBank;
     private JScrollPane[] panes;
@@ -52,22 +62,22 @@ public class Simulator extends JFrame
     private JPanel currentlyVisibleControls, currentlyInvisibleControls, stackPipelinePanel,
                    callStackDisplayPanel, reversalStackDisplayPanel, pipelineDisplayPanel, pipelineLabelPanel;
     private JCheckBox activePipelineCheckbox;
-    public int stalls;
+    private final Engine engine;
     public JLabel stallsLabel;
-    public int noops;
     public JLabel noopsLabel;
 
-    public Simulator(int id, RegisterFileModule[] registerBanks, Pipeline pipeline, int extendedState, int startingPC, int[][][] startingMemories, int numSpecialInstructions)
+    public Simulator(SimulationContext context, int id, RegisterFileModule[] registerBanks, Pipeline pipeline, int extendedState, int startingPC, int[][][] startingMemories, int numSpecialInstructions)
     {
-        this(id, registerBanks, pipeline, DEFAULT_UI_WIDTH, DEFAULT_UI_HEIGHT, extendedState, startingPC, startingMemories, numSpecialInstructions);
+        this(context, id, registerBanks, pipeline, DEFAULT_UI_WIDTH, DEFAULT_UI_HEIGHT, extendedState, startingPC, startingMemories, numSpecialInstructions);
     }
 
-    public Simulator(int id, RegisterFileModule[] registerBanks, Pipeline pipeline, int width, int height,
+    public Simulator(SimulationContext context, int id, RegisterFileModule[] registerBanks, Pipeline pipeline, int width, int height,
                      int extendedState, int startingPC, int[][][] startingMemories, int numSpecialInstructions)
     {
         this.id = id;
         this.registerBanks = registerBanks;
         this.pipeline = pipeline;
+        this.engine = new Engine(context, registerBanks, pipeline);
         this.frameWidth = width;
         this.frameHeight = height;
         this.startingPC = startingPC;
@@ -78,8 +88,6 @@ public class Simulator extends JFrame
         setLayout(new BorderLayout());
         setLocation((screenSize.width - width) / 2, (screenSize.height - height) / 2);
 
-        pipeline.setSimulator(this);
-
         // Toolbar at the top
         JPanel toolBarPanel = new JPanel(new BorderLayout());
         JToolBar toolBar = new JToolBar();
@@ -110,33 +118,15 @@ public class Simulator extends JFrame
                 boolean doneOnce = false;
                 while((output == null) || !(AUX_EQUALS(output.getAuxBits(AUX_FETCHED), AUX_TRUE)))
                 {
-                    CURRENT_TICK += 1;
-                    if((CURRENT_TICK % PRINT_CHECKPOINT_INDEX) == 0)
+                    Instruction cycled = engine.cycle(activePipelineCheckbox.isSelected() || !doneOnce);
+                    if(cycled == null)
                     {
-                        System.out.println("CYCLE: " + String.format("%,d", CURRENT_TICK));
-                        for(String line : registerBanks[INDEXABLE_BANK_INDEX].getDisplayText(10).split("\n"))
-                        {
-                            System.out.println("\t" + line);
-                        }
-                    }
-                    aboutToHalt = pipeline.preExecute();  // Happens before memory cycled, so memory cycling can be "in-line" with pipeline cycling
-                    for(JList<MemoryModule> list : memoryLists)
-                    {
-                        for(int j = 0; j < list.getModel().getSize(); j++)
-                        {
-                            list.getModel().getElementAt(j).tick();
-                        }
-                    }
-                    if(aboutToHalt)
-                    {
-                        System.out.println("HALT ENCOUNTERED");
-                        pipeline.openWrite();
+                        aboutToHalt = true;
                         break;
                     }
-                    output = pipeline.execute(activePipelineCheckbox.isSelected() || !doneOnce);
-                    if(ERROR_INSTRUCTIONS.contains(output.getHeader()))
+                    output = cycled;
+                    if(output.getHeaderInfo().error())
                     {
-                        System.out.println("ERROR ENCOUNTERED: " + output.word.toString());
                         break;
                     }
 
@@ -148,12 +138,12 @@ public class Simulator extends JFrame
                     break;
                 }
             }
-            countLabel.setText("Cycles: " + String.format("%,d", CURRENT_TICK));
+            countLabel.setText("Cycles: " + String.format("%,d", engine.getContext().getTick()));
             if(output != null)
             {
                 long pc = (output.getAuxBits(AUX_PC_AT_FETCH) == null) ? -1 : output.getAuxBits(AUX_PC_AT_FETCH).toInt();
                 pipelineOutputLabel.setText("Line " + ((pc == -1L) ? "--" : ((output.wordLength() == WORD_SIZE_SHORT ? SHORT_INSTRUCTION_ADDRESS_UNFIX(pc, numSpecialInstructions) : LONG_INSTRUCTION_ADDRESS_UNFIX(pc, numSpecialInstructions)))) +
-                                            ": " + ((MNEMONICS.get(output.getHeader()) != null) ? MNEMONICS.get(output.getHeader()) : INTERNAL_MNEMONICS.get(output.getHeader())));
+                                            ": " + output.getHeaderInfo().mnemonic());
             }
             updateDisplay();
         });
@@ -196,6 +186,27 @@ public class Simulator extends JFrame
                 currentlySelectedMemory.dumpToFile(fileToSave.getAbsolutePath());
             }
         });
+        JButton saveAllButton = new JButton("Save All to File");
+        saveAllButton.setMinimumSize(new Dimension(300, 30));
+        saveAllButton.setMaximumSize(new Dimension(300, 30));
+        saveAllButton.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Select a path to save every memory to");
+            fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir") + "/" + PATH_TO_FILES));
+            fileChooser.setSelectedFile(new File(this.id + ".memd"));
+            int userSelection = fileChooser.showSaveDialog(this);
+            if (userSelection == JFileChooser.APPROVE_OPTION) {
+                try
+                {
+                    engine.dumpMemories(fileChooser.getSelectedFile().getAbsolutePath());
+                }
+                catch(IOException ex)
+                {
+                    System.out.println("An error occurred while dumping memory to file");
+                    ex.printStackTrace();
+                }
+            }
+        });
 
         JButton stepBackButton = new JButton("UNDO");
         stepBackButton.setMinimumSize(new Dimension(100, 30));
@@ -218,21 +229,19 @@ public class Simulator extends JFrame
         resetButton.setPreferredSize(new Dimension(100, 30));
         resetButton.addActionListener(e -> {
             setVisible(false);
-//            new Simulator(GET_ID(), registerBanks, pipeline, this.getExtendedState(), startingPC, startingMemories, numSpecialInstructions);
+//            new Simulator(context, id, registerBanks, pipeline, this.getExtendedState(), startingPC, startingMemories, numSpecialInstructions);
 //            for(RegisterFileModule bank : registerBanks)
 //            {
 //                if(bank != null) { bank.reset(); }
 //            }
 //            registerBanks[INTERNAL_BANK_INDEX].store(PC_INDEX, startingPC);
 //            pipeline.reset();
-            currentId = 0;
-            CURRENT_TICK = 0;
-            Main.main(null);  // Not a word!
+            Main.main(null);  // Not a word! The new Simulator gets a new SimulationContext, so nothing needs resetting
         });
         Component[] toolBarComponents = new Component[] { stallsLabel, noopsLabel, countLabel, tickButton, tickField, Box.createHorizontalStrut(30),
                                                           stackPipelineToggle, controlsToggle, Box.createHorizontalStrut(30),
                                                           stepBackButton, quantityField, skipField, Box.createHorizontalStrut(30),
-                                                          saveButton };
+                                                          saveButton, saveAllButton };
         for(Component component : toolBarComponents)
         {
             toolBar.add(component);
@@ -402,6 +411,15 @@ public class Simulator extends JFrame
         lineSizePanel.add(new JLabel("Line Size"));
         lineSizeField = new JTextField(32);
         lineSizePanel.add(lineSizeField);
+        JPanel waysPanel = new JPanel(new GridLayout(2, 1));
+        waysPanel.add(new JLabel("Ways"));
+        waysField = new JTextField(Integer.toString(DEFAULT_ASSOCIATIVITY), 32);
+        waysPanel.add(waysField);
+        JPanel replacementPolicyPanel = new JPanel(new GridLayout(2, 1));
+        replacementPolicyPanel.add(new JLabel("Replacement Policy"));
+        replacementPolicyBox = new JComboBox<>(REPLACEMENT_POLICY.values());
+        replacementPolicyBox.setSelectedItem(DEFAULT_REPLACEMENT_POLICY);
+        replacementPolicyPanel.add(replacementPolicyBox);
 
         shortWordsRadio = new JRadioButton("32-Bit Words");
         longWordsRadio = new JRadioButton("64-Bit Words");
@@ -416,6 +434,8 @@ public class Simulator extends JFrame
         memoryCreationPanel.add(instructionRadio);
         memoryCreationPanel.add(columnSizePanel);
         memoryCreationPanel.add(lineSizePanel);
+        memoryCreationPanel.add(waysPanel);
+        memoryCreationPanel.add(replacementPolicyPanel);
         memoryCreationPanel.add(shortWordsRadio);
         memoryCreationPanel.add(longWordsRadio);
 
@@ -547,18 +567,6 @@ public class Simulator extends JFrame
         updateDisplay();
     }
 
-    private boolean allAccessesAreEmpty()
-    {
-        for(JList<MemoryModule> list : memoryLists)
-        {
-            for(int i = 0; i < list.getModel().getSize(); i++)
-            {
-                if(list.getModel().getElementAt(i).getNumActiveAccesses() > 0) { return false; }
-            }
-        }
-        return true;
-    }
-
     /**
      * Helper method to recursively set the background color of current and all its component elements except text areas
      *  and fields.
@@ -595,8 +603,8 @@ public class Simulator extends JFrame
             positions.add(bars.getLast().getValue());
         }
 
-        stallsLabel.setText("Stalls: " + String.format("%,d", stalls));
-        noopsLabel.setText("No-Ops: " + String.format("%,d", noops));
+        stallsLabel.setText("Stalls: " + String.format("%,d", pipeline.getStalls()));
+        noopsLabel.setText("No-Ops: " + String.format("%,d", pipeline.getNoops()));
 
         int radix = getRadices()[1];
         callStackDisplayText.setText(registerBanks[CALL_STACK_INDEX].getDisplayText(1, radix));
@@ -686,6 +694,8 @@ public class Simulator extends JFrame
             }
             columnSizeField.setText(Integer.toString(unifiedModule[1]));
             lineSizeField.setText(Integer.toString(unifiedModule[2]));
+            waysField.setText(Integer.toString(Engine.GET_NUM_WAYS(unifiedModule)));
+            replacementPolicyBox.setSelectedItem(Engine.GET_REPLACEMENT_POLICY(unifiedModule));
             createNewMemoryModule(memoryLists[0]);
         }
         for(int[] dataModule : memories[1])
@@ -703,6 +713,8 @@ public class Simulator extends JFrame
             }
             columnSizeField.setText(Integer.toString(dataModule[1]));
             lineSizeField.setText(Integer.toString(dataModule[2]));
+            waysField.setText(Integer.toString(Engine.GET_NUM_WAYS(dataModule)));
+            replacementPolicyBox.setSelectedItem(Engine.GET_REPLACEMENT_POLICY(dataModule));
             createNewMemoryModule(memoryLists[1]);
         }
         for(int[] instructionModule : memories[2])
@@ -720,6 +732,8 @@ public class Simulator extends JFrame
             }
             columnSizeField.setText(Integer.toString(instructionModule[1]));
             lineSizeField.setText(Integer.toString(instructionModule[2]));
+            waysField.setText(Integer.toString(Engine.GET_NUM_WAYS(instructionModule)));
+            replacementPolicyBox.setSelectedItem(Engine.GET_REPLACEMENT_POLICY(instructionModule));
             createNewMemoryModule(memoryLists[2]);
         }
     }
@@ -731,11 +745,12 @@ public class Simulator extends JFrame
     private void createNewMemoryModule(JList<MemoryModule> list)
     {
         DefaultListModel<MemoryModule> model = (DefaultListModel<MemoryModule>)list.getModel();
-        MemoryModule newModule;
         int cacheDelay = DEFAULT_CACHE_ACCESS_DELAY;
         int ramDelay = DEFAULT_RAM_ACCESS_DELAY;
         try { cacheDelay = Integer.parseInt(cacheField.getText()); } catch(NumberFormatException _ignored_) {}
         try { ramDelay = Integer.parseInt(ramField.getText()); } catch(NumberFormatException _ignored_) {}
+        int numWays = DEFAULT_ASSOCIATIVITY;
+        try { numWays = Integer.parseInt(waysField.getText()); } catch(NumberFormatException _ignored_) {}
 
         MEMORY_KIND kind;
         MEMORY_TYPE type;
@@ -743,38 +758,24 @@ public class Simulator extends JFrame
         {
             kind = cacheRadio.isSelected() ? MEMORY_KIND.CACHE : MEMORY_KIND.RAM;
             type = dataRadio.isSelected() ? MEMORY_TYPE.DATA : MEMORY_TYPE.INSTRUCTION;
-            MemoryModule next = model.getSize() > 0 ? model.getElementAt(model.getSize() - 1) :
-                                    (unifiedMemoryModel.getSize() > 0 ?
-                                     unifiedMemoryModel.getElementAt(unifiedMemoryModel.getSize() - 1) :
-                                         null);
-            newModule = new MemoryModule(GET_ID(),
-                                         kind,
-                                         type,
-                                         shortWordsRadio.isSelected() ? WORD_LENGTH.SHORT : WORD_LENGTH.LONG,
-                                         kind.equals(MEMORY_KIND.CACHE) ? DEFAULT_CACHE_WRITE_MODE : DEFAULT_RAM_WRITE_MODE,
-                                         next,
-                                         Integer.parseInt(columnSizeField.getText()),
-                                         Integer.parseInt(lineSizeField.getText()),
-                                         cacheRadio.isSelected() ? cacheDelay : ramDelay);
-            model.addElement(newModule);
-            if(next == null)
-            {
-                newModule.storeFiles(PATH_TO_BINARIES, 0);
-                registerBanks[INTERNAL_BANK_INDEX].store(CM_INDEX, newModule.getMemoryAddress());
-            }
-            if((instructionCachesModel.isEmpty() && kind.equals(MEMORY_KIND.RAM)) || (type.equals(MEMORY_TYPE.INSTRUCTION) && kind.equals(MEMORY_KIND.CACHE)))
-            {
-                pipeline.setNearestInstructionCache(newModule);
-            }
-            if((dataCachesModel.isEmpty() && kind.equals(MEMORY_KIND.RAM)) || (type.equals(MEMORY_TYPE.DATA) && kind.equals(MEMORY_KIND.CACHE)))
-            {
-                pipeline.setNearestDataCache(newModule);
-            }
+            model.addElement(engine.addMemoryModule(List.of(memoryLists).indexOf(list),
+                                                    kind,
+                                                    type,
+                                                    shortWordsRadio.isSelected() ? WORD_LENGTH.SHORT : WORD_LENGTH.LONG,
+                                                    Integer.parseInt(columnSizeField.getText()),
+                                                    Integer.parseInt(lineSizeField.getText()),
+                                                    cacheRadio.isSelected() ? cacheDelay : ramDelay,
+                                                    numWays,
+                                                    (REPLACEMENT_POLICY)replacementPolicyBox.getSelectedItem()));
         }
         catch(NumberFormatException e)
         {
             WARN(logger, "Memory interface received invalid device parameters.");
         }
+        catch(IllegalArgumentException e)
+        {
+            WARN(logger, "Memory interface received invalid device parameters: " + e.getMessage());
+        }
     }
 
     /**
@@ -877,13 +878,16 @@ public class Simulator extends JFrame
                 }
             }
 
-            LinkedList<MemoryRequest> request = new LinkedList<>(List.of(
-                                                new MemoryRequest(valueIsRegister() ? bank.getID() : -1,
-                                                                  currentlySelectedMemory.getID(),
-                                                                  dataRadio.isSelected() ? MEMORY_TYPE.DATA : MEMORY_TYPE.INSTRUCTION,
-                                                                  REQUEST_TYPE.STORE,
-                                                                  new Object[]{getAddress(), newValueS})));
+            StoreRequest storeRequest = currentlySelectedMemory.newStoreRequest(valueIsRegister() ? bank.getID() : -1,
+                                                                                dataRadio.isSelected() ? MEMORY_TYPE.DATA : MEMORY_TYPE.INSTRUCTION,
+                                                                                getAddress(), newValueS.length);
+            for(int i = 0; i < newValueS.length; i++)
+            {
+                storeRequest.setWord(i, newValueS[i]);
+            }
+            RequestChain request = currentlySelectedMemory.newRequestChain(storeRequest);
             currentlySelectedMemory.store(request);
+            request.release();
         }
         catch(NumberFormatException e)
         {
@@ -909,11 +913,10 @@ public class Simulator extends JFrame
                 register -= 15;
             }
 
-            LinkedList<MemoryRequest> request = new LinkedList<>(List.of(
-                                                new MemoryRequest(bank.getID(), currentlySelectedMemory.getID(),
-                                                                  currentlySelectedMemory.getType(), REQUEST_TYPE.LOAD,
-                                                                  new Object[]{getAddress(), lineRadio.isSelected()})));
+            RequestChain request = currentlySelectedMemory.newRequestChain(currentlySelectedMemory.newLoadRequest(bank.getID(), currentlySelectedMemory.getType(),
+                                                                                                                  getAddress(), lineRadio.isSelected()));
             int[] line = currentlySelectedMemory.load(request);
+            request.release();
 
             int wroteToIndexable = 0;
             for(int i = 0; (i < line.length) && ((register + i) < bank.getNumRegisters()); i++)
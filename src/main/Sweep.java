@@ -0,0 +1,252 @@
+package main;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static main.GLOBALS.*;
+
+/**
+ * Design-space sweep. Runs the program in src/files/bin once for every memory hierarchy listed in a sweep file, each
+ *  with its own Engine and SimulationContext, on a pool of as many threads as there are cores. Prints one table of
+ *  cycles, stalls, no-ops, and every level's hit rate, and optionally writes it as CSV.
+ * Usage: Sweep &lt;sweep file&gt; [--assemble] [--jobs &lt;threads&gt;] [--cycles &lt;maximum cycles&gt;] [--csv &lt;file&gt;]
+ * Each non-blank line of the sweep file that doesn't start with # is either the name of a START_MEM_* preset without
+ *  its prefix, or a hierarchy as read by PARSE_HIERARCHY(). Any {a,b,...} in a line is expanded into one config per
+ *  choice, and several in one line into their cross product, so that
+ *      RAM 100,1024,8,32; DATA {2,10},{64,128},8,32; INST 1,32,8,64
+ *  sweeps four data caches.
+ */
+public class Sweep
+{
+    private static final String[] MODULE_KINDS = { "RAM", "DATA", "INST" };  // Indexed by Engine.UNIFIED_INDEX, etc.
+
+    /**
+     * One config's results, as BatchRunner.STATS() gives them.
+     */
+    private record Result(String config, Map<String, String> stats, String failure) {}
+
+    public static void main(String[] args) throws Exception
+    {
+        String sweepPath = null;
+        boolean runAssembler = false;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        long maxCycles = Long.MAX_VALUE;
+        String csvPath = null;
+        for(int i = 0; i < args.length; i++)
+        {
+            switch(args[i])
+            {
+                case "--assemble" -> runAssembler = true;
+                case "--jobs" -> jobs = Integer.parseInt(args[++i]);
+                case "--cycles" -> maxCycles = Long.parseLong(args[++i]);
+                case "--csv" -> csvPath = args[++i];
+                default ->
+                {
+                    if(sweepPath != null) { throw new IllegalArgumentException("Unrecognized argument: " + args[i]); }
+                    sweepPath = args[i];
+                }
+            }
+        }
+        if(sweepPath == null) { throw new IllegalArgumentException("Usage: Sweep <sweep file> [--assemble] [--jobs <threads>] [--cycles <maximum cycles>] [--csv <file>]"); }
+        if(jobs < 1) { throw new IllegalArgumentException("Need at least one job"); }
+
+        List<String> configs = new ArrayList<>();
+        for(String line : Files.readAllLines(Path.of(sweepPath)))
+        {
+            line = line.strip();
+            if(line.isEmpty() || line.startsWith("#")) { continue; }
+            configs.addAll(EXPAND(line));
+        }
+        for(String config : configs) { FIND_CONFIG(config); }  // Fail before starting anything
+        if(runAssembler) { Assembler.main(new String[0]); }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        List<Future<Result>> futures = new ArrayList<>();
+        for(String config : configs)
+        {
+            long finalMaxCycles = maxCycles;
+            futures.add(pool.submit(() -> RUN(config, finalMaxCycles)));
+        }
+        List<Result> results = new ArrayList<>();
+        for(Future<Result> future : futures) { results.add(future.get()); }
+        pool.shutdown();
+        long elapsed = System.nanoTime() - start;
+
+        List<String[]> table = TABLE(results);
+        PRINT_TABLE(table);
+        System.out.println(String.format("%,d", configs.size()) + " configs in " + String.format("%,d", elapsed / 1000000)
+                           + " ms on " + jobs + " threads");
+        if(csvPath != null)
+        {
+            try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(csvPath))))
+            {
+                for(String[] row : table) { out.println(String.join(",", Arrays.stream(row).map(Sweep::CSV_FIELD).toList())); }
+            }
+        }
+    }
+
+    /**
+     * Reads a hierarchy from modules separated by semicolons, each in the form
+     *  &lt;RAM|DATA|INST&gt; delay,lines,words per line,word size[,ways[,replacement policy[,write mode]]]
+     *  where the word size is 32, 64, SHORT, or LONG, and the policy and write mode are REPLACEMENT_POLICY and
+     *  WRITE_MODE names. Modules of each kind are listed from the lowest level up, as in the START_MEM_* presets.
+     * @return The hierarchy in the form Engine.loadMemories() takes
+     */
+    public static int[][][] PARSE_HIERARCHY(String spec)
+    {
+        List<List<int[]>> lists = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for(String moduleSpec : spec.split(";"))
+        {
+            String[] parts = moduleSpec.strip().split("\\s+", 2);
+            int listIndex = Arrays.asList(MODULE_KINDS).indexOf(parts[0].toUpperCase());
+            if((listIndex == -1) || (parts.length < 2)) { throw new IllegalArgumentException("Expected RAM, DATA, or INST and its parameters: " + moduleSpec.strip()); }
+            String[] fields = parts[1].replaceAll("\\s", "").split(",");
+            if((fields.length < 4) || (fields.length > 7)) { throw new IllegalArgumentException("Expected 4 to 7 parameters: " + moduleSpec.strip()); }
+            int[] module = new int[fields.length];
+            for(int i = 0; i < fields.length; i++)
+            {
+                String field = fields[i].toUpperCase();
+                module[i] = switch(i)
+                {
+                    case 3 -> field.equals("SHORT") ? WORD_SIZE_SHORT : (field.equals("LONG") ? WORD_SIZE_LONG : Integer.parseInt(field));
+                    case 5 -> REPLACEMENT_POLICY.valueOf(field).ordinal();
+                    case 6 -> WRITE_MODE.valueOf(field).ordinal();
+                    default -> Integer.parseInt(field);
+                };
+            }
+            if((module[3] != WORD_SIZE_SHORT) && (module[3] != WORD_SIZE_LONG)) { throw new IllegalArgumentException("Word size must be " + WORD_SIZE_SHORT + " or " + WORD_SIZE_LONG + ": " + moduleSpec.strip()); }
+            lists.get(listIndex).add(module);
+        }
+        if(lists.get(Engine.UNIFIED_INDEX).isEmpty()) { throw new IllegalArgumentException("Hierarchy needs at least one RAM: " + spec); }
+        return new int[][][] { lists.get(0).toArray(new int[0][]), lists.get(1).toArray(new int[0][]), lists.get(2).toArray(new int[0][]) };
+    }
+
+    /**
+     * Expands the first {a,b,...} in line into one line per choice, and so on recursively.
+     */
+    static List<String> EXPAND(String line)
+    {
+        int open = line.indexOf('{');
+        if(open == -1) { return List.of(line); }
+        int close = line.indexOf('}', open);
+        if(close == -1) { throw new IllegalArgumentException("Unclosed { in: " + line); }
+        List<String> expanded = new ArrayList<>();
+        for(String choice : line.substring(open + 1, close).split(","))
+        {
+            expanded.addAll(EXPAND(line.substring(0, open) + choice.strip() + line.substring(close + 1)));
+        }
+        return expanded;
+    }
+
+    private static boolean IS_PRESET(String config)
+    {
+        return !config.contains(" ") && !config.contains(";");
+    }
+
+    private static int[][][] FIND_CONFIG(String config) throws ReflectiveOperationException
+    {
+        return IS_PRESET(config) ? BatchRunner.FIND_MEMORY_PRESET(config) : PARSE_HIERARCHY(config);
+    }
+
+    /**
+     * Runs one config to completion. A config that throws is reported rather than stopping the sweep.
+     */
+    private static Result RUN(String config, long maxCycles)
+    {
+        try
+        {
+            Engine engine = Main.NEW_ENGINE(FIND_CONFIG(config), true);  // Every config shares System.out with the table
+            engine.run(maxCycles);
+            return new Result(config, BatchRunner.STATS(engine), null);
+        }
+        catch(Exception e)
+        {
+            return new Result(config, Map.of(), e.toString());
+        }
+    }
+
+    /**
+     * Lays the results out one row per config, with a header row. Configs without some level leave its column blank.
+     */
+    private static List<String[]> TABLE(List<Result> results)
+    {
+        List<String> levels = new ArrayList<>();
+        for(Result result : results)
+        {
+            for(String stat : result.stats().keySet())
+            {
+                if(stat.endsWith(".loads") && !levels.contains(stat.substring(0, stat.indexOf('.'))))
+                {
+                    levels.add(stat.substring(0, stat.indexOf('.')));
+                }
+            }
+        }
+        List<String> header = new ArrayList<>(List.of("Config", "Status", "Cycles", "Stalls", "No-Ops", "Instructions", "CPI"));
+        for(String level : levels) { header.add(level + " hits"); }
+        List<String[]> table = new ArrayList<>();
+        table.add(header.toArray(new String[0]));
+        for(Result result : results)
+        {
+            Map<String, String> stats = result.stats();
+            List<String> row = new ArrayList<>(List.of(result.config(),
+                                                       (result.failure() != null) ? result.failure() : stats.getOrDefault("status", "")));
+            for(String stat : List.of("cycles", "stalls", "noops", "instructions"))
+            {
+                row.add(stats.getOrDefault(stat, ""));
+            }
+            row.add(RATIO(stats.get("cycles"), stats.get("instructions"), "%.3f", 1));
+            for(String level : levels)
+            {
+                long accesses = LONG(stats.get(level + ".loads")) + LONG(stats.get(level + ".stores"));
+                long hits = LONG(stats.get(level + ".loadHits")) + LONG(stats.get(level + ".storeHits"));
+                row.add(stats.containsKey(level + ".loads") ? RATIO(Long.toString(hits), Long.toString(accesses), "%.2f%%", 100) : "");
+            }
+            table.add(row.toArray(new String[0]));
+        }
+        return table;
+    }
+
+    private static long LONG(String stat)
+    {
+        return (stat == null) ? 0 : Long.parseLong(stat);
+    }
+
+    private static String RATIO(String numerator, String denominator, String format, double scale)
+    {
+        if((numerator == null) || (denominator == null) || (Long.parseLong(denominator) == 0)) { return ""; }
+        return String.format(format, scale * Long.parseLong(numerator) / Long.parseLong(denominator));
+    }
+
+    private static void PRINT_TABLE(List<String[]> table)
+    {
+        table = table.stream().map(row -> Arrays.stream(row).map(cell -> cell.matches("\\d+") ? String.format("%,d", Long.parseLong(cell)) : cell)
+                                                                  .toArray(String[]::new)).toList();
+        int[] widths = new int[table.getFirst().length];
+        for(String[] row : table)
+        {
+            for(int i = 0; i < row.length; i++) { widths[i] = Math.max(widths[i], row[i].length()); }
+        }
+        for(String[] row : table)
+        {
+            StringBuilder line = new StringBuilder();
+            for(int i = 0; i < row.length; i++)
+            {
+                if(i > 0) { line.append("  "); }
+                // Config and status read left to right; numbers line up on the right
+                line.append(String.format("%" + ((i < 2) ? "-" : "") + widths[i] + "s", row[i]));
+            }
+            System.out.println(line.toString().stripTrailing());
+        }
+    }
+
+    private static String CSV_FIELD(String field)
+    {
+        return (field.contains(",") || field.contains("\"")) ? "\"" + field.replace("\"", "\"\"") + "\"" : field;
+    }
+}
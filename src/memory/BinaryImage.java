@@ -0,0 +1,39 @@
+package memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only views of the assembler's binaries (1.txt, 3.txt, ...), each a sequence of big-endian 32-bit words.
+ *  Files are memory-mapped rather than read, so words can be bulk-copied straight into a MemoryModule.
+ */
+public class BinaryImage
+{
+    public static final String HEADER_FILE_NAME = "1.txt";  // Its first word holds the starting parameters
+    public static final String[] FILE_NAMES = new String[] { HEADER_FILE_NAME, "3.txt" };  // In load order
+
+    /**
+     * Maps every whole word of the given file. The mapping stays valid after this returns.
+     * @return A big-endian view of the file's words, positioned at the first
+     */
+    public static IntBuffer MAP(File file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long numBytes = channel.size() - (channel.size() % Integer.BYTES);
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, numBytes).order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        }
+    }
+
+    /**
+     * @return Number of bytes at the end of the file that do not make up a whole word, and so are not mapped
+     */
+    public static int TRAILING_BYTES(File file)
+    {
+        return (int)(file.length() % Integer.BYTES);
+    }
+}
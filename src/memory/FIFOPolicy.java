@@ -0,0 +1,40 @@
+package memory;
+
+/**
+ * Evicts the way that was filled longest ago, regardless of hits.
+ */
+public class FIFOPolicy implements ReplacementPolicy
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int numWays;
+    private final long[] filled;  // Indexed by (set * numWays) + way
+    private long clock = 0;
+
+    public FIFOPolicy(int numSets, int numWays)
+    {
+        this.numWays = numWays;
+        filled = new long[numSets * numWays];
+    }
+
+    @Override
+    public void touch(int set, int way) {}
+
+    @Override
+    public void fill(int set, int way)
+    {
+        filled[(set * numWays) + way] = ++clock;
+    }
+
+    @Override
+    public int victim(int set)
+    {
+        int base = set * numWays;
+        int oldest = 0;
+        for(int way = 1; way < numWays; way++)
+        {
+            if(filled[base + way] < filled[base + oldest]) { oldest = way; }
+        }
+        return oldest;
+    }
+}
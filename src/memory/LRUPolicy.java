@@ -0,0 +1,43 @@
+package memory;
+
+/**
+ * Evicts the least recently used way. Each way remembers when it was last hit or filled.
+ */
+public class LRUPolicy implements ReplacementPolicy
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int numWays;
+    private final long[] lastUsed;  // Indexed by (set * numWays) + way
+    private long clock = 0;
+
+    public LRUPolicy(int numSets, int numWays)
+    {
+        this.numWays = numWays;
+        lastUsed = new long[numSets * numWays];
+    }
+
+    @Override
+    public void touch(int set, int way)
+    {
+        lastUsed[(set * numWays) + way] = ++clock;
+    }
+
+    @Override
+    public void fill(int set, int way)
+    {
+        touch(set, way);
+    }
+
+    @Override
+    public int victim(int set)
+    {
+        int base = set * numWays;
+        int oldest = 0;
+        for(int way = 1; way < numWays; way++)
+        {
+            if(lastUsed[base + way] < lastUsed[base + oldest]) { oldest = way; }
+        }
+        return oldest;
+    }
+}
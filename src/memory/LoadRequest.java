@@ -0,0 +1,29 @@
+package memory;
+
+import static main.GLOBALS.*;
+
+public class LoadRequest extends MemoryRequest
+{
+    private static final long serialVersionUID = 1L;
+
+    private boolean wholeLine;  // Whether the whole line is wanted, as opposed to just the target word
+
+    LoadRequest() {}
+
+    void init(int callerID, int targetID, MEMORY_TYPE type, int virtualAddress, boolean wholeLine)
+    {
+        init(callerID, targetID, type, virtualAddress);
+        this.wholeLine = wholeLine;
+    }
+
+    @Override
+    public REQUEST_TYPE getRequestType()
+    {
+        return REQUEST_TYPE.LOAD;
+    }
+
+    public boolean isWholeLine()
+    {
+        return wholeLine;
+    }
+}
@@ -0,0 +1,58 @@
+package memory;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Sparse dumps of one or more MemoryModules, readable back as starting images. All values are big-endian:
+ *  [ MAGIC, VERSION, number of modules ], then for each module, in order,
+ *  [ line size, number of lines, number of runs ], then for each run of consecutive lines,
+ *  [ first line, number of lines ], the lines' tags as longs, then the lines' words.
+ * Lines still in their initial state (all-0 data, with the tag a freshly created module would give them) are left
+ *  out, so untouched RAM costs nothing.
+ */
+public class MemoryDump
+{
+    public static final int MAGIC = 0x4D454D44;  // "MEMD"
+    public static final int VERSION = 1;
+
+    /**
+     * Writes every given module to a single sparse dump, overwriting the file if it exists.
+     * @param modules In the order that READ() should be given them back in
+     */
+    public static void WRITE(String absolutePath, List<MemoryModule> modules) throws IOException
+    {
+        File file = new File(absolutePath);
+        if(file.getParentFile() != null) { file.getParentFile().mkdirs(); }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(modules.size());
+            for(MemoryModule module : modules)
+            {
+                module.writeSparse(out);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of every given module with those in a sparse dump. Lines the dump leaves out are reset.
+     * @param modules Must match the dump's modules in number, order, line size, and number of lines
+     */
+    public static void READ(String absolutePath, List<MemoryModule> modules) throws IOException
+    {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(absolutePath))))
+        {
+            if(in.readInt() != MAGIC) { throw new IOException("Not a memory dump: " + absolutePath); }
+            int version = in.readInt();
+            if(version != VERSION) { throw new IOException("Unsupported memory dump version: " + version); }
+            int numModules = in.readInt();
+            if(numModules != modules.size()) { throw new IOException("Memory dump holds " + numModules + " modules, but " + modules.size() + " were given"); }
+            for(MemoryModule module : modules)
+            {
+                module.readSparse(in);
+            }
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package memory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.*;
 import java.util.logging.*;
+
+import main.Counters;
+
 import static main.GLOBALS.*;
 
-public class MemoryModule
+public class MemoryModule implements Serializable
 {
+    private static final long serialVersionUID = 1L;
     private static final Logger logger = Logger.getLogger(MemoryModule.class.getName());
 
     private final static int BYTE_MASK = 0b00000000000000000000000011111111;
@@ -20,17 +26,36 @@ public class MemoryModule
     private final int numOffsetBits;            // Number of bits needed to distinguish between all words in a line
     private final int offsetMask;               // AND mask to retrieve offset of a given virtual address
     private final int columnSize;               // Number of lines
+    private final int numWays;                  // Lines per set (1 for direct-mapped)
+    private final int numSets;                  // columnSize / numWays
+    private final REPLACEMENT_POLICY replacementPolicyKind;
+    private final ReplacementPolicy replacementPolicy;  // null if direct-mapped
     private final int accessDelay;              // For timing simulation; how long to wait until clearing requests
     private WRITE_MODE writeMode;               // BACK/THROUGH_NO_ALLOCATE/THROUGH_ALLOCATE (dynamic)
 
-    // The underlying memory array.
-    // [ [valid0, dirty0, address00, data00, data01, ... , data07],
-    //   [valid1, dirty1, address10, data10, data11, ... , data17],
-    //   ..., ]
+    // The underlying memory, struct-of-arrays, split into pages of (1 << pageShift) lines.
+    // dataPages[p]: [ data00, data01, ... , data07, data10, data11, ... , data17, ... ]  (line i starts at (i & pageMask) * lineSize)
+    // tagPages[p]:  [ tag0, tag1, ... ], each (dirty << 33) | (valid << 32) | virtual line address
+    // A line keeps its address after being invalidated.
+    // Caches hold every line in one page. The lowest-level RAM is sparse: its pages are only allocated once written,
+    //  and until then read as zeroes, valid, at their own addresses.
     // Remember to use >>> instead of >> for logical right shift
-    private int[][] memory;
-
-    LinkedList<LinkedList<MemoryRequest>> accesses;  // Memory request chains running through this device.
+    private int numLines;
+    private boolean sparse;
+    private int pageShift;
+    private int pageMask;
+    private int[][] dataPages;
+    private long[][] tagPages;
+    private int[] zeroPage;                     // Read in place of pages that have not been allocated
+    private int residentPages;
+
+    private final Counters counters;            // Shared by the whole simulation
+    private final int counterBase;              // This device's block of Counters.MEMORY_COUNTERS counters
+
+    RequestChainQueue accesses;                 // Memory request chains running through this device.
+    private final MemoryScheduler scheduler;    // Decides which cycles this device ticks in
+    private final MemoryRequestPool requestPool;  // Where this device's requests come from and go back to
+    int tickOrder;                              // Position in scheduler's tick order
 
     /**
      *
@@ -41,11 +66,17 @@ public class MemoryModule
      * @param next Pointer to the next MemoryModule down the line
      * @param columnSize Number of lines in this MemoryModule
      * @param accessDelay Minimum access time penalty for storing to or loading from this MemoryModule
+     * @param numWays Associativity. Must divide columnSize. The lowest level of memory is always direct-mapped
+     * @param replacementPolicy Which way to evict when numWays is above 1
+     * @param scheduler Scheduler that every MemoryModule in this hierarchy shares
      */
     public MemoryModule(int id, MEMORY_KIND kind, MEMORY_TYPE type, WORD_LENGTH wordLength, WRITE_MODE writeMode,
-                        MemoryModule next, int columnSize, int lineSize, int accessDelay)
+                        MemoryModule next, int columnSize, int lineSize, int accessDelay,
+                        int numWays, REPLACEMENT_POLICY replacementPolicy, MemoryScheduler scheduler)
     {
         if(columnSize < 1) { throw new IllegalArgumentException("Column size cannot be below 1"); }
+        if((numWays < 1) || ((columnSize % numWays) != 0)) { throw new IllegalArgumentException("Number of ways must be at least 1 and divide the column size"); }
+        if((next == null) && (numWays != 1)) { throw new IllegalArgumentException("The lowest level of memory must be direct-mapped"); }
         if(lineSize < 1) { throw new IllegalArgumentException("Line size cannot be below 1"); }
         if(wordLength.equals(WORD_LENGTH.LONG) && (lineSize < 2)) { throw new IllegalArgumentException("Line size cannot be below 2 with 64-bit words"); }
 
@@ -60,8 +91,16 @@ public class MemoryModule
         numOffsetBits = (int)(Math.log(lineSize) / Math.log(2));
         offsetMask = numOffsetBits > 0 ? lineSize - 1 : 0;
         this.accessDelay = accessDelay;
+        this.numWays = numWays;
+        numSets = columnSize / numWays;
+        replacementPolicyKind = replacementPolicy;
+        this.replacementPolicy = (numWays > 1) ? ReplacementPolicy.CREATE(replacementPolicy, numSets, numWays) : null;
+        this.scheduler = scheduler;
+        requestPool = scheduler.getRequestPool();
+        counters = scheduler.getCounters();
+        counterBase = counters.register(Counters.MEMORY_COUNTERS);
 
-        accesses = new LinkedList<>();
+        accesses = new RequestChainQueue();
 
         initMemory();
     }
@@ -71,7 +110,7 @@ public class MemoryModule
      * @param access The reference to a MemoryRequest chain that was previously logged asn access to this device.
      * @return true iff the most recent request in the chain was made to this device.
      */
-    private boolean waitingOnThis(LinkedList<MemoryRequest> access)
+    private boolean waitingOnThis(RequestChain access)
     {
         return !access.isEmpty() && (access.getLast().getTargetID() == id);
     }
@@ -103,12 +142,17 @@ public class MemoryModule
             .append("Line Size:")
             .append(itemGap)
             .append(lineSize)
+            .append(itemDelim)
+            .append("Ways:")
+            .append(itemGap)
+            .append(numWays)
+            .append((numWays > 1) ? " - " + replacementPolicyKind : "")
             .append(itemDelim);
 
         if(accesses.peek() == null) { ret.append("AVAILABLE"); }
         else
         {
-            ret.append(!waitingOnThis(accesses.getFirst()) ? "BLOCKED: " : "OPERATING: ")
+            ret.append(!waitingOnThis(accesses.peek()) ? "BLOCKED: " : "OPERATING: ")
                .append(itemGap)
                .append(getAccessTimeStrings());
         }
@@ -123,8 +167,9 @@ public class MemoryModule
     private String getAccessTimeStrings()
     {
         StringBuilder ret = new StringBuilder();
-        for(LinkedList<MemoryRequest> chain : accesses)
+        for(int c = 0; c < accesses.size(); c++)
         {
+            RequestChain chain = accesses.get(c);
             try
             {
                 boolean hit = false;
@@ -132,7 +177,7 @@ public class MemoryModule
                 {
                     if(request.getTargetID() == id)
                     {
-                        ret.append(request.getTimeRemaining());
+                        ret.append(request.getTimeRemaining(scheduler.getTick()));
                         hit = true;
                         break;
                     }
@@ -140,7 +185,7 @@ public class MemoryModule
                 if(!hit && !chain.isEmpty())
                 {
                     ret.append('-')
-                       .append(chain.getLast().getTimeRemaining());
+                       .append(chain.getLast().getTimeRemaining(scheduler.getTick()));
                 }
             }
             catch(MemoryRequestTimerNotStartedException e)
@@ -169,6 +214,39 @@ public class MemoryModule
         return id;
     }
 
+    public MEMORY_KIND getKind()
+    {
+        return kind;
+    }
+
+    public long getLoads()
+    {
+        return counters.get(counterBase + Counters.MEMORY_LOADS);
+    }
+
+    public long getLoadHits()
+    {
+        return counters.get(counterBase + Counters.MEMORY_LOAD_HITS);
+    }
+
+    public long getStores()
+    {
+        return counters.get(counterBase + Counters.MEMORY_STORES);
+    }
+
+    public long getStoreHits()
+    {
+        return counters.get(counterBase + Counters.MEMORY_STORE_HITS);
+    }
+
+    /**
+     * @return Dirty lines that timed accesses replaced, and so wrote to the next level
+     */
+    public long getWritebacks()
+    {
+        return counters.get(counterBase + Counters.MEMORY_WRITEBACKS);
+    }
+
     /**
      * getMemoryDisplay(2, 2);
      * @return The result of the above call.
@@ -220,8 +298,9 @@ public class MemoryModule
         ret.append('\n')
            .append("-".repeat(ret.toString().length() - 1))
            .append('\n');
-        for(int[] line : memory)
+        for(int line = 0; line < numLines; line++)
         {
+            if(!isResident(line)) { continue; }  // Untouched pages of a sparse RAM would only add rows of zeroes
             String address = columnSize > 1 ? smartToString(getFirstAddress(line) >>> numOffsetBits, addressRadix) : "";
             ret.append("   ")
                .append(isDirty(line) ? 1 : 0)
@@ -230,9 +309,10 @@ public class MemoryModule
                .append("    |  ")
                .append(ADDRESS_FILLER.repeat(Math.max(addressLabel.length(), greatestAddressLength) - address.length()))
                .append(address);
-            for(int i = FIRST_WORD_INDEX; i < line.length; i++)
+            int[] page = readPage(line);
+            for(int i = getLineStart(line); i < getLineStart(line) + lineSize; i++)
             {
-                String value = valueRadix > 2 ? smartToString(line[i], valueRadix) : Integer.toBinaryString(line[i]);
+                String value = valueRadix > 2 ? smartToString(page[i], valueRadix) : Integer.toBinaryString(page[i]);
                 ret.append("  |  ")
                    .append(String.format("%" + (smartToString(Integer.MAX_VALUE, valueRadix).length() + 1) + "s", value).replace(' ', valueRadix > 2 ? ' ' : '0'));
             }
@@ -243,60 +323,164 @@ public class MemoryModule
 
     /**
      * Centralized method for checking whether a memory line is valid.
-     * @param line The line to be checked.
+     * @param line The local address of the line to be checked.
      * @return true iff the line is valid, else false
      */
-    private boolean isValid(int[] line)
+    private boolean isValid(int line)
     {
-        return line[VALID_INDEX] == 1;
+        return (getTag(line) & LINE_VALID_BIT) != 0;
     }
 
     /**
      * Centralized method for setting the valid bit of a memory line to true.
-     * @param line The line to be edited
+     * @param line The local address of the line to be edited
      */
-    private void setValid(int[] line)
+    private void setValid(int line)
     {
         setValid(line, true);
     }
 
     /**
      * Centralized method for setting the valid bit of a memory line.
-     * @param line The line to be edited
+     * @param line The local address of the line to be edited
      * @param valid Whether the valid bit should be set to 1 (as opposed to 0)
      */
-    private void setValid(int[] line, boolean valid)
+    private void setValid(int line, boolean valid)
     {
-        line[VALID_INDEX] = valid ? 1 : 0;
+        long tag = getTag(line);
+        setTag(line, valid ? (tag | LINE_VALID_BIT) : (tag & ~LINE_VALID_BIT));
     }
 
     /**
      * Centralized method for checking whether a line is dirty.
-     * @param line The line to be checked
+     * @param line The local address of the line to be checked
      * @return true iff the line is dirty else false
      */
-    private boolean isDirty(int[] line)
+    private boolean isDirty(int line)
     {
-        return line[DIRTY_INDEX] == 1;
+        return (getTag(line) & LINE_DIRTY_BIT) != 0;
     }
 
     /**
      * Centralized method for setting the dirty bit of a line to 1.
-     * @param line The line to be edited
+     * @param line The local address of the line to be edited
      */
-    private void setDirty(int[] line)
+    private void setDirty(int line)
     {
         setDirty(line, true);
     }
 
     /**
      * Centralized method for setting the dirty bit of a memory line.
-     * @param line The line to be edited
+     * @param line The local address of the line to be edited
      * @param dirty Whether the dirty bit should be set to 1 (as opposed to 0)
      */
-    private void setDirty(int[] line, boolean dirty)
+    private void setDirty(int line, boolean dirty)
+    {
+        long tag = getTag(line);
+        setTag(line, dirty ? (tag | LINE_DIRTY_BIT) : (tag & ~LINE_DIRTY_BIT));
+    }
+
+    /**
+     * @param line The local address of a line
+     * @return Index of the line's first word in its data page
+     */
+    private int getLineStart(int line)
+    {
+        return (line & pageMask) << numOffsetBits;
+    }
+
+    /**
+     * @param line The local address of a line
+     * @return The line's tag, without allocating its page
+     */
+    private long getTag(int line)
+    {
+        long[] page = tagPages[line >>> pageShift];
+        return (page != null) ? page[line & pageMask] : getInitialTag(line);
+    }
+
+    /**
+     * @return The tag a line starts with: valid at its own address in the lowest level of memory, else invalid
+     */
+    private long getInitialTag(int line)
+    {
+        return (next == null) ? (LINE_VALID_BIT | line) : 0;
+    }
+
+    private void setTag(int line, long tag)
+    {
+        touchPage(line);
+        tagPages[line >>> pageShift][line & pageMask] = tag;
+    }
+
+    /**
+     * @param line The local address of a line
+     * @return The data page holding the line, to be read only. Unallocated pages read as zeroPage
+     */
+    private int[] readPage(int line)
+    {
+        int[] page = dataPages[line >>> pageShift];
+        return (page != null) ? page : zeroPage;
+    }
+
+    /**
+     * @param line The local address of a line
+     * @return The data page holding the line, allocating it first if need be
+     */
+    private int[] touchPage(int line)
+    {
+        int pageIndex = line >>> pageShift;
+        if(dataPages[pageIndex] == null)
+        {
+            int firstLine = pageIndex << pageShift;
+            int pageLines = Math.min(pageMask + 1, numLines - firstLine);
+            dataPages[pageIndex] = new int[pageLines * lineSize];
+            tagPages[pageIndex] = new long[pageLines];
+            for(int i = 0; i < pageLines; i++)
+            {
+                tagPages[pageIndex][i] = getInitialTag(firstLine + i);
+            }
+            residentPages++;
+        }
+        return dataPages[pageIndex];
+    }
+
+    private boolean isResident(int line)
+    {
+        return dataPages[line >>> pageShift] != null;
+    }
+
+    /**
+     * @return Whether this is the lowest-level RAM, which allocates its pages as they are written
+     */
+    public boolean isSparse()
+    {
+        return sparse;
+    }
+
+    /**
+     * @return Number of pages of storage allocated so far
+     */
+    public int getResidentPages()
+    {
+        return residentPages;
+    }
+
+    /**
+     * @return Number of pages spanning every line of this device
+     */
+    public int getNumPages()
     {
-        line[DIRTY_INDEX] = dirty ? 1 : 0;
+        return dataPages.length;
+    }
+
+    /**
+     * @return Number of words in a full page
+     */
+    public int getPageWords()
+    {
+        return (pageMask + 1) * lineSize;
     }
 
     public MEMORY_TYPE getType()
@@ -306,42 +490,45 @@ public class MemoryModule
 
     /**
      * Centralized method for getting the starting virtual address of a memory line.
-     * @param line The line to be read
+     * @param line The local address of the line to be read
      * @return The virtual address of the first word in the line
      */
-    private int getFirstAddress(int[] line)
+    private int getFirstAddress(int line)
     {
-        return line[ADDRESS_INDEX];
+        return (int)(getTag(line) & LINE_ADDRESS_MASK) << numOffsetBits;
     }
 
     /**
      * Centralized method for setting the starting virtual address of a memory line.
-     * @param line The line to be edited
-     * @param virtualAddress The virtual address of the first word in the line
+     * @param line The local address of the line to be edited
+     * @param virtualAddress The virtual address of any word in the line
      */
-    private void setFirstAddress(int[] line, int virtualAddress)
+    private void setFirstAddress(int line, int virtualAddress)
     {
-        line[ADDRESS_INDEX] = virtualAddress;
+        setTag(line, (getTag(line) & ~LINE_ADDRESS_MASK) | ((virtualAddress >>> numOffsetBits) & LINE_ADDRESS_MASK));
     }
 
     /**
      * Flushes memory. If this is the lowest level of memory, all lines are set as valid so they can all be read. (They
      *  are initialized as all-0 data with correct addresses.)
+     * The lowest-level RAM may span the whole address space, since its pages are only allocated once written. Every
+     *  other device is capped at GET_ACTUAL_MAX_SIZE() words, all allocated up front.
      */
     private void initMemory()
     {
-        memory = new int[Math.min(GET_ACTUAL_MAX_SIZE(type), columnSize * lineSize) / lineSize]
-                        [WORD_INDECES.length - 1 + lineSize];
-
-        if(next == null)
-        {
-            for(int i = 0; i < memory.length; i++)
-            {
-                int[] line = memory[i];
-                setValid(line);
-                setFirstAddress(line, i * lineSize);
-            }
-        }
+        sparse = (next == null) && kind.equals(MEMORY_KIND.RAM);
+        numLines = (int)(Math.min(sparse ? MAX_ADDRESS + 1L : GET_ACTUAL_MAX_SIZE(type), (long)columnSize * lineSize) / lineSize);
+        int pageLines = sparse ? Math.max(1, RAM_PAGE_WORDS >>> numOffsetBits)
+                               : Integer.highestOneBit(Math.max(1, numLines - 1)) << 1;
+        pageShift = Integer.numberOfTrailingZeros(pageLines);
+        pageMask = pageLines - 1;
+        int numPages = ((numLines - 1) >>> pageShift) + 1;
+        dataPages = new int[numPages][];
+        tagPages = new long[numPages][];
+        zeroPage = sparse ? new int[pageLines * lineSize] : null;
+        residentPages = 0;
+
+        if(!sparse) { touchPage(0); }  // Every line at once
     }
 
     /**
@@ -365,13 +552,15 @@ public class MemoryModule
     {
         if(writeMode.equals(WRITE_MODE.BACK) && !mode.equals(WRITE_MODE.BACK) && next != null)
         {
-            for(int[] line : memory)
+            for(int line = 0; line < numLines; line++)
             {
                 if(isDirty(line) && isValid(line))
                 {
                     if(next != null)
                     {
-                        accessNext(REQUEST_TYPE.STORE, generateStoreArgsFromFullLine(line), new LinkedList<>());
+                        RequestChain chain = requestPool.obtainChain();
+                        storeNext(line, chain);
+                        chain.release();
                     }
                     else
                     {
@@ -390,14 +579,17 @@ public class MemoryModule
     }
 
     /**
-     * Direct-maps virtual address to local address. Does so as follows:
+     * Maps virtual address to local address. Does so as follows:
      *  virtualWordAddress is checked to make sure it is within the correct maximum range. Throws
      *      IllegalArgumentException if not.
      *  virtualWordAddress is shifted right to retrieve the virtual line address.
      *  If this MemoryModule is the lowest level of unified RAM, the virtual line address is modulated to stay within
      *      the simulated address range.
-     *  To map the virtual line address to its local line address, it is modulated by the number of lines in this
-     *      MemoryModule.
+     *  To find the set, the virtual line address is modulated by the number of sets in this MemoryModule. If
+     *      direct-mapped, that is the local line address.
+     *  Otherwise, returns the way holding that line if any (recording the hit with the replacement policy), else the
+     *      first invalid way, else the way chosen by the replacement policy. The caller decides whether to fill it.
+     * Should be called once per access, since a random policy may choose a different victim each time.
      * @param virtualWordAddress Address in the lowest level of memory
      * @return The local line address
      */
@@ -410,36 +602,29 @@ public class MemoryModule
         // Rightshift virtual word address to turn it into a virtual line address
         int lineAddress = virtualWordAddress >>> numOffsetBits;
                            // Modulate virtual line address into simulated address space if this is lowest level of memory and RAM
-        return lineAddress % (next == null && kind.equals(MEMORY_KIND.RAM) ? memory.length : lineAddress + 1)
-               % columnSize;
-               // Modulate line address by the number of lines in this MemoryModule for direct-map
-    }
-
-    /**
-     * Central method for creating arg arrays for STORE MemoryRequests.
-     * @param line Line to be written
-     * @return Object array fit for passing to accessNext()
-     */
-    private Object[] generateStoreArgsFromFullLine(int[] line)
-    {
-        int[] words = new int[lineSize];
-        System.arraycopy(line, FIRST_WORD_INDEX, words, 0, lineSize);
-        return new Object[] { getFirstAddress(line), words };
-    }
-
-    /**
-     * Central method for creating arg arrays for STORE MemoryRequests.
-     * @param virtualAddress Address of target word
-     * @param words Line of words to be written
-     * @return Object array fit for passing to accessNext()
-     */
-    private Object[] generateStoreArgsFromValues(int virtualAddress, int[] words)
-    {
-        return new Object[] { virtualAddress, words };
+        int set = lineAddress % (next == null && kind.equals(MEMORY_KIND.RAM) ? numLines : lineAddress + 1)
+                  % numSets;
+        if(numWays == 1) { return set; }
+
+        int base = set * numWays;
+        long validTag = LINE_VALID_BIT | (lineAddress & LINE_ADDRESS_MASK);
+        int invalidWay = -1;
+        for(int way = 0; way < numWays; way++)
+        {
+            long tag = getTag(base + way);
+            if((tag & (LINE_VALID_BIT | LINE_ADDRESS_MASK)) == validTag)
+            {
+                replacementPolicy.touch(set, way);
+                return base + way;
+            }
+            if(((tag & LINE_VALID_BIT) == 0) && (invalidWay == -1)) { invalidWay = way; }
+        }
+        return base + ((invalidWay != -1) ? invalidWay : replacementPolicy.victim(set));
     }
 
     /**
-     * Performs requested store operation immediately, then queues the access delay.
+     * Performs requested store operation immediately, then queues the access delay by waking the device the chain
+     *  now waits on.
      * If currently in write-through no-allocate mode and the line is valid here, creates a store request to the next
      *  level of memory and marks the line as invalid here.
      * If currently in write-back mode and the line overwrites a dirty and valid line here, creates a store request to
@@ -447,184 +632,190 @@ public class MemoryModule
      * If currently in write-through allocate mode, writes the line here and creates a store request to the next level
      *  of memory.
      * REQUESTS MUST BE MADE IN INTENDED ORDER OF EXECUTION!
-     * @param chain Chain of STORE MemoryRequests, last of which targets this device. That request must be instantiated
-     *              but not started. If that request's 'words' arg has length less than line size, request arg
-     *              virtualAddress must be the exact word address of the first word in that array.
+     * @param chain Chain of MemoryRequests, last of which is a StoreRequest targeting this device. That request must not
+     *              be started. If it stores fewer words than the line size, its virtualAddress must be the exact word
+     *              address of the first of them.
      */
-    public void store(LinkedList<MemoryRequest> chain)
+    public void store(RequestChain chain)
     {
         accesses.add(chain);
 
-        int virtualAddress;
-        int[] words;
+        if(!(chain.getLast() instanceof StoreRequest request)) { throw new IllegalArgumentException("Store was given a " + chain.getLast().getRequestType() + " request"); }
+        writeWords(request.getVirtualAddress(), request.getWordBuffer(), 0, request.getNumWords(), chain);
+        scheduler.wake(chain.getLast().getTargetID());
+    }
 
-        Object[] args = chain.getLast().getArgs();  // [ int virtualAddress, int[] words ]
-        try
-        {
-            virtualAddress = (int)args[0];
-            words = (int[])args[1];
-        }
-        catch(ClassCastException e)
+    /**
+     * Functional counterpart of store(): updates this level and those below it exactly as store() would, but issues no
+     *  requests, so no time passes and nothing is left for the scheduler.
+     * @param virtualAddress Exact word address of the first word, if fewer words than the line size are stored
+     * @param words Holds the words to be stored, starting at index from
+     */
+    public void storeFunctional(int virtualAddress, int[] words, int from, int numWords)
+    {
+        writeWords(virtualAddress, words, from, numWords, null);
+    }
+
+    /**
+     * Backend for store() and storeFunctional().
+     * @param chain Chain that any requests to the next level are added to, or null to access it functionally
+     */
+    private void writeWords(int virtualAddress, int[] words, int from, int numWords, RequestChain chain)
+    {
+        int line = map(virtualAddress);
+        int lineStart = getLineStart(line);
+        int[] data = touchPage(line);
+        if(chain != null)
         {
-            System.out.println(args[0]);
-            System.out.println(args[1]);
-            throw new IllegalArgumentException("Store request had an invalid argument");
+            counters.increment(counterBase + Counters.MEMORY_STORES);
+            if(isValid(line) && sameLine(getFirstAddress(line), virtualAddress)) { counters.increment(counterBase + Counters.MEMORY_STORE_HITS); }
         }
 
-        int[] line = memory[map(virtualAddress)];
-
         if(writeMode.equals(WRITE_MODE.THROUGH_NO_ALLOCATE))
         {
             if(sameLine(getFirstAddress(line), virtualAddress))
-                { setValid(line, false); }
+            {
+                setValid(line, false);
+            }
             if(next != null)
             {
-                accessNext(REQUEST_TYPE.STORE, args, chain);
+                storeNext(virtualAddress, words, from, numWords, chain);
             }
             else
             {
-                writeData(false, virtualAddress, words);
+                writeData(line, false, virtualAddress, words, from, numWords);
             }
         }
         else if(writeMode.equals(WRITE_MODE.BACK))  // TODO : Currently, write-back mode will allow instruction memory to be written in a DATA cache, and thus outdated in unified memory, but not marked as dirty there. Prevent writing to instruction memory through data memory.
         {
-            if(!sameLine(getFirstAddress(line), virtualAddress) && isDirty(line) && isValid(line))
+            // Lines from the next level are loaded straight into this line, then the new words are merged over them
+            boolean miss = !sameLine(getFirstAddress(line), virtualAddress);
+            if(miss && isDirty(line) && isValid(line))
             {
                 if(next != null)
                 {
-                    accessNext(REQUEST_TYPE.STORE, generateStoreArgsFromFullLine(line), chain);
+                    storeNext(line, chain);
+                    if(chain != null) { counters.increment(counterBase + Counters.MEMORY_WRITEBACKS); }
                 }
                 else
                 {
                     WARN(logger, "Unexpected behavior: Lowest level of memory had dirty/invalid data or did not have requested address.");
                 }
-                int[] newWords = words;
-                if(words.length < lineSize)
-                {
-                    int[] oldWords = (next != null) ? accessNext(REQUEST_TYPE.LOAD,
-                                                                 generateLoadArgsFromValues(virtualAddress, true), chain)
-                                                    : readData(line, getFirstAddress(line), true);
-                    System.arraycopy(words, 0, oldWords, (words.length < lineSize) ? (virtualAddress & offsetMask) : 0, words.length);
-                    newWords = oldWords;
-                }
-                writeData(true, virtualAddress, newWords);
+                if((numWords < lineSize) && (next != null)) { loadNext(virtualAddress, data, lineStart, chain); }
             }
-            else
+            else if(miss && (next != null))
             {
-                int[] oldWords = (!sameLine(getFirstAddress(line), virtualAddress) && (next != null))
-                                                    ? accessNext(REQUEST_TYPE.LOAD,
-                                                                 generateLoadArgsFromValues(virtualAddress, true), chain)
-                                                    : readData(line, getFirstAddress(line), true);
-//                System.out.println(Arrays.toString(words));
-//                System.out.println(Arrays.toString(oldWords));
-//                System.out.println(virtualAddress);
-//                System.out.println(offsetMask);
-                System.arraycopy(words, 0, oldWords, (words.length < lineSize) ? (virtualAddress & offsetMask) : 0, words.length);
-                writeData(true, virtualAddress, oldWords);
+                loadNext(virtualAddress, data, lineStart, chain);
             }
+            System.arraycopy(words, from, data, lineStart + ((numWords < lineSize) ? (virtualAddress & offsetMask) : 0), numWords);
+            claimLine(line, true, virtualAddress);
         }
         else if(writeMode.equals(WRITE_MODE.THROUGH_ALLOCATE))
         {
-            int[] newWords = words;
-            if(words.length < lineSize)
+            if(numWords < lineSize)
             {
-                int[] oldWords = ((next != null) && !sameLine(getFirstAddress(line), virtualAddress))
-                                 ? accessNext(REQUEST_TYPE.LOAD, generateLoadArgsFromValues(virtualAddress, true), chain)
-                                 : readData(line, getFirstAddress(line), true);
-                System.arraycopy(words, 0, oldWords, (words.length < lineSize) ? (virtualAddress & offsetMask) : 0, words.length);
-                newWords = oldWords;
+                if((next != null) && !sameLine(getFirstAddress(line), virtualAddress)) { loadNext(virtualAddress, data, lineStart, chain); }
+                System.arraycopy(words, from, data, lineStart + (virtualAddress & offsetMask), numWords);
+                claimLine(line, false, virtualAddress);
+                if(next != null) { storeNext(virtualAddress, data, lineStart, lineSize, chain); }
+            }
+            else
+            {
+                writeData(line, false, virtualAddress, words, from, numWords);
+                if(next != null) { storeNext(virtualAddress, words, from, numWords, chain); }
             }
-            writeData(false, virtualAddress, newWords);
-            if(next != null) { accessNext(REQUEST_TYPE.STORE, generateStoreArgsFromValues(virtualAddress, newWords), chain); }
         }
     }
 
     /**
      * Writes into this level of memory's underlying array.
+     * @param localAddress Line to write into, as returned by map(virtualAddress).
      * @param virtualAddress Virtual address of a word being written.
-     * @param words Line of words to be written.
+     * @param words Line of words to be written, starting at index from.
+     * @param numWords Number of entries of words to write.
      */
-    private void writeData(boolean dirty, int virtualAddress, int[] words)
+    private void writeData(int localAddress, boolean dirty, int virtualAddress, int[] words, int from, int numWords)
     {
-        int[] line = memory[map(virtualAddress)];
-        setValid(line);
-        setDirty(line, dirty);
-        setFirstAddress(line, virtualAddress >> numOffsetBits << numOffsetBits);
-        System.arraycopy(words, 0, line, FIRST_WORD_INDEX, words.length);
+        claimLine(localAddress, dirty, virtualAddress);
+        System.arraycopy(words, from, touchPage(localAddress), getLineStart(localAddress), numWords);
     }
 
-    public void storeFiles(String path, int startingAddress)
+    /**
+     * Marks a line as valid and holding the line containing virtualAddress, for when its words have already been
+     *  written in place.
+     * @param localAddress Line to claim, as returned by map(virtualAddress).
+     */
+    private void claimLine(int localAddress, boolean dirty, int virtualAddress)
     {
-        File directory = new File(path);
-        File[] tempFiles = directory.listFiles();
+        if((replacementPolicy != null) && (!isValid(localAddress) || !sameLine(getFirstAddress(localAddress), virtualAddress)))
+            { replacementPolicy.fill(localAddress / numWays, localAddress % numWays); }
+        setValid(localAddress);
+        setDirty(localAddress, dirty);
+        setFirstAddress(localAddress, virtualAddress);
+    }
 
-        File[] files = new File[2];
-        for(File file : tempFiles)
+    /**
+     * Copies the assembler's binaries in path into this device, one after the other, starting at startingAddress.
+     *  Each file is memory-mapped and copied a line at a time straight into storage. Any words left over in the last
+     *  line written are zeroed.
+     * @param verbose Whether to report how many words were read from each file
+     */
+    public void storeFiles(String path, int startingAddress, boolean verbose)
+    {
+        if(!new File(path, BinaryImage.HEADER_FILE_NAME).isFile())
         {
-            if(file.getName().equals("1.txt")) { files[0] = file; }
-            else if(file.getName().equals("3.txt")) { files[1] = file; }
+            System.out.printf("The specified directory \"%s\" is empty or does not exist.%n", path);
+            return;
         }
 
-        int previousSize = 0;
-        List<Integer> words = new ArrayList<>();
-
-        if (files[0] != null)
+        int virtualAddress = startingAddress;
+        for(String name : BinaryImage.FILE_NAMES)
         {
-            for (File file : files)
+            File file = new File(path, name);
+            if(!file.isFile()) { continue; }
+            IntBuffer words;
+            try
             {
-                if (file.isFile())
-                {
-                    try
-                    {
-                        FileInputStream fis = new FileInputStream(file);
-                        byte[] buffer = new byte[4];
-                        int bytesRead;
-
-                        while((bytesRead = fis.read(buffer)) != -1)
-                        {
-                            if(bytesRead == 4)
-                            {
-                                int value = 0;
-                                value = (value | (buffer[0] & BYTE_MASK)) << 8;
-                                value = (value | (buffer[1] & BYTE_MASK)) << 8;
-                                value = (value | (buffer[2] & BYTE_MASK)) << 8;
-                                value = (value | (buffer[3] & BYTE_MASK));
-                                words.add(value);
-                            }
-                            else
-                            {
-                                System.out.println("Remaining " + bytesRead + "byte(s) ignored for file: " + file.getName());
-                            }
-                        }
-                    }
-                    catch(IOException e)
-                    {
-                        e.printStackTrace();
-                    }
-
-                    System.out.println("Processed " + (words.size() - previousSize) + " words from file: " + file.getName());
-                    previousSize = words.size();
-                }
+                words = BinaryImage.MAP(file);
             }
-        }
-        else
-        {
-            System.out.printf("The specified directory \"%s\" is empty or does not exist.%n", path);
-        }
+            catch(IOException e)
+            {
+                e.printStackTrace();
+                continue;
+            }
+            if(BinaryImage.TRAILING_BYTES(file) != 0)
+            {
+                System.out.println("Remaining " + BinaryImage.TRAILING_BYTES(file) + "byte(s) ignored for file: " + file.getName());
+            }
+            if(verbose) { System.out.println("Processed " + words.remaining() + " words from file: " + file.getName()); }
 
-        int[] line = new int[lineSize];
-        for(int i = 0; i < words.size(); i++)
-        {
-            line[i % lineSize] = words.get(i);
-            if((i % lineSize == lineSize - 1) || (i == words.size() - 1))
+            while(words.hasRemaining())
             {
-                writeData(false, startingAddress + i, line);
-                line = new int[lineSize];
+                int line = map(virtualAddress);
+                int offset = virtualAddress & offsetMask;
+                int numWords = Math.min(lineSize - offset, words.remaining());
+                int[] page = touchPage(line);
+                if(offset == 0) { Arrays.fill(page, getLineStart(line), getLineStart(line) + lineSize, 0); }
+                words.get(page, getLineStart(line) + offset, numWords);
+                claimLine(line, false, virtualAddress);
+                virtualAddress += numWords;
             }
         }
     }
 
+    /**
+     * Writes the words of every line in this device to a file, in order, as big-endian 32-bit words.
+     */
     public void dumpToFile(String absolutePath)
+    {
+        dumpToFile(absolutePath, false);
+    }
+
+    /**
+     * @param sparse Whether to write a MemoryDump, which leaves out untouched lines and keeps valid/dirty bits and
+     *               addresses, instead of every line's words
+     */
+    public void dumpToFile(String absolutePath, boolean sparse)
     {
         File file = new File(absolutePath);
 
@@ -641,21 +832,22 @@ public class MemoryModule
 
             if(isFileCreated)
             {
-                try(FileOutputStream writer = new FileOutputStream(file))
+                try
                 {
-                    for(int[] line : memory)
+                    if(sparse)
+                    {
+                        MemoryDump.WRITE(absolutePath, List.of(this));
+                    }
+                    else
                     {
-                        int[] words = readData(line, -1, true);
-                        byte[] data = new byte[4 * words.length];
-                        for(int i = 0; i < words.length; i++)
+                        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
                         {
-                            data[(4 * i) + 0] = (byte)(words[i] >>> 24);
-                            data[(4 * i) + 1] = (byte)(words[i] >>> 16);
-                            data[(4 * i) + 2] = (byte)(words[i] >>> 8);
-                            data[(4 * i) + 3] = (byte)(words[i] >>> 0);
+                            ByteBuffer buffer = ByteBuffer.allocate(lineSize * Integer.BYTES);
+                            for(int line = 0; line < numLines; line++)
+                            {
+                                writeLine(out, buffer, line);
+                            }
                         }
-                        System.out.println(Arrays.toString(data));
-                        writer.write(data);
                     }
                     System.out.println("Dump file created and text written successfully.");
                 }
@@ -677,178 +869,352 @@ public class MemoryModule
     }
 
     /**
-     * Central method for creating arg arrays for LOAD MemoryRequests.
-     * @param virtualAddress Address of target word
-     * @param wholeLine Whether the load should return the whole line (as opposed to just the target word)
-     * @return Object array fit for passing to accessNext()
+     * Replaces this device's contents with those of a MemoryDump holding this device alone.
      */
-    private Object[] generateLoadArgsFromValues(int virtualAddress, boolean wholeLine)
+    public void loadDump(String absolutePath) throws IOException
     {
-        return new Object[] { virtualAddress, wholeLine };
+        MemoryDump.READ(absolutePath, List.of(this));
     }
 
     /**
-     * Performs requested load operation immediately, then queues access delay.
-     * If currently in write-back mode and this operation has to replace a dirty line, it first creates a new access
-     *  request to the next level of memory to write the dirty line.
-     * @param chain Chain of LOAD MemoryRequests, last of which targets this device. That request must be instantiated
-     *              but not started.
-     * @return Length 1 (wordLength SHORT) or 2 (wordLength LONG) int array if request arg wholeLine is false.
-     *         Length lineSize array otherwise.
+     * Writes the words of one line to out as big-endian 32-bit words.
+     * @param buffer Staging space of at least lineSize words
      */
-    public int[] load(LinkedList<MemoryRequest> chain)
+    private void writeLine(DataOutputStream out, ByteBuffer buffer, int line) throws IOException
     {
-        accesses.add(chain);
-
-        int virtualAddress;
-        boolean wholeLine;  // Should only ever be false in the very highest-level cache
+        buffer.clear();
+        buffer.asIntBuffer().put(readPage(line), getLineStart(line), lineSize);
+        out.write(buffer.array(), 0, lineSize * Integer.BYTES);
+    }
 
-        Object[] args = chain.getLast().getArgs();  // [ int virtualAddress, boolean wholeLine ]
-        try
+    /**
+     * @return Whether the line still has all-0 data and the tag it started with
+     */
+    private boolean isInitialLine(int line)
+    {
+        if(!isResident(line)) { return true; }
+        if(getTag(line) != getInitialTag(line)) { return false; }
+        int[] page = readPage(line);
+        for(int i = getLineStart(line); i < getLineStart(line) + lineSize; i++)
         {
-            virtualAddress = (int)args[0];
-            wholeLine = (boolean)args[1];
+            if(page[i] != 0) { return false; }
         }
-        catch(ClassCastException e)
+        return true;
+    }
+
+    /**
+     * Writes this device's part of a MemoryDump: its shape, then each run of lines not in their initial state.
+     */
+    void writeSparse(DataOutputStream out) throws IOException
+    {
+        List<int[]> runs = new ArrayList<>();  // { first line, number of lines }
+        for(int line = 0; line < numLines; line++)
         {
-            throw new IllegalArgumentException("Load request had an invalid argument");
+            if(!isResident(line))
+            {
+                line = ((line >>> pageShift) + 1 << pageShift) - 1;  // Skip to the end of the page
+                continue;
+            }
+            if(isInitialLine(line)) { continue; }
+            int[] last = runs.isEmpty() ? null : runs.getLast();
+            if((last != null) && (last[0] + last[1] == line)) { last[1]++; }
+            else { runs.add(new int[] { line, 1 }); }
         }
 
-        int localAddress = map(virtualAddress);
-        int[] line = memory[localAddress];
-        if(isValid(line))
+        out.writeInt(lineSize);
+        out.writeInt(numLines);
+        out.writeInt(runs.size());
+        ByteBuffer buffer = ByteBuffer.allocate(lineSize * Integer.BYTES);
+        for(int[] run : runs)
         {
-            if(!sameLine(getFirstAddress(line), virtualAddress))
+            out.writeInt(run[0]);
+            out.writeInt(run[1]);
+            for(int line = run[0]; line < run[0] + run[1]; line++)
             {
-                int[] newLine = new int[lineSize];
-                if(next != null)
-                {
-                    newLine = accessNext(REQUEST_TYPE.LOAD, generateLoadArgsFromValues(virtualAddress, true), chain);
-                }
-                else
-                {
-                    WARN(logger, "Unexpected behavior: Lowest level of memory did not have requested virtual address in storage: " + virtualAddress);
-                }
-                if(writeMode.equals(WRITE_MODE.BACK) && isDirty(line))
-                {
-                    if(next != null)
-                    {
-                        accessNext(REQUEST_TYPE.STORE, generateStoreArgsFromFullLine(line), chain);
-                    }
-                    else
-                    {
-                        WARN(logger, "Unexpected behavior: Lowest level of memory had dirty data in storage.");
-                    }
-                }
-                writeData(false, virtualAddress, newLine);
+                out.writeLong(getTag(line));
+            }
+            for(int line = run[0]; line < run[0] + run[1]; line++)
+            {
+                writeLine(out, buffer, line);
             }
         }
-        else
-        {
-            int[] newLine = new int[lineSize];
+    }
 
-            if(next != null)
+    /**
+     * Reads this device's part of a MemoryDump written by a device of the same shape. Every line not in it is reset.
+     *  Valid lines read into a set-associative device count as newly filled for its replacement policy.
+     */
+    void readSparse(DataInputStream in) throws IOException
+    {
+        int dumpLineSize = in.readInt();
+        int dumpNumLines = in.readInt();
+        if((dumpLineSize != lineSize) || (dumpNumLines != numLines))
+        {
+            throw new IOException("Memory dump of " + dumpNumLines + " lines of " + dumpLineSize + " words does not fit device " + id
+                                  + " (" + numLines + " lines of " + lineSize + " words)");
+        }
+        initMemory();
+        int numRuns = in.readInt();
+        byte[] buffer = new byte[lineSize * Integer.BYTES];
+        for(int r = 0; r < numRuns; r++)
+        {
+            int firstLine = in.readInt();
+            int runLines = in.readInt();
+            if((firstLine < 0) || (runLines < 0) || (firstLine > numLines - runLines)) { throw new IOException("Memory dump run out of range: " + firstLine + " + " + runLines); }
+            for(int line = firstLine; line < firstLine + runLines; line++)
             {
-                newLine = accessNext(REQUEST_TYPE.LOAD, generateLoadArgsFromValues(virtualAddress, true), chain);
+                setTag(line, in.readLong());
+                if((replacementPolicy != null) && isValid(line)) { replacementPolicy.fill(line / numWays, line % numWays); }
             }
-            else
+            for(int line = firstLine; line < firstLine + runLines; line++)
             {
-                WARN(logger, "Unexpected behavior: Lowest level of memory did not have requested virtual address in storage.");
+                in.readFully(buffer);
+                ByteBuffer.wrap(buffer).asIntBuffer().get(touchPage(line), getLineStart(line), lineSize);
             }
-            writeData(false, virtualAddress, newLine);
         }
+    }
 
-        return readData(line, virtualAddress, wholeLine);
+    /**
+     * Performs requested load operation immediately, then queues access delay by waking the device the chain now
+     *  waits on. Misses are filled by loading the line from the next level straight into this device's storage.
+     * If currently in write-back mode and this operation has to replace a dirty line, it also creates a new access
+     *  request to the next level of memory to write the dirty line.
+     * @param chain Chain of MemoryRequests, last of which is a LoadRequest targeting this device. That request must not
+     *              be started.
+     * @param dest Where to copy the loaded words: 1 (wordLength SHORT) or 2 (wordLength LONG) if the request's
+     *             wholeLine is false, lineSize otherwise
+     * @param destIndex Index in dest of the first loaded word
+     * @return Number of words copied into dest
+     */
+    public int load(RequestChain chain, int[] dest, int destIndex)
+    {
+        accesses.add(chain);
+
+        if(!(chain.getLast() instanceof LoadRequest request)) { throw new IllegalArgumentException("Load was given a " + chain.getLast().getRequestType() + " request"); }
+        // wholeLine should only ever be false in the very highest-level cache
+        int line = readLine(request.getVirtualAddress(), chain);
+        scheduler.wake(chain.getLast().getTargetID());
+        return copyData(line, request.getVirtualAddress(), request.isWholeLine(), dest, destIndex);
     }
 
     /**
-     * Reads and returns either the entire given line or the given word, depending on wholeLine.
-     * @param line Full internal line
-     * @param virtualAddress Target word address to be read
-     * @param wholeLine Whether to return the whole line (as opposed to just the target word)
-     * @return Length 1 (wordLength SHORT) or 2 (wordLength LONG) int array if wholeLine is false.
-     *         Length lineSize array otherwise.
+     * Functional counterpart of load(): updates this level and those below it exactly as load() would, but issues no
+     *  requests, so no time passes and nothing is left for the scheduler.
+     * @return Number of words copied into dest
      */
-    private int[] readData(int[] line, int virtualAddress, boolean wholeLine)
+    public int loadFunctional(int virtualAddress, boolean wholeLine, int[] dest, int destIndex)
     {
-        int[] ret;
-        if(wholeLine)
+        return copyData(readLine(virtualAddress, null), virtualAddress, wholeLine, dest, destIndex);
+    }
+
+    /**
+     * Backend for load() and loadFunctional(). Brings the line holding virtualAddress into this device, writing back
+     *  whichever dirty line it replaces.
+     * @param chain Chain that any requests to the next level are added to, or null to access it functionally
+     * @return The local line address now holding virtualAddress
+     */
+    private int readLine(int virtualAddress, RequestChain chain)
+    {
+        int line = map(virtualAddress);
+        int lineStart = getLineStart(line);
+        boolean valid = isValid(line);
+        boolean hit = valid && sameLine(getFirstAddress(line), virtualAddress);
+        if(chain != null)
         {
-            ret = new int[lineSize];
-            System.arraycopy(line, FIRST_WORD_INDEX, ret, 0, lineSize);
+            counters.increment(counterBase + Counters.MEMORY_LOADS);
+            if(hit) { counters.increment(counterBase + Counters.MEMORY_LOAD_HITS); }
         }
-        else
+        if(!hit)
         {
-            int offset = virtualAddress & offsetMask;
-            if(wordLength.equals(WORD_LENGTH.SHORT))
+            int[] data = touchPage(line);
+            // The dirty line is copied out for writeback before the new line overwrites it, but is still issued after the load
+            boolean writesBack = valid && writeMode.equals(WRITE_MODE.BACK) && isDirty(line) && (next != null);
+            int writebackAddress = getFirstAddress(line);
+            StoreRequest writeback = (writesBack && (chain != null)) ? newStoreNext(writebackAddress, data, lineStart, lineSize) : null;
+            int[] writebackWords = (writesBack && (chain == null)) ? Arrays.copyOfRange(data, lineStart, lineStart + lineSize) : null;
+            if(next != null)
             {
-                ret = new int[] { line[FIRST_WORD_INDEX + offset] };
+                loadNext(virtualAddress, data, lineStart, chain);
             }
             else
             {
-                ret = new int[] { line[FIRST_WORD_INDEX + offset], line[FIRST_WORD_INDEX + offset + 1] };
+                WARN(logger, "Unexpected behavior: Lowest level of memory did not have requested virtual address in storage" + (valid ? ": " + virtualAddress : "."));
+                Arrays.fill(data, lineStart, lineStart + lineSize, 0);
+            }
+            if(writeback != null)
+            {
+                storeNext(writeback, chain);
+                counters.increment(counterBase + Counters.MEMORY_WRITEBACKS);
+            }
+            else if(writebackWords != null)
+            {
+                next.storeFunctional(writebackAddress, writebackWords, 0, lineSize);
             }
+            else if(valid && writeMode.equals(WRITE_MODE.BACK) && isDirty(line))
+            {
+                WARN(logger, "Unexpected behavior: Lowest level of memory had dirty data in storage.");
+            }
+            claimLine(line, false, virtualAddress);
         }
-        return ret;
+        return line;
     }
 
-    public int getMemoryAddress()
+    /**
+     * Same as above, copying the loaded words into a new array.
+     * @return Length 1 (wordLength SHORT) or 2 (wordLength LONG) int array if the request's wholeLine is false.
+     *         Length lineSize array otherwise.
+     */
+    public int[] load(RequestChain chain)
     {
-        return readData(memory[0], 1, false)[0];
+        int[] ret = new int[lineSize];
+        int numWords = load(chain, ret, 0);
+        return (numWords == lineSize) ? ret : Arrays.copyOf(ret, numWords);
     }
 
     /**
-     * Creates access request to next level of memory. If there is no next level, this method throws an error.
-     * @param requestType STORE/LOAD
-     * @param args Appropriate arguments for request type. (See comments near top of store() and load())
-     * @param chain Chain of requestType MemoryRequests, either empty or ending with one which targets this device. New
-     *              request will be appended to the chain before it's passed to the next device.
+     * Copies either the entire given line or the given word into dest, depending on wholeLine.
+     * @param line Local address of the line
+     * @param virtualAddress Target word address to be read
+     * @param wholeLine Whether to copy the whole line (as opposed to just the target word)
+     * @return Number of words copied: 1 (wordLength SHORT) or 2 (wordLength LONG) if wholeLine is false, lineSize
+     *         otherwise
      */
-    private int[] accessNext(REQUEST_TYPE requestType, Object[] args, LinkedList<MemoryRequest> chain)
+    private int copyData(int line, int virtualAddress, boolean wholeLine, int[] dest, int destIndex)
     {
-        if(next == null) { throw new UnsupportedOperationException("The lowest level of memory cannot accessNext()"); }
-
-        MemoryRequest nextRequest = new MemoryRequest(id, next.getID(), type, requestType, args);
-        chain.add(nextRequest);
-        if(requestType.equals(REQUEST_TYPE.STORE))
+        int from = getLineStart(line);
+        int numWords = lineSize;
+        if(!wholeLine)
         {
-            next.store(chain);  // TODO : Currently assumes a write buffer of sufficient size to prevent STORE requests from blocking invoker. DOUBLE-CHECK THIS!
+            from += virtualAddress & offsetMask;
+            numWords = wordLength.equals(WORD_LENGTH.SHORT) ? 1 : 2;
         }
-        else if(requestType.equals(REQUEST_TYPE.LOAD))
+        System.arraycopy(readPage(line), from, dest, destIndex, numWords);
+        return numWords;
+    }
+
+    public int getMemoryAddress()
+    {
+        return readPage(0)[getLineStart(0) + (1 & offsetMask)];
+    }
+
+    /**
+     * Appends a LOAD request for the whole line holding virtualAddress to the chain and passes it to the next device,
+     *  which copies the line into dest. If there is no next level, this method throws an error.
+     * @param chain Chain of MemoryRequests, ending with one which targets this device, or null to load functionally.
+     */
+    private void loadNext(int virtualAddress, int[] dest, int destIndex, RequestChain chain)
+    {
+        if(next == null) { throw new UnsupportedOperationException("The lowest level of memory cannot access the next level"); }
+        if(chain == null)
         {
-            return next.load(chain);
+            next.loadFunctional(virtualAddress, true, dest, destIndex);
+            return;
         }
-        else
+        chain.add(requestPool.obtainLoad(id, next.getID(), type, virtualAddress, true));
+        next.load(chain, dest, destIndex);
+    }
+
+    /**
+     * Appends a STORE request to the chain and passes it to the next device. If there is no next level, this method
+     *  throws an error.
+     * @param virtualAddress Address of the first word being written
+     * @param words Holds the words to be written, starting at index from
+     * @param chain Chain of MemoryRequests, either empty or ending with one which targets this device, or null to
+     *              store functionally.
+     */
+    private void storeNext(int virtualAddress, int[] words, int from, int numWords, RequestChain chain)
+    {
+        if(chain == null)
         {
-            throw new IllegalArgumentException("Invalid request type.");
+            if(next == null) { throw new UnsupportedOperationException("The lowest level of memory cannot access the next level"); }
+            next.storeFunctional(virtualAddress, words, from, numWords);
+            return;
         }
-        return new int[lineSize];
+        storeNext(newStoreNext(virtualAddress, words, from, numWords), chain);
+    }
+
+    /**
+     * Same as above, with a request from newStoreNext().
+     */
+    private void storeNext(StoreRequest request, RequestChain chain)
+    {
+        chain.add(request);
+        next.store(chain);  // TODO : Currently assumes a write buffer of sufficient size to prevent STORE requests from blocking invoker. DOUBLE-CHECK THIS!
+    }
+
+    /**
+     * Creates a STORE request to the next device, copying the words to be written into it, without issuing it.
+     */
+    private StoreRequest newStoreNext(int virtualAddress, int[] words, int from, int numWords)
+    {
+        if(next == null) { throw new UnsupportedOperationException("The lowest level of memory cannot access the next level"); }
+        StoreRequest request = requestPool.obtainStore(id, next.getID(), type, virtualAddress, numWords);
+        request.copyWordsFrom(words, from);
+        return request;
     }
 
     /**
-     * Simulates one clock cycle internally.
+     * Same as above, writing back the whole of one of this device's lines.
+     */
+    private void storeNext(int line, RequestChain chain)
+    {
+        storeNext(getFirstAddress(line), readPage(line), getLineStart(line), lineSize, chain);
+    }
+
+    /**
+     * @return A LOAD request to this device, for the start of a new chain
+     */
+    public LoadRequest newLoadRequest(int callerID, MEMORY_TYPE type, int virtualAddress, boolean wholeLine)
+    {
+        return requestPool.obtainLoad(callerID, id, type, virtualAddress, wholeLine);
+    }
+
+    /**
+     * @return A STORE request to this device, for the start of a new chain. Its words must be set before it is stored
+     */
+    public StoreRequest newStoreRequest(int callerID, MEMORY_TYPE type, int virtualAddress, int numWords)
+    {
+        return requestPool.obtainStore(callerID, id, type, virtualAddress, numWords);
+    }
+
+    /**
+     * @return A chain held by the caller, containing only the given request to this device
+     */
+    public RequestChain newRequestChain(MemoryRequest first)
+    {
+        RequestChain chain = requestPool.obtainChain();
+        chain.add(first);
+        return chain;
+    }
+
+    /**
+     * Simulates this device's part of one clock cycle. Only called by the MemoryScheduler, during cycles in which
+     *  this device was scheduled.
      * Checks to see if any requests are blocking this level.
-     * If not, decrements timer of oldest request to this level.
+     * If not, starts the oldest request to this level, or finishes it if its access delay is up. Finishing a request
+     *  wakes whichever device the chain is now waiting on (every device, if the chain is done).
      */
-    public void tick()
+    void tick()
     {
         // Clear out finished chains from previous cycle
-        for(int i = 0; i < accesses.size(); i++)
-        {
-            if(accesses.get(i).isEmpty()) { accesses.remove(i--); }
-        }
+        accesses.removeEmpty();
 
         // Exit if nothing to do
-        if(accesses.isEmpty() || !waitingOnThis(accesses.getFirst())) { return; }
+        if(accesses.isEmpty() || !waitingOnThis(accesses.peek())) { return; }
 
-        MemoryRequest last = accesses.getFirst().getLast();
+        RequestChain chain = accesses.peek();
+        MemoryRequest last = chain.getLast();
         if(!last.isStarted())
         {
-            last.start(accessDelay);
+            last.start(accessDelay, scheduler.getTick());
+        }
+        if(!last.isFinished(scheduler.getTick()))
+        {
+            scheduler.schedule(this, last.getFinishTick());
+            return;
         }
-                        try{
-        last.tick();    // Should never take exception
-                        }catch(MemoryRequestTimerNotStartedException ignored){}
-        if(last.isFinished()) { accesses.getFirst().removeLast(); }
+        requestPool.recycle(chain.removeLast());  // Nothing else refers to a request once it has been removed
+        if(chain.isEmpty()) { scheduler.wakeAll(); }
+        else { scheduler.wake(chain.getLast().getTargetID()); }
     }
 }
@@ -1,26 +1,40 @@
 package memory;
 
+import java.io.Serializable;
+
 import static main.GLOBALS.*;
 
-public class MemoryRequest
+/**
+ * One device's part of a memory access. Requests come in two forms, LoadRequest and StoreRequest, and are reused:
+ *  obtain them from the hierarchy's MemoryRequestPool (MemoryModule.newLoadRequest()/newStoreRequest()), which takes
+ *  them back once the device handling them has finished.
+ */
+public abstract class MemoryRequest implements Serializable
 {
-    private final int callerID;                 // ID of MemoryModule making the request
-    private final int targetID;                 // ID of MemoryModule handling this request
-    private final MEMORY_TYPE type;             // Which memory hierarchy this request works through
-    private final REQUEST_TYPE requestType;     // LOAD/STORE
-    private final Object[] args;                // Differs between LOAD and STORE
-    private int timer;                          // Initial value controlled by callee
+    private static final long serialVersionUID = 1L;
+
+    private int callerID;                       // ID of MemoryModule making the request
+    private int targetID;                       // ID of MemoryModule handling this request
+    private MEMORY_TYPE type;                   // Which memory hierarchy this request works through
+    private int virtualAddress;                 // Word address being accessed
+    private int finishTick;                     // Tick during which the callee finishes this request. Delay controlled by callee
     private boolean started = false;
 
-    public MemoryRequest(int callerID, int targetID, MEMORY_TYPE type, REQUEST_TYPE requestType, Object[] args)
+    /**
+     * Readies this request for a new access.
+     */
+    void init(int callerID, int targetID, MEMORY_TYPE type, int virtualAddress)
     {
         this.callerID = callerID;
         this.targetID = targetID;
         this.type = type;
-        this.requestType = requestType;
-        this.args = args;
+        this.virtualAddress = virtualAddress;
+        finishTick = 0;
+        started = false;
     }
 
+    public abstract REQUEST_TYPE getRequestType();
+
     public int getCallerID()
     {
         return callerID;
@@ -28,9 +42,18 @@ public class MemoryRequest
 
     public int getTargetID() { return targetID; }
 
-    public void start(int delay)
+    public int getVirtualAddress()
+    {
+        return virtualAddress;
+    }
+
+    /**
+     * Starts the request during the current tick. It finishes during the tick delay - 1 cycles later (the same tick if
+     *  delay is at most 1).
+     */
+    public void start(int delay, int currentTick)
     {
-        timer = delay;
+        finishTick = currentTick + Math.max(delay, 1) - 1;
         started = true;
     }
 
@@ -39,33 +62,25 @@ public class MemoryRequest
         return started;
     }
 
-    public int getTimeRemaining() throws MemoryRequestTimerNotStartedException
+    public int getTimeRemaining(int currentTick) throws MemoryRequestTimerNotStartedException
     {
         if(!started) { throw new MemoryRequestTimerNotStartedException(); }
-        return timer;
+        return finishTick - currentTick;
     }
 
-    public boolean isFinished()
+    // Only meaningful once started
+    public int getFinishTick()
     {
-        return timer <= 0;
+        return finishTick;
     }
 
-    public MEMORY_TYPE getType()
+    public boolean isFinished(int currentTick)
     {
-        return type;
+        return finishTick <= currentTick;
     }
 
-    public Object[] getArgs()
-    {
-        return args;
-    }
-
-    // Decrements timer. Returns true iff timer ran out this tick.
-    public boolean tick() throws MemoryRequestTimerNotStartedException
+    public MEMORY_TYPE getType()
     {
-        if(!started) { throw new MemoryRequestTimerNotStartedException(); }
-
-        timer--;
-        return timer == 0;
+        return type;
     }
 }
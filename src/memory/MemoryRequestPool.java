@@ -0,0 +1,66 @@
+package memory;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+
+import static main.GLOBALS.*;
+
+/**
+ * Recycles the LoadRequests, StoreRequests, and RequestChains of one memory hierarchy. A request is handed back by the
+ *  device that handled it as soon as that device finishes it, at which point nothing else refers to it. A chain comes
+ *  back once its last holder releases it.
+ */
+public class MemoryRequestPool implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_POOLED = 256;  // Per form
+    private static final int MAX_POOLED_CHAINS = 64;
+
+    private final ArrayDeque<LoadRequest> loads = new ArrayDeque<>();
+    private final ArrayDeque<StoreRequest> stores = new ArrayDeque<>();
+    private final ArrayDeque<RequestChain> chains = new ArrayDeque<>();
+
+    public LoadRequest obtainLoad(int callerID, int targetID, MEMORY_TYPE type, int virtualAddress, boolean wholeLine)
+    {
+        LoadRequest request = loads.isEmpty() ? new LoadRequest() : loads.pop();
+        request.init(callerID, targetID, type, virtualAddress, wholeLine);
+        return request;
+    }
+
+    /**
+     * @return A request to store numWords words, all 0 until set with setWord()
+     */
+    public StoreRequest obtainStore(int callerID, int targetID, MEMORY_TYPE type, int virtualAddress, int numWords)
+    {
+        StoreRequest request = stores.isEmpty() ? new StoreRequest() : stores.pop();
+        request.init(callerID, targetID, type, virtualAddress, numWords);
+        return request;
+    }
+
+    /**
+     * @return An empty chain held by the caller
+     */
+    public RequestChain obtainChain()
+    {
+        RequestChain chain = chains.isEmpty() ? new RequestChain(this) : chains.pop();
+        chain.hold();
+        return chain;
+    }
+
+    void recycle(RequestChain chain)
+    {
+        if(chains.size() < MAX_POOLED_CHAINS) { chains.push(chain); }
+    }
+
+    public void recycle(MemoryRequest request)
+    {
+        if(request instanceof LoadRequest load)
+        {
+            if(loads.size() < MAX_POOLED) { loads.push(load); }
+        }
+        else if(request instanceof StoreRequest store)
+        {
+            if(stores.size() < MAX_POOLED) { stores.push(store); }
+        }
+    }
+}
@@ -4,7 +4,7 @@ public class MemoryRequestTimerNotStartedException extends Exception
 {
     public MemoryRequestTimerNotStartedException()
     {
-        super("MemoryRequest timer not started. Call memoryRequest.start(<int>)");
+        super("MemoryRequest timer not started. Call memoryRequest.start(<int>, <int>)");
     }
 
     public MemoryRequestTimerNotStartedException(String errorMessage)
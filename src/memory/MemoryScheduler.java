@@ -0,0 +1,196 @@
+package memory;
+
+import main.Counters;
+import main.SimulationContext;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Time-ordered queue of memory events. Instead of every MemoryModule ticking every cycle, a module is only ticked
+ *  during cycles in which it has been scheduled: when a request chain it might be working on is created or changes
+ *  hands, when one of its requests is due to finish, or when a chain it is tracking has emptied.
+ * Within a cycle, modules are ticked in the same order as before (unified, data, then instruction modules, each
+ *  furthest first), so a request that finishes can still hand its chain to a nearer module in the same cycle.
+ * Events are kept in a binary heap of primitive keys holding at most one per module, for the earliest cycle it is
+ *  scheduled in. Scheduling a module for a later cycle than that adds nothing: once it ticks, it schedules whatever
+ *  it is still waiting on again.
+ */
+public class MemoryScheduler implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    private static final int ORDER_BITS = 16;  // Low bits of an event key hold the module's position in tick order
+    private static final long ORDER_MASK = (1 << ORDER_BITS) - 1;
+
+    private final SimulationContext context;  // Clock of the simulation this hierarchy belongs to
+    private final ArrayList<MemoryModule> modules = new ArrayList<>();  // In tick order
+    private final HashMap<Integer, MemoryModule> modulesByID = new HashMap<>();
+    private final MemoryRequestPool requestPool = new MemoryRequestPool();  // Shared by every module in the hierarchy
+    private long[] events = new long[0];  // Min-heap of (tick << ORDER_BITS) | order, one per scheduled module
+    private int numEvents = 0;
+    private int[] eventIndex = new int[0];  // Index in events of each module's (by order) key, or -1 if it is not scheduled
+    private int currentTick;  // Tick being processed, or last processed
+    private int currentOrder = -1;  // Order of the module being ticked, or -1 outside processEvents()
+    private long ticks = 0;  // Module ticks processed so far
+
+    public MemoryScheduler(SimulationContext context)
+    {
+        this.context = context;
+        currentTick = context.getTick();
+    }
+
+    /**
+     * Sets which modules exist and the order in which they tick within a cycle. Any module may have work pending
+     *  afterward, so all of them are scheduled for the next tick.
+     * @param modulesInTickOrder Every MemoryModule in the hierarchy
+     */
+    public void setModules(List<MemoryModule> modulesInTickOrder)
+    {
+        if(modulesInTickOrder.size() > (1 << ORDER_BITS)) { throw new IllegalArgumentException("Too many memory modules: " + modulesInTickOrder.size()); }
+        modules.clear();
+        modulesByID.clear();
+        modules.addAll(modulesInTickOrder);
+        events = new long[modules.size()];
+        numEvents = 0;
+        eventIndex = new int[modules.size()];
+        Arrays.fill(eventIndex, -1);
+        for(int order = 0; order < modules.size(); order++)
+        {
+            MemoryModule module = modules.get(order);
+            module.tickOrder = order;
+            modulesByID.put(module.getID(), module);
+        }
+        wakeAll();
+    }
+
+    /**
+     * Schedules the given module to tick as soon as possible: later in the current cycle if it has not ticked yet,
+     *  otherwise next cycle.
+     */
+    public void wake(MemoryModule module)
+    {
+        int tick = ((currentOrder >= 0) && (module.tickOrder > currentOrder)) ? currentTick : (currentTick + 1);
+        schedule(module, tick);
+    }
+
+    /**
+     * Same as wake(), looked up by MemoryModule ID. Does nothing if no such module is scheduled here.
+     */
+    public void wake(int moduleID)
+    {
+        MemoryModule module = modulesByID.get(moduleID);
+        if(module != null) { wake(module); }
+    }
+
+    public void wakeAll()
+    {
+        for(MemoryModule module : modules)
+        {
+            wake(module);
+        }
+    }
+
+    /**
+     * Schedules the given module to tick during the given cycle, unless it is already scheduled to tick sooner.
+     */
+    public void schedule(MemoryModule module, int tick)
+    {
+        long key = ((long)tick << ORDER_BITS) | module.tickOrder;
+        int index = eventIndex[module.tickOrder];
+        if(index == -1) { index = numEvents++; }
+        else if(key >= events[index]) { return; }
+        siftUp(index, key);
+    }
+
+    /**
+     * Ticks, in order, every module scheduled at or before the current cycle.
+     */
+    public void processEvents()
+    {
+        currentTick = context.getTick();
+        while((numEvents > 0) && ((events[0] >> ORDER_BITS) <= currentTick))
+        {
+            int order = (int)(events[0] & ORDER_MASK);
+            eventIndex[order] = -1;
+            numEvents--;
+            if(numEvents > 0) { siftDown(0, events[numEvents]); }
+            currentOrder = order;
+            ticks++;
+            modules.get(order).tick();
+        }
+        currentOrder = -1;
+    }
+
+    /**
+     * @return Number of module ticks processed so far, so that comparing it between two cycles tells whether any
+     *  module did anything in between
+     */
+    public long getTicksProcessed()
+    {
+        return ticks;
+    }
+
+    /**
+     * @return The simulation's current cycle, which is what requests are timed against
+     */
+    public int getTick()
+    {
+        return context.getTick();
+    }
+
+    public Counters getCounters()
+    {
+        return context.getCounters();
+    }
+
+    public MemoryRequestPool getRequestPool()
+    {
+        return requestPool;
+    }
+
+    /**
+     * @return The earliest tick at which any module is scheduled, or Integer.MAX_VALUE if none are
+     */
+    public int getNextEventTick()
+    {
+        return (numEvents == 0) ? Integer.MAX_VALUE : (int)(events[0] >> ORDER_BITS);
+    }
+
+    /**
+     * Moves key from index towards the root of the heap until its parent is earlier.
+     */
+    private void siftUp(int index, long key)
+    {
+        while(index > 0)
+        {
+            int parent = (index - 1) >> 1;
+            if(events[parent] <= key) { break; }
+            place(events[parent], index);
+            index = parent;
+        }
+        place(key, index);
+    }
+
+    /**
+     * Moves key from index towards the leaves of the heap until both its children are later.
+     */
+    private void siftDown(int index, long key)
+    {
+        while(true)
+        {
+            int child = 2 * index + 1;
+            if(child >= numEvents) { break; }
+            if((child + 1 < numEvents) && (events[child + 1] < events[child])) { child++; }
+            if(key <= events[child]) { break; }
+            place(events[child], index);
+            index = child;
+        }
+        place(key, index);
+    }
+
+    private void place(long key, int index)
+    {
+        events[index] = key;
+        eventIndex[(int)(key & ORDER_MASK)] = index;
+    }
+}
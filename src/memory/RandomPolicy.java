@@ -0,0 +1,32 @@
+package memory;
+
+import java.util.Random;
+
+/**
+ * Evicts a uniformly random way. Seeded, so that runs are repeatable.
+ */
+public class RandomPolicy implements ReplacementPolicy
+{
+    private static final long serialVersionUID = 1L;
+    private static final long SEED = 0x5EED;
+
+    private final int numWays;
+    private final Random random = new Random(SEED);
+
+    public RandomPolicy(int numWays)
+    {
+        this.numWays = numWays;
+    }
+
+    @Override
+    public void touch(int set, int way) {}
+
+    @Override
+    public void fill(int set, int way) {}
+
+    @Override
+    public int victim(int set)
+    {
+        return random.nextInt(numWays);
+    }
+}
@@ -1,11 +1,13 @@
 package memory;
 
+import java.io.Serializable;
 import java.util.logging.Logger;
 
 import static main.GLOBALS.*;
 
-public class RegisterFileModule
+public class RegisterFileModule implements Serializable
 {
+    private static final long serialVersionUID = 1L;
     private static final Logger logger = Logger.getLogger(RegisterFileModule.class.getName());
 
     public static final String INDEXABLE_PREFIX = "R";
@@ -21,6 +23,7 @@ public class RegisterFileModule
     private int currentRegisterIndex = -1;
     private final REGISTER_FILE_MODE mode;
     public int[] pendings;
+    private long modifications = 0;  // Incremented whenever memory or currentRegisterIndex changes
 
     public RegisterFileModule(int id, REGISTER_FILE_MODE mode, int[] registerLengths, String[] names)
     {
@@ -62,6 +65,7 @@ public class RegisterFileModule
 
     public void store(int index, long value)
     {
+        modifications++;
         if(mode.equals(REGISTER_FILE_MODE.ADDRESSED))
         {
             if(index < 0 || index >= getNumRegisters())
@@ -81,7 +85,7 @@ public class RegisterFileModule
         else if(mode.equals(REGISTER_FILE_MODE.STACK_CIRCULAR))
         {
             if(index != -1) { WARN(logger, "You are attempting to address a stack register file"); }
-            currentRegisterIndex = (currentRegisterIndex + 1) % getNumRegisters();
+            currentRegisterIndex = (currentRegisterIndex == getNumRegisters() - 1) ? 0 : currentRegisterIndex + 1;
             memory[currentRegisterIndex] = value & masks[currentRegisterIndex];
         }
     }
@@ -109,6 +113,7 @@ public class RegisterFileModule
                 { throw new RuntimeException("STACK UNDERFLOW: Register file " + id); }
             long value = memory[currentRegisterIndex];
             memory[currentRegisterIndex] = 0;
+            modifications++;
             currentRegisterIndex -= 1;
             return value;
         }
@@ -117,12 +122,22 @@ public class RegisterFileModule
             if(index != -1) { WARN(logger, "You are attempting to address a stack register file"); }
             long value = memory[currentRegisterIndex];
             memory[currentRegisterIndex] = 0;
-            currentRegisterIndex = (currentRegisterIndex + getNumRegisters() - 1) % getNumRegisters();
+            modifications++;
+            currentRegisterIndex = (currentRegisterIndex == 0) ? getNumRegisters() - 1 : currentRegisterIndex - 1;
             return value;
         }
         else { throw new RuntimeException("Register file mode not assigned; should never occur"); }
     }
 
+    /**
+     * @return Number of times a value or the stack position has changed, so that comparing it between two cycles tells
+     *  whether anything was written in between
+     */
+    public long getModifications()
+    {
+        return modifications;
+    }
+
     public long peek(int index)
     {
         if(mode.equals(REGISTER_FILE_MODE.ADDRESSED))
@@ -214,6 +229,7 @@ public class RegisterFileModule
 
     public void reset()
     {
+        modifications++;
         memory = new long[getNumRegisters()];
     }
 }
@@ -0,0 +1,38 @@
+package memory;
+
+import java.io.Serializable;
+
+import static main.GLOBALS.*;
+
+/**
+ * Chooses which way of a set-associative MemoryModule's set to evict. Ways are only asked for a victim once every way
+ *  in the set is valid; invalid ways are always filled first by the MemoryModule itself.
+ */
+public interface ReplacementPolicy extends Serializable
+{
+    /**
+     * Records a hit on the given way.
+     */
+    void touch(int set, int way);
+
+    /**
+     * Records that a new line was written into the given way.
+     */
+    void fill(int set, int way);
+
+    /**
+     * @return The way in the given set to evict next
+     */
+    int victim(int set);
+
+    static ReplacementPolicy CREATE(REPLACEMENT_POLICY policy, int numSets, int numWays)
+    {
+        return switch(policy)
+        {
+            case LRU -> new LRUPolicy(numSets, numWays);
+            case TREE_PLRU -> new TreePLRUPolicy(numSets, numWays);
+            case RANDOM -> new RandomPolicy(numWays);
+            case FIFO -> new FIFOPolicy(numSets, numWays);
+        };
+    }
+}
@@ -0,0 +1,123 @@
+package memory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Stack of MemoryRequests for one access, running from the device that was asked first to the deepest device that
+ *  the access had to reach. The last request is the one currently being worked on.
+ * Chains are reused. Whoever obtains one (from its hierarchy's MemoryRequestPool, through MemoryModule.newRequestChain())
+ *  holds it, as does every MemoryModule that queues it; once every holder has released it, it returns to that pool. A
+ *  chain must not be touched after its holder releases it.
+ */
+public class RequestChain implements Iterable<MemoryRequest>, Serializable
+{
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Shared empty chain that is never pooled, for an issuer that has released its chain but still needs something
+     *  that reports isEmpty().
+     */
+    public static final RequestChain RELEASED = new RequestChain(true);
+
+    private final MemoryRequestPool pool;  // Where this chain goes back to once released; null for RELEASED
+    private MemoryRequest[] requests = new MemoryRequest[INITIAL_CAPACITY];
+    private int size = 0;
+    private int holders = 0;
+    private final boolean released;  // Only true for RELEASED
+
+    RequestChain(MemoryRequestPool pool)
+    {
+        this.pool = pool;
+        this.released = false;
+    }
+
+    private RequestChain(boolean released)
+    {
+        this.pool = null;
+        this.released = released;
+    }
+
+    /**
+     * Keeps RELEASED unique when a checkpoint is restored.
+     */
+    private Object readResolve()
+    {
+        return released ? RELEASED : this;
+    }
+
+    void hold()
+    {
+        holders++;
+    }
+
+    /**
+     * Gives up one hold on this chain. Once every holder has released it, it is cleared and pooled.
+     */
+    public void release()
+    {
+        if(this == RELEASED) { return; }
+        if(holders <= 0) { throw new IllegalStateException("Request chain released more times than it was held"); }
+        holders--;
+        if(holders == 0)
+        {
+            Arrays.fill(requests, 0, size, null);
+            size = 0;
+            pool.recycle(this);
+        }
+    }
+
+    public void add(MemoryRequest request)
+    {
+        if(size == requests.length) { requests = Arrays.copyOf(requests, 2 * requests.length); }
+        requests[size++] = request;
+    }
+
+    public MemoryRequest getLast()
+    {
+        if(size == 0) { throw new NoSuchElementException("Request chain is empty"); }
+        return requests[size - 1];
+    }
+
+    public MemoryRequest removeLast()
+    {
+        MemoryRequest last = getLast();
+        requests[--size] = null;
+        return last;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public Iterator<MemoryRequest> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < size;
+            }
+
+            @Override
+            public MemoryRequest next()
+            {
+                if(next >= size) { throw new NoSuchElementException(); }
+                return requests[next++];
+            }
+        };
+    }
+}
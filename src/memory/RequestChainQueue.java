@@ -0,0 +1,82 @@
+package memory;
+
+import java.io.Serializable;
+
+/**
+ * Ring buffer of the RequestChains running through one MemoryModule, oldest first. Grows by doubling when full, so
+ *  enqueueing and inspecting the head are O(1) amortized, and nothing is allocated once the buffer has grown to fit.
+ *  Holds each chain it is given until that chain is removed.
+ */
+public class RequestChainQueue implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 16;  // Power of 2
+
+    private RequestChain[] chains = new RequestChain[INITIAL_CAPACITY];
+    private int head = 0;
+    private int size = 0;
+
+    public void add(RequestChain chain)
+    {
+        if(size == chains.length) { grow(); }
+        chains[(head + size) & (chains.length - 1)] = chain;
+        size++;
+        chain.hold();
+    }
+
+    private void grow()
+    {
+        RequestChain[] grown = new RequestChain[2 * chains.length];
+        for(int i = 0; i < size; i++)
+        {
+            grown[i] = chains[(head + i) & (chains.length - 1)];
+        }
+        chains = grown;
+        head = 0;
+    }
+
+    /**
+     * @return The oldest chain, or null if there are none
+     */
+    public RequestChain peek()
+    {
+        return (size == 0) ? null : chains[head];
+    }
+
+    /**
+     * Removes every chain that has emptied, keeping the rest in order, and releases this queue's hold on each.
+     */
+    public void removeEmpty()
+    {
+        int kept = 0;
+        for(int i = 0; i < size; i++)
+        {
+            int from = (head + i) & (chains.length - 1);
+            RequestChain chain = chains[from];
+            chains[from] = null;
+            if(chain.isEmpty()) { chain.release(); }
+            else { chains[(head + kept++) & (chains.length - 1)] = chain; }
+        }
+        size = kept;
+    }
+
+    /**
+     * @param index 0 for the oldest chain
+     */
+    public RequestChain get(int index)
+    {
+        if((index < 0) || (index >= size)) { throw new IndexOutOfBoundsException("Index " + index + " out of " + size + " chains"); }
+        return chains[(head + index) & (chains.length - 1)];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+}
@@ -0,0 +1,66 @@
+package memory;
+
+import java.util.Arrays;
+
+import static main.GLOBALS.*;
+
+/**
+ * Writes a run of words starting at the request's virtual address. The words live in a buffer owned by the request,
+ *  which keeps its capacity across reuses; only the first getNumWords() of them belong to the current store.
+ */
+public class StoreRequest extends MemoryRequest
+{
+    private static final long serialVersionUID = 1L;
+
+    private int[] words = new int[0];
+    private int numWords;
+
+    StoreRequest() {}
+
+    void init(int callerID, int targetID, MEMORY_TYPE type, int virtualAddress, int numWords)
+    {
+        init(callerID, targetID, type, virtualAddress);
+        if(words.length < numWords) { words = new int[numWords]; }
+        else { Arrays.fill(words, 0, numWords, 0); }
+        this.numWords = numWords;
+    }
+
+    @Override
+    public REQUEST_TYPE getRequestType()
+    {
+        return REQUEST_TYPE.STORE;
+    }
+
+    public void setWord(int index, int word)
+    {
+        if(index >= numWords) { throw new IndexOutOfBoundsException("Word " + index + " out of " + numWords); }
+        words[index] = word;
+    }
+
+    public int getWord(int index)
+    {
+        if(index >= numWords) { throw new IndexOutOfBoundsException("Word " + index + " out of " + numWords); }
+        return words[index];
+    }
+
+    public int getNumWords()
+    {
+        return numWords;
+    }
+
+    /**
+     * Sets every word being stored, from src starting at srcIndex.
+     */
+    void copyWordsFrom(int[] src, int srcIndex)
+    {
+        System.arraycopy(src, srcIndex, words, 0, numWords);
+    }
+
+    /**
+     * @return The buffer holding the words being stored. Only the first getNumWords() belong to this store
+     */
+    int[] getWordBuffer()
+    {
+        return words;
+    }
+}
@@ -0,0 +1,57 @@
+package memory;
+
+/**
+ * Tree pseudo-LRU. Each set keeps a binary tree of numWays - 1 bits, stored heap-style (root at bit 1). Every bit
+ *  points toward the half of its subtree that was used less recently; accesses flip the bits on their path to point
+ *  away, and the victim is found by following the bits from the root.
+ */
+public class TreePLRUPolicy implements ReplacementPolicy
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int levels;
+    private final int[] trees;  // One tree per set. Bit n set means node n points to its right (upper) half
+
+    public TreePLRUPolicy(int numSets, int numWays)
+    {
+        if((Integer.bitCount(numWays) != 1) || (numWays > Integer.SIZE)) { throw new IllegalArgumentException("Tree-PLRU needs a power-of-2 number of ways up to " + Integer.SIZE + ", not " + numWays); }
+        levels = Integer.numberOfTrailingZeros(numWays);
+        trees = new int[numSets];
+    }
+
+    @Override
+    public void touch(int set, int way)
+    {
+        int tree = trees[set];
+        int node = 1;
+        for(int level = levels - 1; level >= 0; level--)
+        {
+            int right = (way >>> level) & 1;
+            if(right == 1) { tree &= ~(1 << node); }  // Point away from the half just used
+            else { tree |= (1 << node); }
+            node = (2 * node) + right;
+        }
+        trees[set] = tree;
+    }
+
+    @Override
+    public void fill(int set, int way)
+    {
+        touch(set, way);
+    }
+
+    @Override
+    public int victim(int set)
+    {
+        int tree = trees[set];
+        int node = 1;
+        int way = 0;
+        for(int level = 0; level < levels; level++)
+        {
+            int right = (tree >>> node) & 1;
+            way = (way << 1) | right;
+            node = (2 * node) + right;
+        }
+        return way;
+    }
+}
@@ -1,6 +1,7 @@
 package pipeline;
 
 import instructions.Instruction;
+import main.Counters;
 import instructions.Term;
 import memory.MemoryModule;
 import memory.RegisterFileModule;
@@ -11,7 +12,7 @@ import static main.GLOBALS.*;
 
 public class DecodeStage extends PipelineStage
 {
-    public static final String READ = "READ";
+    private static final long serialVersionUID = 1L;
 
     private MemoryModule nearestDataCache;
     private final RegisterFileModule indexableRegisters;
@@ -19,13 +20,14 @@ public class DecodeStage extends PipelineStage
     private final RegisterFileModule callStack;
     private final RegisterFileModule reversalStack;
     private final int[][] pendingRegisters;
+    private final DecodedInstructionCache decodedInstructions = new DecodedInstructionCache(DecodedInstructionCache.DEFAULT_NUM_ENTRIES);
 
     public DecodeStage(int wordSize, String name,
                        RegisterFileModule indexableRegisters, RegisterFileModule internalRegisters,
                        RegisterFileModule callStack, RegisterFileModule reversalStack,
                        int[][] pendingRegisters, int numSpecialInstructions)
     {
-        super(wordSize, name, numSpecialInstructions);
+        super(wordSize, name, numSpecialInstructions, Counters.STALL_REGISTER);
         this.indexableRegisters = indexableRegisters;
         this.internalRegisters = internalRegisters;
         this.callStack = callStack;
@@ -37,51 +39,22 @@ public class DecodeStage extends PipelineStage
     public void setNearestDataCache(MemoryModule module)
     {
         this.nearestDataCache = module;
+        decodedInstructions.clear();  // Line decodes depend on the line size
         super.setNearestDataCache(module);
     }
 
+    public DecodedInstructionCache getDecodedInstructions()
+    {
+        return decodedInstructions;
+    }
+
     @Override
     public Instruction execute(boolean nextIsBlocked, boolean activePipeline) throws MRAException
     {
-        // Split flags and argument according to header and add as aux bits
+        // Split flags and argument according to header and add as aux bits (or copy them from an earlier decode)
         if(!AUX_EQUALS(heldInstruction.getAuxBits(AUX_DECODED), AUX_TRUE))
-        {  // TODO : Add new instructions here
-            switch(heldInstruction.getHeader())
-            {
-                case HEADER.LOAD -> decodeLoad();
-                case HEADER.LOAD_LINE -> decodeLoadLine();
-                case HEADER.STORE -> decodeStore();
-                case HEADER.STORE_LINE -> decodeStoreLine();
-
-                case HEADER.BRANCH_IF_ZERO -> decodeBranchIfZero();
-                case HEADER.BRANCH_IF_NEGATIVE -> decodeBranchIfNegative();
-                case HEADER.JUMP -> decodeJump();
-                case HEADER.CALL -> decodeCall();
-                case HEADER.RETURN -> decodeReturn();
-
-                case HEADER.INT_ADD -> decodeIntAdd();
-                case HEADER.INT_SUB -> decodeIntSubtract();
-                case HEADER.INT_MUL -> decodeIntMultiply();
-                case HEADER.INT_DIV -> decodeIntDivide();
-                case HEADER.INT_MOD -> decodeIntModulo();
-
-                case HEADER.AND -> decodeAND();
-                case HEADER.OR -> decodeOR();
-                case HEADER.XOR -> decodeXOR();
-                case HEADER.NOT -> decodeNOT();
-                case HEADER.COMPARE -> decodeCompare();
-
-                case HEADER.SLL -> decodeSLL();
-                case HEADER.SLR -> decodeSLR();
-                case HEADER.SRL -> decodeSRL();
-                case HEADER.SRA -> decodeSRA();
-                case HEADER.COPY -> decodeCopy();
-                case HEADER.SWAP -> decodeSwap();
-
-                case HEADER.UNDO -> decodeUndo();
-                case HEADER.HALT -> decodeHalt();
-            }
-            heldInstruction.addAuxBits(AUX_DECODED, AUX_TRUE);
+        {
+            splitFields();
         }
 
 //        System.out.println(Arrays.toString(heldInstruction.getDestRegs()));
@@ -93,17 +66,17 @@ public class DecodeStage extends PipelineStage
             int idx = Integer.parseInt(sourceRegs[i].substring(1));
 //            System.out.println(heldInstruction.getHeader() + " " + idx);
 //            System.out.println(heldInstruction.getHeader() + " " + heldInstruction.getAuxBits(AUX_SOURCE(i)).toInt());
-//            System.out.println(heldInstruction.getHeader() + " " + Objects.requireNonNullElse(heldInstruction.getAuxBits(AUX_SOURCE(i) + READ), new Term(2)).toInt());
+//            System.out.println(heldInstruction.getHeader() + " " + Objects.requireNonNullElse(heldInstruction.getAuxBits(AUX_SOURCE_READ(i)), new Term(2)).toInt());
             if((idx >= 0) && sourceRegs[i].startsWith(RegisterFileModule.INDEXABLE_PREFIX))
             {
                 if(pendingRegisters[INDEXABLE_BANK_INDEX][idx] == 0)
                 {
                     heldInstruction.addAuxBits(AUX_SOURCE(i), indexableRegisters.load(idx));
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_TRUE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_TRUE);
                 }
                 else
                 {
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_FALSE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_FALSE);
                 }
             }
             else if((idx >= 0) && sourceRegs[i].startsWith(RegisterFileModule.INTERNAL_PREFIX))
@@ -111,11 +84,11 @@ public class DecodeStage extends PipelineStage
                 if(pendingRegisters[INTERNAL_BANK_INDEX][idx] == 0)
                 {
                     heldInstruction.addAuxBits(AUX_SOURCE(i), internalRegisters.load(idx));
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_TRUE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_TRUE);
                 }
                 else
                 {
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_FALSE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_FALSE);
                 }
             }
             else if((idx >= 0) && sourceRegs[i].startsWith(RegisterFileModule.CALL_PREFIX))
@@ -125,11 +98,11 @@ public class DecodeStage extends PipelineStage
                     // Index callstack from top w/return address=-1, RR=0, R1=1, etc.
                     // Memory instructions will need to pop from stack later.
                     heldInstruction.addAuxBits(AUX_SOURCE(i), callStack.peek(idx + 1));
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_TRUE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_TRUE);
                 }
                 else
                 {
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_FALSE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_FALSE);
                 }
             }
             else if((idx >= 0) && sourceRegs[i].startsWith(RegisterFileModule.REVERSAL_PREFIX))
@@ -139,30 +112,30 @@ public class DecodeStage extends PipelineStage
                     // Index reversal stack from top. Each item is 64-bit word.
                     // Memory instructions will need to pop from stack later.
                     heldInstruction.addAuxBits(AUX_SOURCE(i), reversalStack.peek(idx));
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_TRUE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_TRUE);
                 }
                 else
                 {
-                    heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_FALSE);
+                    heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_FALSE);
                 }
             }
             else
             {
-                heldInstruction.addAuxBits(AUX_SOURCE(i) + READ, AUX_TRUE);
+                heldInstruction.addAuxBits(AUX_SOURCE_READ(i), AUX_TRUE);
             }
         }
         for(int i = 0; i < sourceRegs.length; i++)
         {
-            if(AUX_EQUALS(heldInstruction.getAuxBits(AUX_SOURCE(i) + READ), AUX_FALSE))
+            if(AUX_EQUALS(heldInstruction.getAuxBits(AUX_SOURCE_READ(i)), AUX_FALSE))
             {
                 if(activePipeline) { previousStage.execute(true, true); }
                 return passBlocking(activePipeline);
             }
         }
 
-        Instruction next = activePipeline ? previousStage.execute(nextIsBlocked && !DISPOSABLE_INSTRUCTIONS.contains(heldInstruction.getHeader()), true) : QUASH_NO_PIPELINE(wordSize);
+        Instruction next = activePipeline ? previousStage.execute(nextIsBlocked && !heldInstruction.getHeaderInfo().disposable(), true) : QUASH_NO_PIPELINE(wordSize);
 
-        if(!(nextIsBlocked && !DISPOSABLE_INSTRUCTIONS.contains(heldInstruction.getHeader())))
+        if(!(nextIsBlocked && !heldInstruction.getHeaderInfo().disposable()))
         {
             // TODO : IMPORTANT: DESTINATION ARGS SHOULD BE MARKED AS SOURCE ARGS IF THEY'RE NOT REGISTERS!
             String[] destRegs = heldInstruction.getDestRegs();
@@ -193,6 +166,94 @@ public class DecodeStage extends PipelineStage
         return passBlocked();
     }
 
+    /**
+     * Splits the given instruction's flags and arguments as execute() would, without reading any registers, so that
+     *  FunctionalExecutor decodes exactly as this stage does (and shares its decoded-instruction cache).
+     * @return The decoded instruction, which is a replacement (e.g. an error) if the given one failed to decode
+     */
+    Instruction decodeFields(Instruction instruction)
+    {
+        Instruction held = heldInstruction;
+        heldInstruction = instruction;
+        splitFields();
+        Instruction decoded = heldInstruction;
+        heldInstruction = held;
+        return decoded;
+    }
+
+    /**
+     * Adds the held instruction's flags and arguments as aux bits, copied from an earlier decode of the same word if
+     *  possible, and marks it decoded.
+     */
+    private void splitFields()
+    {
+        Term[] template = decodedInstructions.get(heldInstruction.word);
+        if(template != null)
+        {
+            heldInstruction.addAuxBits(template);
+        }
+        else
+        {
+            decode();
+        }
+        heldInstruction.addAuxBits(AUX_DECODED, AUX_TRUE);
+    }
+
+    /**
+     * Splits flags and arguments according to the header and adds them as aux bits, then stores whatever was added as
+     *  a template for later instances of the same word (unless decoding replaced the instruction, e.g. with an error).
+     */
+    private void decode()
+    {
+        Instruction decoding = heldInstruction;
+        Term[] before = decoding.copyAuxBits();
+        // TODO : Add new instructions here
+        switch(heldInstruction.getHeader())
+        {
+            case HEADER.LOAD -> decodeLoad();
+            case HEADER.LOAD_LINE -> decodeLoadLine();
+            case HEADER.STORE -> decodeStore();
+            case HEADER.STORE_LINE -> decodeStoreLine();
+
+            case HEADER.BRANCH_IF_ZERO -> decodeBranchIfZero();
+            case HEADER.BRANCH_IF_NEGATIVE -> decodeBranchIfNegative();
+            case HEADER.JUMP -> decodeJump();
+            case HEADER.CALL -> decodeCall();
+            case HEADER.RETURN -> decodeReturn();
+
+            case HEADER.INT_ADD -> decodeIntAdd();
+            case HEADER.INT_SUB -> decodeIntSubtract();
+            case HEADER.INT_MUL -> decodeIntMultiply();
+            case HEADER.INT_DIV -> decodeIntDivide();
+            case HEADER.INT_MOD -> decodeIntModulo();
+
+            case HEADER.AND -> decodeAND();
+            case HEADER.OR -> decodeOR();
+            case HEADER.XOR -> decodeXOR();
+            case HEADER.NOT -> decodeNOT();
+            case HEADER.COMPARE -> decodeCompare();
+
+            case HEADER.SLL -> decodeSLL();
+            case HEADER.SLR -> decodeSLR();
+            case HEADER.SRL -> decodeSRL();
+            case HEADER.SRA -> decodeSRA();
+            case HEADER.COPY -> decodeCopy();
+            case HEADER.SWAP -> decodeSwap();
+
+            case HEADER.UNDO -> decodeUndo();
+            case HEADER.HALT -> decodeHalt();
+        }
+        if(heldInstruction == decoding)
+        {
+            Term[] template = heldInstruction.copyAuxBits();
+            for(int slot = 0; slot < Math.min(before.length, template.length); slot++)
+            {
+                if(template[slot] == before[slot]) { template[slot] = null; }
+            }
+            decodedInstructions.put(heldInstruction.word, template);
+        }
+    }
+
     private void decodeLoad()
     {
         if(heldInstruction.wordLength() == WORD_SIZE_SHORT)
@@ -300,7 +361,7 @@ public class DecodeStage extends PipelineStage
             {
                 (new MRAException("Long STR has 2x 1-flags")).printStackTrace();
                 heldInstruction = ERR(WORD_SIZE_LONG, ERR_TYPE_INVALID_FLAGS);
-                heldInstruction.addAuxBits(new Term(ERR_TYPE_INVALID_FLAGS, false, WORD_SIZE_LONG - HEADER_SIZE).toString(),
+                heldInstruction.addAuxBits(AUX_ERR_INVALID_FLAGS,
                                            new Term(HEADER_STRINGS.get(heldInstruction.getHeader()), false));
             }
             else
@@ -842,7 +903,7 @@ public class DecodeStage extends PipelineStage
             {
                 (new MRAException("Long " + MNEMONICS.get(heldInstruction.getHeader()) + " has 2x 1-flags")).printStackTrace();
                 heldInstruction = ERR(WORD_SIZE_LONG, ERR_TYPE_INVALID_FLAGS);
-                heldInstruction.addAuxBits(new Term(ERR_TYPE_INVALID_FLAGS, false, WORD_SIZE_LONG - HEADER_SIZE).toString(),
+                heldInstruction.addAuxBits(AUX_ERR_INVALID_FLAGS,
                                            new Term(HEADER_STRINGS.get(heldInstruction.getHeader()), false));
             }
             else
@@ -900,7 +961,7 @@ public class DecodeStage extends PipelineStage
             {
                 (new MRAException("Long " + MNEMONICS.get(heldInstruction.getHeader()) + " has 2x 1-flags")).printStackTrace();
                 heldInstruction = ERR(WORD_SIZE_LONG, ERR_TYPE_INVALID_FLAGS);
-                heldInstruction.addAuxBits(new Term(ERR_TYPE_INVALID_FLAGS, false, WORD_SIZE_LONG - HEADER_SIZE).toString(),
+                heldInstruction.addAuxBits(AUX_ERR_INVALID_FLAGS,
                                            new Term(HEADER_STRINGS.get(heldInstruction.getHeader()), false));
             }
             else
@@ -958,7 +1019,7 @@ public class DecodeStage extends PipelineStage
             {
                 (new MRAException("Long " + MNEMONICS.get(heldInstruction.getHeader()) + " has 2x 1-flags")).printStackTrace();
                 heldInstruction = ERR(WORD_SIZE_LONG, ERR_TYPE_INVALID_FLAGS);
-                heldInstruction.addAuxBits(new Term(ERR_TYPE_INVALID_FLAGS, false, WORD_SIZE_LONG - HEADER_SIZE).toString(),
+                heldInstruction.addAuxBits(AUX_ERR_INVALID_FLAGS,
                                            new Term(HEADER_STRINGS.get(heldInstruction.getHeader()), false));
             }
             else
@@ -1023,7 +1084,7 @@ public class DecodeStage extends PipelineStage
             {
                 (new MRAException("Long " + MNEMONICS.get(heldInstruction.getHeader()) + " has 2x 1-flags")).printStackTrace();
                 heldInstruction = ERR(WORD_SIZE_LONG, ERR_TYPE_INVALID_FLAGS);
-                heldInstruction.addAuxBits(new Term(ERR_TYPE_INVALID_FLAGS, false, WORD_SIZE_LONG - HEADER_SIZE).toString(),
+                heldInstruction.addAuxBits(AUX_ERR_INVALID_FLAGS,
                                            new Term(HEADER_STRINGS.get(heldInstruction.getHeader()), false));
             }
             else
@@ -0,0 +1,79 @@
+package pipeline;
+
+import instructions.Term;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Direct-mapped cache of decode results keyed by instruction word. Each entry holds the aux bits that DecodeStage
+ *  wrote for that word (flags, sources, destinations, their types and banks), so later dynamic instances of the same
+ *  word can copy them instead of decoding again. Templates are only the aux slots set by decoding and are never
+ *  mutated once stored (Terms are immutable), so they can be shared between Instructions.
+ */
+public class DecodedInstructionCache implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_NUM_ENTRIES = 1024;
+
+    private final long[] words;
+    private final int[] wordLengths;  // 0 if entry is empty
+    private final Term[][] templates;
+    private final int indexMask;
+    public long hits = 0;
+    public long misses = 0;
+
+    /**
+     * @param numEntries Rounded up to a power of 2
+     */
+    public DecodedInstructionCache(int numEntries)
+    {
+        int size = Integer.highestOneBit(Math.max(1, numEntries - 1)) << 1;
+        words = new long[size];
+        wordLengths = new int[size];
+        templates = new Term[size][];
+        indexMask = size - 1;
+    }
+
+    private int index(long word)
+    {
+        long mixed = (word ^ (word >>> 32)) * 0x9E3779B97F4A7C15L;  // Spreads words that differ only in a few bits
+        return (int)(mixed >>> 32) & indexMask;
+    }
+
+    /**
+     * @return The decoded template for the given word, or null on a miss. Updates the hit/miss counters
+     */
+    public Term[] get(Term word)
+    {
+        int idx = index(word.toLong());
+        if((wordLengths[idx] == word.length()) && (words[idx] == word.toLong()))
+        {
+            hits++;
+            return templates[idx];
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores a template, evicting whatever word was in its entry.
+     */
+    public void put(Term word, Term[] template)
+    {
+        int idx = index(word.toLong());
+        words[idx] = word.toLong();
+        wordLengths[idx] = word.length();
+        templates[idx] = template;
+    }
+
+    /**
+     * Empties the cache. Must be called whenever anything other than the word that decoding depends on changes (e.g.
+     *  the nearest data cache's line size). Does not reset the counters.
+     */
+    public void clear()
+    {
+        Arrays.fill(wordLengths, 0);
+        Arrays.fill(templates, null);
+    }
+}
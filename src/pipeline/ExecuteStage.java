@@ -3,13 +3,14 @@ package pipeline;
 import instructions.Instruction;
 import instructions.Term;
 import memory.RegisterFileModule;
-import java.util.List;
 import static main.GLOBALS.*;
 
 import static instructions.Instructions.*;
 
 public class ExecuteStage extends PipelineStage
 {
+    private static final long serialVersionUID = 1L;
+
     public final RegisterFileModule internalRegisters;
 
     public ExecuteStage(int wordSize, String name, RegisterFileModule internalRegisters, int numSpecialInstructions)
@@ -40,59 +41,76 @@ public class ExecuteStage extends PipelineStage
         return ret;
     }
 
+    /**
+     * Turns the return shift of a CALL into its actual return address, relative to where the CALL was fetched from.
+     */
+    void resolveCall(Instruction instruction)
+    {
+        if(!AUX_EQUALS(instruction.getAuxBits(AUX_FINISHED_CALL_EXECUTE), AUX_TRUE))
+        {
+            int sign = 1;
+            if(((instruction.wordLength() == WORD_SIZE_SHORT) && AUX_EQUALS(instruction.getAuxBits(FLAG(2)), 1)) ||
+                    ((instruction.wordLength() == WORD_SIZE_LONG) && AUX_EQUALS(instruction.getAuxBits(FLAG(3)), 1))) {
+                sign = -1;
+            }
+            instruction.addAuxBits(AUX_SOURCE(1), new Term(instruction.getAuxBits(AUX_PC_AT_FETCH).toInt() + (sign * instruction.getAuxBits(AUX_SOURCE(1)).toInt())));
+            instruction.addAuxBits(AUX_FINISHED_CALL_EXECUTE, AUX_TRUE);
+        }
+    }
+
+    /**
+     * Sets the destination of a branch instruction as its result if its condition checks pass. Otherwise, it is left
+     *  without one, and writes nothing.
+     */
+    void resolveBranch(Instruction instruction)
+    {
+        boolean branch = true;
+
+        // TODO : getPositiveConditionChecks() returns three (ordered) ints s.t. for each bit in the int that =1,
+        //  that bit in the corresponding register of CC, PRED_1, or PRED_2 must be set to 1 in order for branch to
+        //  occur.
+        int[] checks = instruction.getPositiveConditionChecks();
+        if((internalRegisters.load(CC_INDEX) & checks[0]) != checks[0]) { branch = false; }
+        if((internalRegisters.load(PRED_1_INDEX) & checks[1]) != checks[1]) { branch = false; }
+        if((internalRegisters.load(PRED_1_INDEX) & checks[2]) != checks[2]) { branch = false; }
+
+        // TODO : getNegativeConditionChecks() returns three (ordered) ints s.t. for each bit in the int that =1,
+        //  that bit in the corresponding register of CC, PRED_1, or PRED_2 must be set to 0 in order for branch to
+        //  occur.
+        checks = instruction.getNegativeConditionChecks();
+        if((internalRegisters.load(CC_INDEX) & checks[0]) != 0) { branch = false; }
+        if((internalRegisters.load(PRED_1_INDEX) & checks[1]) != 0) { branch = false; }
+        if((internalRegisters.load(PRED_1_INDEX) & checks[2]) != 0) { branch = false; }
+
+        Term destinationValue = instruction.getAuxBits(AUX_SOURCE(0));
+        // Some branching instructions have main dest adrs as first source
+        // For others, this will be null until writeback
+
+        if(branch)
+        {
+            //System.out.println(instruction.getAuxBits(AUX_SOURCE(0)).toLong());
+            instruction.addAuxBits(AUX_RESULT(0), destinationValue);
+        }
+    }
+
     @Override
     public Instruction execute(boolean nextIsBlocked, boolean activePipeline) throws MRAException
     {
-        if(ALU_EXECUTE_INSTRUCTIONS.contains(heldInstruction.getHeader()))
+        if(heldInstruction.getHeaderInfo().alu())
         {
             heldInstruction.execute(this);
         }
         if(heldInstruction.getHeader().equals(HEADER.CALL))
         {
-            if(!AUX_EQUALS(heldInstruction.getAuxBits("finished_call_execute"), AUX_TRUE))
-            {
-                int sign = 1;
-                if(((heldInstruction.wordLength() == WORD_SIZE_SHORT) && AUX_EQUALS(heldInstruction.getAuxBits(FLAG(2)), 1)) ||
-                        ((heldInstruction.wordLength() == WORD_SIZE_LONG) && AUX_EQUALS(heldInstruction.getAuxBits(FLAG(3)), 1))) {
-                    sign = -1;
-                }
-                heldInstruction.addAuxBits(AUX_SOURCE(1), new Term(heldInstruction.getAuxBits(AUX_PC_AT_FETCH).toInt() + (sign * heldInstruction.getAuxBits(AUX_SOURCE(1)).toInt())));
-                heldInstruction.addAuxBits("finished_call_execute", AUX_TRUE);
-            }
+            resolveCall(heldInstruction);
         }
-        if(BRANCH_INSTRUCTIONS.contains(heldInstruction.getHeader()))
+        if(heldInstruction.getHeaderInfo().branch())
         {
-            boolean branch = true;
-
-            // TODO : getPositiveConditionChecks() returns three (ordered) ints s.t. for each bit in the int that =1,
-            //  that bit in the corresponding register of CC, PRED_1, or PRED_2 must be set to 1 in order for branch to
-            //  occur.
-            int[] checks = heldInstruction.getPositiveConditionChecks();
-            if((internalRegisters.load(List.of(internalRegisters.names).indexOf(CC)) & checks[0]) != checks[0]) { branch = false; }
-            if((internalRegisters.load(List.of(internalRegisters.names).indexOf(PRED_1)) & checks[1]) != checks[1]) { branch = false; }
-            if((internalRegisters.load(List.of(internalRegisters.names).indexOf(PRED_1)) & checks[2]) != checks[2]) { branch = false; }
-
-            // TODO : getNegativeConditionChecks() returns three (ordered) ints s.t. for each bit in the int that =1,
-            //  that bit in the corresponding register of CC, PRED_1, or PRED_2 must be set to 0 in order for branch to
-            //  occur.
-            checks = heldInstruction.getNegativeConditionChecks();
-            if((internalRegisters.load(List.of(internalRegisters.names).indexOf(CC)) & checks[0]) != 0) { branch = false; }
-            if((internalRegisters.load(List.of(internalRegisters.names).indexOf(PRED_1)) & checks[1]) != 0) { branch = false; }
-            if((internalRegisters.load(List.of(internalRegisters.names).indexOf(PRED_1)) & checks[2]) != 0) { branch = false; }
-
-            Term destinationValue = heldInstruction.getAuxBits(AUX_SOURCE(0));
-            // Some branching instructions have main dest adrs as first source
-            // For others, this will be null until writeback
-
-            if(branch)
-            {
-                //System.out.println(heldInstruction.getAuxBits(AUX_SOURCE(0)).toLong());
-                heldInstruction.addAuxBits(AUX_RESULT(0), destinationValue);
-            }
+            resolveBranch(heldInstruction);
         }
-        Instruction ret = pass(nextIsBlocked && !DISPOSABLE_INSTRUCTIONS.contains(heldInstruction.getHeader()));
-        Instruction next = previousStage.execute(nextIsBlocked && !DISPOSABLE_INSTRUCTIONS.contains(heldInstruction.getHeader()), activePipeline);
-        if(!(nextIsBlocked && !DISPOSABLE_INSTRUCTIONS.contains(heldInstruction.getHeader()))) { heldInstruction = next; }
+        Instruction ret = pass(nextIsBlocked && !heldInstruction.getHeaderInfo().disposable());
+        Instruction next = previousStage.execute(nextIsBlocked && !heldInstruction.getHeaderInfo().disposable(), activePipeline);
+        if(!(nextIsBlocked && !heldInstruction.getHeaderInfo().disposable())) { heldInstruction = next; }
         return ret;
     }
 }
@@ -5,6 +5,7 @@ import memory.MemoryModule;
 import memory.RegisterFileModule;
 import static main.GLOBALS.*;
 import instructions.Instruction;
+import main.Counters;
 
 import java.util.List;
 
@@ -12,13 +13,15 @@ import static instructions.Instructions.*;
 
 public class FetchStage extends PipelineStage
 {
+    private static final long serialVersionUID = 1L;
+
     public final RegisterFileModule internalRegisters;
     public MemoryModule nearestInstructionCache;
 
     public FetchStage(int wordSize, String name,
                       RegisterFileModule internalRegisters, MemoryModule nearestInstructionCache, int numSpecialInstructions)
     {
-        super(wordSize, name, numSpecialInstructions);
+        super(wordSize, name, numSpecialInstructions, Counters.STALL_INSTRUCTION_MEMORY);
         this.internalRegisters = internalRegisters;
         this.nearestInstructionCache = nearestInstructionCache;
         heldInstruction = LOAD_PC(wordSize);
@@ -64,10 +67,16 @@ public class FetchStage extends PipelineStage
         return passBlocked();
     }
 
+    @Override
+    protected Term getWorkingPC()
+    {
+        return Term.VALUE_OF(internalRegisters.load(PC_INDEX));
+    }
+
     public void preExecute() throws MRAException
     {
         heldInstruction = super.execute(false, true);
-        heldInstruction.execute(this);
+        executeHeld(nearestInstructionCache);
     }
 
     @Override
@@ -76,7 +85,7 @@ public class FetchStage extends PipelineStage
         // Default execute gives LOAD_PC
         // LOAD_PC should read the value in PC *AND* send out to the cache to get the instruction at that address
         heldInstruction = super.execute(nextIsBlocked, activePipeline);
-        heldInstruction.execute(this);
+        executeHeld(nearestInstructionCache);
         Instruction ret = pass(nextIsBlocked);
         ret.addAuxBits(AUX_FETCHED, AUX_TRUE);
         heldInstruction = super.execute(nextIsBlocked, activePipeline);
@@ -0,0 +1,251 @@
+package pipeline;
+
+import instructions.Instruction;
+import instructions.Term;
+import memory.MemoryModule;
+import memory.RegisterFileModule;
+
+import static instructions.Instructions.*;
+import static main.GLOBALS.*;
+
+/**
+ * Runs the program one whole instruction at a time, with no notion of cycles: each instruction is fetched, decoded,
+ *  executed, and written back before the next one is fetched. Registers are read and written in place, and memory is
+ *  accessed through MemoryModule's functional loads and stores, which take no time and leave nothing in flight.
+ * Decoding, ALU operations, branch resolution, and writeback are delegated to the Pipeline's own stages, so the
+ *  architectural state reached is exactly what the Pipeline would reach after running the same instructions. Used to
+ *  fast-forward past the start of a program before switching to cycle-by-cycle simulation.
+ */
+public class FunctionalExecutor
+{
+    private final RegisterFileModule indexableRegisters;
+    private final RegisterFileModule internalRegisters;
+    private final RegisterFileModule callStack;
+    private final RegisterFileModule reversalStack;
+    private final DecodeStage decode;
+    private final ExecuteStage execute;
+    private final MemoryWritebackStage write;
+    private final MemoryModule instructionMemory;  // Where instructions are fetched from
+    private final MemoryModule dataMemory;  // Where LOADs and STOREs go
+    private final MemoryModule nearestDataCache;  // Decides the sizes of LOADs and lines, as in the Pipeline
+    private final int wordSize;
+    private final int[] lineBuffer;
+    private long instructions = 0;
+    private boolean halted = false;
+    private boolean errored = false;
+    private Instruction errorInstruction;  // The error instruction that stopped run(), if one did
+
+    FunctionalExecutor(RegisterFileModule indexableRegisters, RegisterFileModule internalRegisters,
+                       RegisterFileModule callStack, RegisterFileModule reversalStack,
+                       DecodeStage decode, ExecuteStage execute, MemoryWritebackStage write,
+                       MemoryModule instructionMemory, MemoryModule dataMemory, MemoryModule nearestDataCache, int wordSize)
+    {
+        this.indexableRegisters = indexableRegisters;
+        this.internalRegisters = internalRegisters;
+        this.callStack = callStack;
+        this.reversalStack = reversalStack;
+        this.decode = decode;
+        this.execute = execute;
+        this.write = write;
+        this.instructionMemory = instructionMemory;
+        this.dataMemory = dataMemory;
+        this.nearestDataCache = nearestDataCache;
+        this.wordSize = wordSize;
+        lineBuffer = new int[Math.max(instructionMemory.getLineSize(), dataMemory.getLineSize())];
+    }
+
+    /**
+     * Total number of instructions run() has executed
+     */
+    public long getInstructions()
+    {
+        return instructions;
+    }
+
+    public boolean isHalted()
+    {
+        return halted;
+    }
+
+    public boolean isErrored()
+    {
+        return errored;
+    }
+
+    /**
+     * @return The error instruction that stopped run(), or null if none has
+     */
+    public Instruction getErrorInstruction()
+    {
+        return errorInstruction;
+    }
+
+    /**
+     * Executes instructions until HALT, an error instruction, or one of the given stopping points. Stopping points are
+     *  checked before an instruction executes, so the instruction there is left for the Pipeline to run.
+     * @param maxInstructions Maximum number of instructions to execute in this call
+     * @param stopPC Address at which to stop, or -1 for none
+     * @param marker Header of the first instruction not to execute, or null for none
+     * @return Number of instructions executed in this call
+     */
+    public long run(long maxInstructions, long stopPC, HEADER marker)
+    {
+        long executed = 0;
+        while((executed < maxInstructions) && !halted && !errored)
+        {
+            long pc = internalRegisters.load(PC_INDEX);
+            if(pc == stopPC) { break; }
+            Instruction instruction = fetch(pc);
+            if(instruction.getHeader().equals(marker)) { break; }
+            internalRegisters.store(PC_INDEX, pc + ((wordSize == WORD_SIZE_SHORT) ? 1 : 2));
+            step(instruction);
+            if(!halted && !errored) { executed++; }  // As in the Pipeline, HALT and error instructions are never written back
+        }
+        instructions += executed;
+        return executed;
+    }
+
+    /**
+     * Reads the instruction at pc, as LOAD_PC does.
+     */
+    private Instruction fetch(long pc)
+    {
+        instructionMemory.loadFunctional((int)pc, true, lineBuffer, 0);
+        long fetchedWord = 0L;
+        int offset = (int)(pc % instructionMemory.getLineSize());
+        for(int i = 0; i < wordSize / WORD_SIZE_SHORT; i++)
+        {
+            fetchedWord = (fetchedWord << WORD_SIZE_SHORT) | Integer.toUnsignedLong(lineBuffer[offset + i]);
+        }
+        Instruction instruction = new Instruction(Term.OF(fetchedWord, wordSize));
+        instruction.addAuxBits(AUX_PC_AT_FETCH, new Term((int)pc, false, 32));
+        return instruction;
+    }
+
+    /**
+     * Takes one fetched instruction through every stage's logic in order.
+     */
+    private void step(Instruction instruction)
+    {
+        instruction = decode.decodeFields(instruction);
+        readSources(instruction);
+        if(instruction.getHeaderInfo().error())
+        {
+            errorInstruction = instruction;
+            errored = true;
+            return;
+        }
+        if(instruction.getHeader().equals(HEADER.HALT))
+        {
+            // The Pipeline stops as HALT reaches writeback, without writing it
+            halted = true;
+            return;
+        }
+
+        if(instruction.getHeaderInfo().alu())
+        {
+            instruction.execute(execute);
+        }
+        if(instruction.getHeader().equals(HEADER.CALL))
+        {
+            execute.resolveCall(instruction);
+        }
+        if(instruction.getHeaderInfo().branch())
+        {
+            execute.resolveBranch(instruction);
+        }
+
+        if(instruction.getHeaderInfo().memory())
+        {
+            access(instruction);
+        }
+
+        if(instruction.getHeader().equals(HEADER.UNDO))
+        {
+            write.fakeUndo(instruction.getAuxBits(AUX_SOURCE(0)).toInt(), instruction.getAuxBits(AUX_SOURCE(1)).toInt());
+        }
+        else if(instruction.getHeader().equals(HEADER.CALL))
+        {
+            write.pushCallFrame(instruction);
+        }
+        else if(instruction.getHeader().equals(HEADER.RETURN))
+        {
+            write.popCallFrame();
+        }
+        else if(instruction.getResult(0) != null)
+        {
+            write.writeResults(instruction);
+        }
+    }
+
+    /**
+     * Replaces each register source with the register's value, as DecodeStage does once nothing is pending.
+     */
+    private void readSources(Instruction instruction)
+    {
+        for(int i = 0; instruction.getAuxBits(AUX_SOURCE(i)) != null; i++)
+        {
+            if(!AUX_EQUALS(instruction.getAuxBits(AUX_SOURCE_TYPE(i)), AUX_SD_TYPE_REGISTER)) { continue; }
+            int bank = instruction.getAuxBits(AUX_SOURCE_BANK(i)).toInt();
+            int idx = instruction.getAuxBits(AUX_SOURCE(i)).toInt();
+            if(bank == AUX_REG_BANK_INDEXABLES)
+            {
+                instruction.addAuxBits(AUX_SOURCE(i), indexableRegisters.load(idx));
+            }
+            else if(bank == AUX_REG_BANK_INTERNALS)
+            {
+                instruction.addAuxBits(AUX_SOURCE(i), internalRegisters.load(idx));
+            }
+            else if(bank == AUX_REG_BANK_CALL)
+            {
+                // Index callstack from top w/return address=-1, RR=0, R1=1, etc.
+                instruction.addAuxBits(AUX_SOURCE(i), callStack.peek(idx + 1));
+            }
+            else if(bank == AUX_REG_BANK_REVERSAL)
+            {
+                instruction.addAuxBits(AUX_SOURCE(i), reversalStack.peek(idx));
+            }
+            instruction.addAuxBits(AUX_SOURCE_READ(i), AUX_TRUE);
+        }
+    }
+
+    /**
+     * Performs a memory instruction's access, as its execute method in Instruction does through MemoryAccessStage.
+     */
+    private void access(Instruction instruction)
+    {
+        int cm = (int)internalRegisters.load(CM_INDEX);
+        int lineSize = nearestDataCache.getLineSize();
+        int wordBits = nearestDataCache.wordLength.equals(WORD_LENGTH.SHORT) ? WORD_SIZE_SHORT : WORD_SIZE_LONG;
+        switch(instruction.getHeader())
+        {
+            case HEADER.LOAD ->
+            {
+                dataMemory.loadFunctional(instruction.getAuxBits(AUX_SOURCE(0)).toInt() + cm, false, lineBuffer, 0);
+                instruction.setResult(0, new Term(lineBuffer[0], false, wordBits));
+            }
+            case HEADER.LOAD_LINE ->
+            {
+                dataMemory.loadFunctional(instruction.getAuxBits(AUX_SOURCE(0)).toInt() + cm, true, lineBuffer, 0);
+                for(int i = 0; (i < lineSize) && (instruction.getAuxBits(AUX_DEST(i)) != null); i++)
+                {
+                    instruction.setResult(i, new Term(lineBuffer[i], false, wordBits));
+                }
+            }
+            case HEADER.STORE ->
+            {
+                lineBuffer[0] = instruction.getAuxBits(AUX_SOURCE(0)).toInt();
+                dataMemory.storeFunctional(instruction.getAuxBits(AUX_SOURCE(1)).toInt() + cm, lineBuffer, 0, 1);
+            }
+            case HEADER.STORE_LINE ->
+            {
+                for(int i = 0; i < lineSize; i++)
+                {
+                    lineBuffer[i] = instruction.getAuxBits(AUX_SOURCE(i)).toInt();
+                }
+                dataMemory.storeFunctional(instruction.getAuxBits(AUX_SOURCE(lineSize)).toInt() + cm, lineBuffer, 0, lineSize);
+            }
+            default -> throw new IllegalStateException("No functional access for " + HEADER_STRINGS.get(instruction.getHeader()));
+        }
+    }
+}
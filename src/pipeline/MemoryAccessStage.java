@@ -1,6 +1,7 @@
 package pipeline;
 
 import instructions.Instruction;
+import main.Counters;
 import static instructions.Instructions.*;
 import memory.MemoryModule;
 import memory.RegisterFileModule;
@@ -11,14 +12,16 @@ import static instructions.Instructions.*;
 
 public class MemoryAccessStage extends PipelineStage
 {
+    private static final long serialVersionUID = 1L;
+
     public RegisterFileModule indexableRegisters;
     public RegisterFileModule internalRegisters;
     public MemoryModule nearestDataCache;
-    private int oldID = -1;
+    private Instruction lastPassed;  // Last instruction passed on to writeback
 
     public MemoryAccessStage(int wordSize, String name, RegisterFileModule indexableRegisters, RegisterFileModule internalRegisters, MemoryModule nearestDataCache, int numSpecialInstructions)
     {
-        super(wordSize, name, numSpecialInstructions);
+        super(wordSize, name, numSpecialInstructions, Counters.STALL_DATA_MEMORY);
         this.indexableRegisters = indexableRegisters;
         this.internalRegisters = internalRegisters;
         this.nearestDataCache = nearestDataCache;
@@ -33,16 +36,16 @@ public class MemoryAccessStage extends PipelineStage
 
     public void preExecute()
     {
-        if((heldInstruction.id != oldID) && MEMORY_INSTRUCTIONS.contains(heldInstruction.getHeader()))
-            { heldInstruction.execute(this); }
+        if((heldInstruction != lastPassed) && heldInstruction.getHeaderInfo().memory())
+            { executeHeld(nearestDataCache); }
     }
 
     @Override
     public Instruction execute(boolean nextIsBlocked, boolean activePipeline) throws MRAException
     {
-        if(MEMORY_INSTRUCTIONS.contains(heldInstruction.getHeader()))
+        if(heldInstruction.getHeaderInfo().memory())
         {
-            heldInstruction.execute(this);
+            executeHeld(nearestDataCache);
         }
         else
         {
@@ -53,7 +56,7 @@ public class MemoryAccessStage extends PipelineStage
         if(!nextIsBlocked && (heldInstruction.isFinished() || AUX_EQUALS(heldInstruction.getAuxBits(AUX_FINISHED_MEMORY_ACCESS_STAGE), AUX_TRUE)))
         {
             heldInstruction = previousStage.execute(nextIsBlocked, activePipeline);
-            oldID = ret.id;
+            lastPassed = ret;
         }
         else
         {
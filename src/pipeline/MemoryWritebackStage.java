@@ -1,8 +1,9 @@
 package pipeline;
 
 import instructions.Instruction;
+import instructions.Term;
+import main.Counters;
 import memory.RegisterFileModule;
-import main.Simulator;
 
 import java.util.Arrays;
 
@@ -12,19 +13,22 @@ import static instructions.Instructions.*;
 
 public class MemoryWritebackStage extends PipelineStage
 {
+    private static final long serialVersionUID = 1L;
+
     private final RegisterFileModule indexableRegisters;
     private final RegisterFileModule internalRegisters;
     private final RegisterFileModule callStack;
     private final RegisterFileModule reversalStack;
     private final int[][] pendingRegisters;
-    public Simulator simulator;
+    Counters counters;
 
     public MemoryWritebackStage(int wordSize, String name,
                                 RegisterFileModule indexableRegisters, RegisterFileModule internalRegisters,
                                 RegisterFileModule callStack, RegisterFileModule reversalStack,
-                                int[][] pendingRegisters, int numSpecialInstructions)
+                                int[][] pendingRegisters, int numSpecialInstructions, Counters counters)
     {
         super(wordSize, name, numSpecialInstructions);
+        this.counters = counters;
         this.indexableRegisters = indexableRegisters;
         this.internalRegisters = internalRegisters;
         this.callStack = callStack;
@@ -60,12 +64,92 @@ public class MemoryWritebackStage extends PipelineStage
         }
     }
 
+    /**
+     * Marks every register as no longer waiting on a write, once every instruction that would have written one has
+     *  been quashed.
+     */
+    void clearPendingRegisters()
+    {
+        for(int[] bank : pendingRegisters)
+        {
+            Arrays.fill(bank, 0);
+        }
+    }
+
+    /**
+     * Pushes the return address of a CALL and every indexable register but R0 to the call stack, then jumps to the
+     *  CALL's destination.
+     */
+    void pushCallFrame(Instruction instruction)
+    {
+        // ExecuteStage switches this from return shift to actual return address
+        callStack.store(instruction.getAuxBits(AUX_SOURCE(1)).toLong());
+        for(int r = 1; r < indexableRegisters.getNumRegisters(); r++)
+        {
+            callStack.store(indexableRegisters.load(r));
+        }
+        internalRegisters.store(PC_INDEX, instruction.getResult(0).toLong());
+    }
+
+    /**
+     * Undoes pushCallFrame(): restores every indexable register but R0 from the call stack, then jumps to the return
+     *  address.
+     */
+    void popCallFrame()
+    {
+        for(int r = 0; r < indexableRegisters.getNumRegisters() - 1; r++)
+        {
+            indexableRegisters.store(indexableRegisters.getNumRegisters() - 1 - r, callStack.load());
+        }
+        internalRegisters.store(PC_INDEX, callStack.load());
+    }
+
+    /**
+     * Writes each of the given instruction's results to its destination register. If any indexable register was
+     *  written, pushes a frame to the reversal stack: a mask of the registers written, then the whole indexable bank.
+     */
+    void writeResults(Instruction instruction)
+    {
+        int wroteToIndexable = 0;
+        for(int i = 0; instruction.getAuxBits(AUX_RESULT(i)) != null; i++)
+        {
+            int bank = instruction.getAuxBits(AUX_DEST_BANK(i)).toInt();
+            int idx = instruction.getAuxBits(AUX_DEST(i)).toInt();
+            if(bank == AUX_REG_BANK_INDEXABLES)
+            {
+                indexableRegisters.store(idx, instruction.getResult(i).toInt());
+                wroteToIndexable |= (1 << (indexableRegisters.getNumRegisters() - 1)) >>> idx;
+            }
+            else if(bank == AUX_REG_BANK_INTERNALS)
+            {
+                internalRegisters.store(idx, instruction.getResult(i).toInt());
+            }
+            else if(bank == AUX_REG_BANK_CALL)
+            {
+                callStack.store(idx, instruction.getResult(i).toInt());
+            }
+            else if(bank == AUX_REG_BANK_REVERSAL)
+            {
+                reversalStack.store(idx, instruction.getResult(i).toInt());
+            }
+        }
+
+        if(wroteToIndexable != 0)
+        {
+            reversalStack.store(wroteToIndexable);
+            for(int r = 0; r < indexableRegisters.getNumRegisters(); r++)
+            {
+                reversalStack.store(indexableRegisters.load(r));
+            }
+        }
+    }
+
     public Object[] preExecute()
     {
         // Return whether will branch this cycle
         boolean branching = false;
         if(heldInstruction.getHeader().equals(HEADER.RETURN) ||
-            ((heldInstruction.getResult(0) != null) && BRANCH_INSTRUCTIONS.contains(heldInstruction.getHeader())))
+            ((heldInstruction.getResult(0) != null) && heldInstruction.getHeaderInfo().branch()))
         {
             branching = true;
         }
@@ -77,6 +161,9 @@ public class MemoryWritebackStage extends PipelineStage
     {
         HEADER header = heldInstruction.getHeader();
         boolean branched = false;
+        int category = CYCLE_CATEGORY(heldInstruction);
+        counters.countCycle(category);
+        if(profiler != null) { profiler.countCycle(category, RESPONSIBLE_PC(heldInstruction)); }
 
 //        System.out.println(heldInstruction.getHeader() + " " + heldInstruction.getAuxBits(AUX_RESULT(0)));
 
@@ -85,30 +172,7 @@ public class MemoryWritebackStage extends PipelineStage
             int quantity = heldInstruction.getAuxBits(AUX_SOURCE(0)).toInt();
             int skip = heldInstruction.getAuxBits(AUX_SOURCE(1)).toInt();
 
-            // Undo back to desired frame
-            for(int r = 0; r < indexableRegisters.getNumRegisters(); r++)
-            {
-                indexableRegisters.store(indexableRegisters.getNumRegisters() - 1 - r, reversalStack.peek(((skip + quantity) * (indexableRegisters.getNumRegisters() + 1)) + r));
-            }
-
-            // Redo skipped undos (compare each frame to previous one to see actual changes)
-            for(int i = skip - 1; i >= 0; i--)
-            {
-                int mask = (int)reversalStack.peek((i * (indexableRegisters.getNumRegisters() + 1)) + indexableRegisters.getNumRegisters());
-                for(int r = 0; r < indexableRegisters.getNumRegisters(); r++)
-                {
-                    if((mask & (1 << r)) != 0)
-                    {
-                        indexableRegisters.store(indexableRegisters.getNumRegisters() - 1 - r, reversalStack.peek((i * (indexableRegisters.getNumRegisters() + 1)) + r));
-                    }
-                }
-            }
-
-            // Clear out all looked-at frames (including skipped ones)
-            for(int i = 0; i < (skip + quantity) * (indexableRegisters.getNumRegisters() + 1); i++)
-            {
-                reversalStack.load();
-            }
+            fakeUndo(quantity, skip);
 
             // Drop pendings
             for(int r = 0; r < indexableRegisters.getNumRegisters(); r++)
@@ -118,84 +182,33 @@ public class MemoryWritebackStage extends PipelineStage
         }
         else if(heldInstruction.getHeader().equals(HEADER.CALL))
         {
-            // ExecuteStage switches this from return shift to actual return address
-            callStack.store(heldInstruction.getAuxBits(AUX_SOURCE(1)).toLong());
-            for(int r = 1; r < indexableRegisters.getNumRegisters(); r++)
-            {
-                callStack.store(indexableRegisters.load(r));
-            }
-            internalRegisters.store(PC_INDEX, heldInstruction.getResult(0).toLong());
+            pushCallFrame(heldInstruction);
             pendingRegisters[INTERNAL_BANK_INDEX][PC_INDEX]--;
             Instruction ret = heldInstruction;
-            heldInstruction = previousStage.quashFromBranch();
-            for(int[] bank : pendingRegisters)
-            {
-                Arrays.fill(bank, 0);
-            }
+            heldInstruction = previousStage.quashFromBranch(Counters.QUASH_CALL_RETURN, ret.getAuxBits(AUX_PC_AT_FETCH));
+            clearPendingRegisters();
             return ret;
         }
         else if(heldInstruction.getHeader().equals(HEADER.RETURN))
         {
-            for(int r = 0; r < indexableRegisters.getNumRegisters() - 1; r++)
-            {
-                indexableRegisters.store(indexableRegisters.getNumRegisters() - 1 - r, callStack.load());
-            }
-            internalRegisters.store(PC_INDEX, callStack.load());
+            popCallFrame();
             pendingRegisters[INTERNAL_BANK_INDEX][PC_INDEX]--;
             Instruction ret = heldInstruction;
-            heldInstruction = previousStage.quashFromBranch();
-            for(int[] bank : pendingRegisters)
-            {
-                Arrays.fill(bank, 0);
-            }
+            heldInstruction = previousStage.quashFromBranch(Counters.QUASH_CALL_RETURN, ret.getAuxBits(AUX_PC_AT_FETCH));
+            clearPendingRegisters();
             return ret;
         }
         else if(heldInstruction.getResult(0) != null)
         {
-            String[] destRegs = heldInstruction.getDestRegs();
-//            System.out.println(header + Arrays.toString(destRegs));
-            if(BRANCH_INSTRUCTIONS.contains(header))
+            if(HEADER_INFO(header).branch())
             {
                 branched = true;
             }
 
-            int wroteToIndexable = 0;
-
+            writeResults(heldInstruction);
             for(int i = 0; heldInstruction.getAuxBits(AUX_RESULT(i)) != null; i++)
             {
-                //System.out.println(header + " " + i);
-                String dest = destRegs[i];
-                int idx = Integer.parseInt(dest.substring(1));
-                if(dest.startsWith(RegisterFileModule.INDEXABLE_PREFIX))
-                {
-                    indexableRegisters.store(idx, heldInstruction.getResult(i).toInt());
-                    pendingRegisters[INDEXABLE_BANK_INDEX][idx]--;
-                    wroteToIndexable |= (1 << (indexableRegisters.getNumRegisters() - 1)) >>> idx;
-                }
-                else if(dest.startsWith(RegisterFileModule.INTERNAL_PREFIX))
-                {
-                    internalRegisters.store(idx, heldInstruction.getResult(i).toInt());
-                    pendingRegisters[INTERNAL_BANK_INDEX][idx]--;
-                }
-                else if(dest.startsWith(RegisterFileModule.CALL_PREFIX))
-                {
-                    callStack.store(idx, heldInstruction.getResult(i).toInt());
-                    pendingRegisters[CALL_STACK_INDEX][idx]--;
-                }
-                else if(dest.startsWith(RegisterFileModule.REVERSAL_PREFIX))
-                {
-                    reversalStack.store(idx, heldInstruction.getResult(i).toInt());
-                    pendingRegisters[REVERSAL_STACK_INDEX][idx]--;
-                }
-            }
-
-            if(wroteToIndexable != 0)
-            {
-                reversalStack.store(wroteToIndexable);
-                for(int r = 0; r < indexableRegisters.getNumRegisters(); r++)
-                {
-                    reversalStack.store(indexableRegisters.load(r));
-                }
+                pendingRegisters[heldInstruction.getAuxBits(AUX_DEST_BANK(i)).toInt()][heldInstruction.getAuxBits(AUX_DEST(i)).toInt()]--;
             }
 
             Instruction ret = heldInstruction;
@@ -205,29 +218,45 @@ public class MemoryWritebackStage extends PipelineStage
             }
             else
             {
-                heldInstruction = previousStage.quashFromBranch();
-                for(int[] bank : pendingRegisters)
-                {
-                    Arrays.fill(bank, 0);
-                }
+                heldInstruction = previousStage.quashFromBranch(Counters.QUASH_BRANCH, ret.getAuxBits(AUX_PC_AT_FETCH));
+                clearPendingRegisters();
             }
             return ret;
         }
-        else if(BRANCH_INSTRUCTIONS.contains(heldInstruction.getHeader()))  // Unsuccessful branch
+        else if(heldInstruction.getHeaderInfo().branch())  // Unsuccessful branch
         {
             pendingRegisters[INTERNAL_BANK_INDEX][PC_INDEX]--;
         }
-        else if(header.equals(HEADER.NOOP))
-        {
-            simulator.noops++;
-        }
-        else if(header.equals(HEADER.STALL))
-        {
-            simulator.stalls++;
-        }
         Instruction ret = heldInstruction;
         Instruction gotten = previousStage.execute(nextIsBlocked, activePipeline);
         if(!nextIsBlocked) { heldInstruction = gotten; }
         return ret;
     }
+
+    /**
+     * @return The Counters category of a cycle in which the given instruction is written back
+     */
+    private static int CYCLE_CATEGORY(Instruction instruction)
+    {
+        if(instruction.getAuxBits(AUX_PC_AT_FETCH) != null) { return Counters.RETIRED_INDEX(instruction.getHeader()); }
+        Term cause = instruction.getAuxBits(AUX_BUBBLE_CAUSE);
+        if(cause != null) { return cause.toInt(); }
+        return switch(instruction.getHeader())
+        {
+            case NOOP -> Counters.BUBBLE_EMPTY;
+            case STALL -> Counters.STALL_OTHER;
+            default -> Counters.BUBBLE_OTHER;
+        };
+    }
+
+    /**
+     * @return PC of the instruction that a cycle in which the given instruction is written back is charged to, or -1
+     *  if there is none
+     */
+    private static long RESPONSIBLE_PC(Instruction instruction)
+    {
+        Term pc = instruction.getAuxBits(AUX_PC_AT_FETCH);
+        if(pc == null) { pc = instruction.getAuxBits(AUX_BUBBLE_PC); }
+        return (pc == null) ? -1 : pc.toLong();
+    }
 }
@@ -1,15 +1,20 @@
 package pipeline;
 
 import instructions.Instruction;
+import main.Counters;
+import main.Profiler;
 import memory.MemoryModule;
 import memory.RegisterFileModule;
-import main.Simulator;
+
+import java.io.Serializable;
 
 import static main.GLOBALS.*;
 import static instructions.Instructions.*;
 
-public class Pipeline
+public class Pipeline implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     private RegisterFileModule indexableRegisters;
     private RegisterFileModule internalRegisters;
     private RegisterFileModule callStack;
@@ -19,10 +24,13 @@ public class Pipeline
     private boolean[][] pendingRegisters;
     private int wordSize;
     private FetchStage fetch;
+    private DecodeStage decode;
     private ExecuteStage execute;
     private MemoryAccessStage access;
     private MemoryWritebackStage write;
     private PipelineStage endStage;  // This and dummyStartStage exist to prevent erroneous consecutation of actual pipeline stages
+    private Counters counters = new Counters();  // Replaced by the simulation's own once the Pipeline joins an Engine
+    private Profiler profiler;  // Null unless profiling
     public int numSpecialInstructions;
 
     public Pipeline(RegisterFileModule indexableRegisters, RegisterFileModule internalRegisters,
@@ -120,13 +128,14 @@ public class Pipeline
         this.wordSize = wordSize;
         this.numSpecialInstructions = numSpecialInstructions;
         fetch = new FetchStage(wordSize, "Fetch", internalRegisters, nearestInstructionCache, numSpecialInstructions);
-        DecodeStage decode = new DecodeStage(wordSize, "Decode", indexableRegisters, internalRegisters, callStack, reversalStack, pendingRegisters, numSpecialInstructions);
+        decode = new DecodeStage(wordSize, "Decode", indexableRegisters, internalRegisters, callStack, reversalStack, pendingRegisters, numSpecialInstructions);
         execute = new ExecuteStage(wordSize, "Execute", internalRegisters, numSpecialInstructions);
         access = new MemoryAccessStage(wordSize, "Access", indexableRegisters, internalRegisters, nearestDataCache, numSpecialInstructions);
         write = new MemoryWritebackStage(wordSize, "Write",
-                                                              indexableRegisters, internalRegisters, callStack, reversalStack, pendingRegisters, numSpecialInstructions);
+                                                              indexableRegisters, internalRegisters, callStack, reversalStack, pendingRegisters, numSpecialInstructions, counters);
         this.endStage = write;
         PipelineStage.CONSECUTE(new PipelineStage[] { fetch, decode, execute, access, write });
+        setProfiler(profiler);
     }
 
     public void setNearestInstructionCache(MemoryModule module)
@@ -140,9 +149,156 @@ public class Pipeline
         endStage.setNearestDataCache(module);
     }
 
-    public void setSimulator(Simulator simulator)
+    /**
+     * @param instructionMemory Where the executor fetches from: the nearest instruction cache to warm the instruction
+     *                          hierarchy as it goes, or the lowest level of memory to leave caches untouched
+     * @param dataMemory Where the executor loads and stores, likewise
+     * @return A FunctionalExecutor that runs on this Pipeline's registers and stages
+     */
+    public FunctionalExecutor newFunctionalExecutor(MemoryModule instructionMemory, MemoryModule dataMemory)
+    {
+        return new FunctionalExecutor(indexableRegisters, internalRegisters, callStack, reversalStack, decode, execute, write,
+                                      instructionMemory, dataMemory, nearestDataCache, wordSize);
+    }
+
+    /**
+     * Splits the given instruction's flags and arguments as the decode stage would, outside of any cycle.
+     * @return The decoded instruction, which is a replacement (e.g. an error) if the given one failed to decode
+     */
+    public Instruction decode(Instruction instruction)
+    {
+        return decode.decodeFields(instruction);
+    }
+
+    public MemoryModule getNearestInstructionCache()
+    {
+        return nearestInstructionCache;
+    }
+
+    public MemoryModule getNearestDataCache()
+    {
+        return nearestDataCache;
+    }
+
+    /**
+     * Makes the pipeline count into the given simulation's counters from now on.
+     */
+    public void setCounters(Counters counters)
+    {
+        this.counters = counters;
+        write.counters = counters;
+    }
+
+    public Counters getCounters()
+    {
+        return counters;
+    }
+
+    /**
+     * Charges every cycle from now on to the PC responsible for it in the given Profiler, or stops profiling if null.
+     */
+    public void setProfiler(Profiler profiler)
+    {
+        this.profiler = profiler;
+        fetch.profiler = profiler;
+        access.profiler = profiler;
+        write.profiler = profiler;
+    }
+
+    public Profiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /**
+     * @return Every stage, from Fetch to writeback
+     */
+    PipelineStage[] getStages()
+    {
+        return new PipelineStage[] { fetch, decode, execute, access, write };
+    }
+
+    long getPC()
+    {
+        return internalRegisters.load(PC_INDEX);
+    }
+
+    public int getStalls()
+    {
+        return (int)counters.sum(Counters.STALL_REGISTER, Counters.STALL_OTHER + 1);
+    }
+
+    /**
+     * @return No-op bubbles and NOOP instructions written back
+     */
+    public int getNoops()
+    {
+        return (int)(counters.get(Counters.BUBBLE_EMPTY) + counters.get(Counters.RETIRED_INDEX(HEADER.NOOP)));
+    }
+
+    public long getDecodeHits()
+    {
+        return decode.getDecodedInstructions().hits;
+    }
+
+    public long getDecodeMisses()
+    {
+        return decode.getDecodedInstructions().misses;
+    }
+
+    /**
+     * @return Number of instructions written back, not counting bubbles
+     */
+    public long getRetired()
+    {
+        return counters.get(Counters.RETIRED);
+    }
+
+    /**
+     * Discards every instruction that has not been written back, as a taken branch would, and points PC back at the
+     *  oldest of them so that it is fetched again. The only ones among them that can have accessed memory already are
+     *  the oldest, whose access is repeated exactly when it is re-executed, since nothing older is left to change
+     *  what it reads or writes.
+     */
+    public void flush()
+    {
+        Instruction oldest = null;
+        for(PipelineStage stage = write; stage != fetch; stage = stage.previousStage)
+        {
+            Instruction held = stage.heldInstruction;
+            if((held != null) && (held.getAuxBits(AUX_PC_AT_FETCH) != null))
+            {
+                oldest = held;
+                break;
+            }
+        }
+        if(oldest != null) { internalRegisters.store(PC_INDEX, oldest.getAuxBits(AUX_PC_AT_FETCH).toLong()); }
+        write.heldInstruction = write.previousStage.quashFromBranch(Counters.BUBBLE_OTHER);
+        write.clearPendingRegisters();
+    }
+
+    /**
+     * @return Number of times a fetched instruction has moved from one stage to the next, not counting writeback, so
+     *  that comparing it between two cycles tells whether any instruction advanced in between
+     */
+    public long getMoves()
+    {
+        long moves = 0;
+        for(PipelineStage stage = endStage; stage != null; stage = stage.previousStage)
+        {
+            moves += stage.moves;
+        }
+        return moves;
+    }
+
+    /**
+     * Credits the counters for cycles skipped by the Engine, each of which repeated the last simulated cycle.
+     */
+    public void creditRepeatedCycles(int cycles, long decodeHitsPerCycle)
     {
-        this.write.simulator = simulator;
+        counters.repeatLastCycle(cycles);
+        if(profiler != null) { profiler.repeatLastCycle(cycles); }
+        decode.getDecodedInstructions().hits += cycles * decodeHitsPerCycle;
     }
 
     public String getDisplayText(int radix)
@@ -1,8 +1,12 @@
 package pipeline;
 
 import instructions.Instruction;
+import instructions.Term;
+import main.Counters;
+import main.Profiler;
 import memory.MemoryModule;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 import static instructions.Instructions.*;
@@ -10,22 +14,37 @@ import static main.Assembler.LONG_INSTRUCTION_ADDRESS_UNFIX;
 import static main.Assembler.SHORT_INSTRUCTION_ADDRESS_UNFIX;
 import static main.GLOBALS.*;
 
-public class PipelineStage
+public class PipelineStage implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     private final String name;
     protected int wordSize;
     PipelineStage previousStage;
     Instruction heldInstruction;
     private PipelineStage nextStage;
     private boolean blocking = false;
+    private int[] loadBuffer = new int[0];
+    private final int stallCause;  // Counters category of the stalls this stage inserts while blocking
+    Profiler profiler;  // Null unless profiling
+    long moves = 0;  // Fetched instructions this stage has passed on
     public int numSpecialInstructions;
 
     public PipelineStage(int wordSize, String name, int numSpecialInstructions)
+    {
+        this(wordSize, name, numSpecialInstructions, Counters.STALL_OTHER);
+    }
+
+    /**
+     * @param stallCause Counters category that this stage's stalls are counted under
+     */
+    public PipelineStage(int wordSize, String name, int numSpecialInstructions, int stallCause)
     {
         this.wordSize = wordSize;
         this.name = name;
         this.heldInstruction = NOOP(wordSize);
         this.numSpecialInstructions = numSpecialInstructions;
+        this.stallCause = stallCause;
     }
 
     public void setPrevious(PipelineStage previous)
@@ -70,6 +89,16 @@ public class PipelineStage
         return NOOP(wordSize);
     }
 
+    /**
+     * @return Scratch space of at least size words for an Instruction in this stage to load into. Overwritten by the
+     *  next load made through it
+     */
+    public int[] getLoadBuffer(int size)
+    {
+        if(loadBuffer.length < size) { loadBuffer = new int[size]; }
+        return loadBuffer;
+    }
+
     public boolean isBlocking()
     {
         return blocking;
@@ -78,6 +107,7 @@ public class PipelineStage
     protected Instruction passUnblocked() throws MRAException
     {
         blocking = false;
+        if((heldInstruction != null) && (heldInstruction.getAuxBits(AUX_PC_AT_FETCH) != null)) { moves++; }
         return heldInstruction;
     }
 
@@ -95,7 +125,36 @@ public class PipelineStage
     protected Instruction passBlocking(boolean activePipeline)
     {
         blocking = true;
-        return activePipeline ? STALL(wordSize) : QUASH_NO_PIPELINE(wordSize);
+        if(!activePipeline) { return QUASH_NO_PIPELINE(wordSize); }
+        Instruction stall = STALL(wordSize);
+        stall.addAuxBits(AUX_BUBBLE_CAUSE, stallCause);
+        stall.addAuxBits(AUX_BUBBLE_PC, getWorkingPC());
+        return stall;
+    }
+
+    /**
+     * @return PC of the instruction this stage is working on, or null if it holds none
+     */
+    protected Term getWorkingPC()
+    {
+        return (heldInstruction == null) ? null : heldInstruction.getAuxBits(AUX_PC_AT_FETCH);
+    }
+
+    /**
+     * Executes heldInstruction in this stage. When profiling, any misses it causes in cache are charged to the PC
+     *  this stage is working on.
+     */
+    protected void executeHeld(MemoryModule cache)
+    {
+        if(profiler == null)
+        {
+            heldInstruction.execute(this);
+            return;
+        }
+        Term pc = getWorkingPC();
+        long misses = Profiler.MISSES(cache);
+        heldInstruction.execute(this);
+        profiler.countMisses((pc == null) ? -1 : pc.toLong(), Profiler.MISSES(cache) - misses);
     }
 
     protected Instruction pass(boolean obstructed) throws MRAException
@@ -111,17 +170,41 @@ public class PipelineStage
     }
 
     public Instruction quashFromBranch()
+    {
+        return quashFromBranch(Counters.QUASH_BRANCH);
+    }
+
+    /**
+     * Same as above, with the quashes counted under the given Counters category.
+     */
+    public Instruction quashFromBranch(int cause)
+    {
+        return quashFromBranch(cause, null);
+    }
+
+    /**
+     * Same as above, with the quashes charged to the instruction at pc that caused them.
+     */
+    public Instruction quashFromBranch(int cause, Term pc)
     {
         if(previousStage != null)
         {
-            previousStage.quashFromBranch();
-            heldInstruction = QUASH_BRANCH(wordSize);
+            previousStage.quashFromBranch(cause, pc);
+            heldInstruction = newQuash(cause, pc);
         }
         else
         {
             heldInstruction = null;
         }
-        return QUASH_BRANCH(wordSize);
+        return newQuash(cause, pc);
+    }
+
+    private Instruction newQuash(int cause, Term pc)
+    {
+        Instruction quash = QUASH_BRANCH(wordSize);
+        quash.addAuxBits(AUX_BUBBLE_CAUSE, cause);
+        quash.addAuxBits(AUX_BUBBLE_PC, pc);
+        return quash;
     }
 
     /**
@@ -0,0 +1,246 @@
+package pipeline;
+
+import instructions.Instruction;
+import instructions.Term;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static instructions.Instructions.*;
+
+/**
+ * Streams which stage every instruction occupies, cycle by cycle, in the Kanata log format (version 0004) that the
+ *  Konata pipeline viewer reads. Each instruction gets a row that starts when Fetch begins fetching it and runs through
+ *  F, D, X, M, and W. A stage in which it waits on its source registers or on memory is overlaid with a stall, and
+ *  the row ends in a retire or, if a taken branch, CALL, or RETURN quashed it, a flush.
+ * The Engine records the stages at the end of every cycle. Instructions are followed by identity from stage to
+ *  stage, so nothing is added to them. Only cycles within the window are written, starting with whatever is in
+ *  flight when it opens. The log is buffered, and gzipped if its file name ends in .gz.
+ */
+public class PipelineTracer implements Closeable
+{
+    private static final String[] STAGE_NAMES = { "F", "D", "X", "M", "W" };
+    private static final int STAGES = STAGE_NAMES.length;
+    private static final int STALL_LANE = 1;
+    private static final String STALL_STAGE = "stall";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Pipeline pipeline;
+    private final PipelineStage[] stages;
+    private final long windowStart;
+    private final long windowEnd;
+    private final Writer out;
+    private final Instruction[] held = new Instruction[STAGES];  // What each stage held at the end of the last cycle
+    private final long[] ids = new long[STAGES];  // Trace ID of each of those, or -1 for a bubble
+    private final boolean[] stalled = new boolean[STAGES];
+    private final Instruction[] nextHeld = new Instruction[STAGES];
+    private final long[] nextIds = new long[STAGES];
+    private final boolean[] nextStalled = new boolean[STAGES];
+    private long nextID = 0;
+    private long nextRetireID = 0;
+    private long lastTick = -1;  // Last cycle written, or -1 before the window opens
+    private long pendingCycles = 0;  // Cycles since the last one anything was written in, written before the next line
+    private IOException error;
+
+    /**
+     * @param windowStart First cycle to write
+     * @param windowEnd Cycle after the last one to write, or Long.MAX_VALUE for no limit
+     */
+    public PipelineTracer(Pipeline pipeline, String path, long windowStart, long windowEnd) throws IOException
+    {
+        if(windowEnd <= windowStart) { throw new IllegalArgumentException("Trace window must end after it starts"); }
+        this.pipeline = pipeline;
+        this.stages = pipeline.getStages();
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        OutputStream file = new FileOutputStream(path);
+        if(path.endsWith(".gz")) { file = new GZIPOutputStream(file, BUFFER_SIZE); }
+        out = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), BUFFER_SIZE);
+        out.write("Kanata\t0004\n");
+        for(int s = 0; s < STAGES; s++)
+        {
+            held[s] = stages[s].heldInstruction;
+            ids[s] = isTracked(s, held[s]) ? nextID++ : -1;
+        }
+    }
+
+    /**
+     * Records the stages as they stand at the end of the given cycle.
+     * @param retired The instruction written back in that cycle
+     */
+    public void record(long tick, Instruction retired)
+    {
+        if((error != null) || (tick >= windowEnd)) { return; }
+        try
+        {
+            boolean writing = tick >= windowStart;
+            if(writing && (lastTick == -1)) { open(tick); }
+            else if(writing) { pendingCycles += tick - lastTick; }
+            if(writing) { lastTick = tick; }
+            advance(writing, retired);
+        }
+        catch(IOException e)
+        {
+            error = e;
+        }
+    }
+
+    /**
+     * Flushes the log. Throws the first write error, if any, that stopped tracing early.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+        if(error != null) { throw error; }
+    }
+
+    /**
+     * Starts the log at tick with everything in flight.
+     */
+    private void open(long tick) throws IOException
+    {
+        out.write("C=\t" + tick + "\n");
+        for(int s = 0; s < STAGES; s++)
+        {
+            if(ids[s] == -1) { continue; }
+            start(ids[s], held[s], s, (s == 0) ? -1 : PC_OF(held[s]));
+            if(stalled[s]) { emit("S\t" + ids[s] + "\t" + STALL_LANE + "\t" + STALL_STAGE + "\n"); }
+        }
+    }
+
+    /**
+     * Matches what each stage holds now with what the stages held a cycle ago, and writes the difference.
+     */
+    private void advance(boolean writing, Instruction retired) throws IOException
+    {
+        boolean fetchTaken = false;  // Whether the instruction being fetched has moved into Decode
+        for(int s = STAGES - 1; s >= 0; s--)
+        {
+            Instruction instruction = stages[s].heldInstruction;
+            nextHeld[s] = instruction;
+            nextIds[s] = -1;
+            nextStalled[s] = false;
+            if(!isTracked(s, instruction)) { continue; }
+            int from = find(instruction);
+            if((from == -1) && (s == 1) && (ids[0] != -1))
+            {
+                from = 0;  // Fetch turns what it fetched into a new Instruction
+                fetchTaken = true;
+            }
+            if(from == -1)  // Nothing is known of where it came from, as when Decode replaces one that failed to decode
+            {
+                nextIds[s] = nextID++;
+                if(writing) { start(nextIds[s], instruction, s, PC_OF(instruction)); }
+            }
+            else
+            {
+                nextIds[s] = ids[from];
+                if(writing && (from != s))
+                {
+                    if(stalled[from]) { emit("E\t" + ids[from] + "\t" + STALL_LANE + "\t" + STALL_STAGE + "\n"); }
+                    emit("E\t" + ids[from] + "\t0\t" + STAGE_NAMES[from] + "\n");
+                    emit("S\t" + nextIds[s] + "\t0\t" + STAGE_NAMES[s] + "\n");
+                    if(from == 0) { emit("L\t" + nextIds[s] + "\t0\t" + LABEL(instruction) + "\n"); }
+                }
+            }
+            nextStalled[s] = (from == s) && stages[s].isBlocking();
+            if(writing && nextStalled[s] && !((from == s) && stalled[s])) { emit("S\t" + nextIds[s] + "\t" + STALL_LANE + "\t" + STALL_STAGE + "\n"); }
+            if(writing && !nextStalled[s] && (from == s) && stalled[s]) { emit("E\t" + nextIds[s] + "\t" + STALL_LANE + "\t" + STALL_STAGE + "\n"); }
+        }
+
+        // Whatever was tracked and is no longer anywhere either retired or was quashed
+        for(int s = 0; s < STAGES; s++)
+        {
+            if((ids[s] == -1) || contains(nextIds, ids[s]) || ((s == 0) && fetchTaken)) { continue; }
+            if(writing)
+            {
+                if(stalled[s]) { emit("E\t" + ids[s] + "\t" + STALL_LANE + "\t" + STALL_STAGE + "\n"); }
+                emit("E\t" + ids[s] + "\t0\t" + STAGE_NAMES[s] + "\n");
+                boolean retiring = (s == STAGES - 1) && (held[s] == retired);
+                emit("R\t" + ids[s] + "\t" + (retiring ? nextRetireID++ : 0) + "\t" + (retiring ? 0 : 1) + "\n");
+            }
+        }
+
+        System.arraycopy(nextHeld, 0, held, 0, STAGES);
+        System.arraycopy(nextIds, 0, ids, 0, STAGES);
+        System.arraycopy(nextStalled, 0, stalled, 0, STAGES);
+    }
+
+    /**
+     * Writes a line of the log, first advancing its clock to the current cycle.
+     */
+    private void emit(String line) throws IOException
+    {
+        if(pendingCycles > 0)
+        {
+            out.write("C\t" + pendingCycles + "\n");
+            pendingCycles = 0;
+        }
+        out.write(line);
+    }
+
+    /**
+     * Writes the start of a row: the instruction, its label, and the stage it is in.
+     * @param pc Its address, or -1 if it is still being fetched
+     */
+    private void start(long id, Instruction instruction, int stage, long pc) throws IOException
+    {
+        emit("I\t" + id + "\t" + id + "\t0\n");
+        long labelPC = (stage == 0) ? pipeline.getPC() : pc;  // Fetch is fetching from PC
+        emit("L\t" + id + "\t0\t" + ((labelPC == -1) ? "" : String.format("%08x: ", labelPC)) + "\n");
+        if(stage != 0) { emit("L\t" + id + "\t0\t" + LABEL(instruction) + "\n"); }
+        emit("S\t" + id + "\t0\t" + STAGE_NAMES[stage] + "\n");
+    }
+
+    /**
+     * @return Stage index of the last cycle's stage holding instruction, or -1 if none did
+     */
+    private int find(Instruction instruction)
+    {
+        for(int s = STAGES - 1; s >= 0; s--)
+        {
+            if(held[s] == instruction) { return s; }
+        }
+        return -1;
+    }
+
+    /**
+     * Fetch is tracked whenever it holds its LOAD_PC, since an instruction is being fetched. The other stages are only
+     *  tracked while they hold one that was fetched, not a bubble.
+     */
+    private static boolean isTracked(int stage, Instruction instruction)
+    {
+        if(instruction == null) { return false; }
+        return (stage == 0) || (instruction.getAuxBits(AUX_PC_AT_FETCH) != null);
+    }
+
+    private static boolean contains(long[] values, long value)
+    {
+        for(long v : values)
+        {
+            if(v == value) { return true; }
+        }
+        return false;
+    }
+
+    private static long PC_OF(Instruction instruction)
+    {
+        Term pc = instruction.getAuxBits(AUX_PC_AT_FETCH);
+        return (pc == null) ? -1 : pc.toLong();
+    }
+
+    private static String LABEL(Instruction instruction)
+    {
+        HEADER header = instruction.getHeader();
+        String mnemonic = MNEMONICS.get(header);
+        return (mnemonic != null) ? mnemonic : header.name();
+    }
+}